@@ -0,0 +1,57 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import travelcard.host.Apdus;
+import travelcard.host.SimulatedCard;
+
+/* INTERNAL AUTHENTICATE for each supported digest length */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthenticateBenchmark {
+
+    @Param({ Cards.RSA_2048, Cards.P_256, Cards.P_384, Cards.P_521,
+             Cards.BRAINPOOL_P256, Cards.BRAINPOOL_P384 })
+    public String algorithm;
+
+    @Param({ "20", "28", "32", "48", "64" })
+    public int digestLength;
+
+    private SimulatedCard card;
+    private byte[] hash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        card = Cards.withKey(algorithm);
+        hash = Cards.certificate(digestLength);
+    }
+
+    @Benchmark
+    public byte[] authenticate() {
+        return Cards.check(Apdus.exchange(card, Apdus.INS_INTERNAL_AUTHENTICATE, 0x00, 0x00, hash));
+    }
+}
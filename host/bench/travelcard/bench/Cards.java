@@ -0,0 +1,88 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.bench;
+
+import travelcard.host.Algorithm;
+import travelcard.host.Apdus;
+import travelcard.host.SimulatedCard;
+
+/* Card set up shared by the benchmarks */
+final class Cards {
+
+    static final String RSA_2048 = "rsa2048";
+    static final String P_256 = "p256";
+    static final String P_384 = "p384";
+    static final String P_521 = "p521";
+    static final String BRAINPOOL_P256 = "brainpoolP256r1";
+    static final String BRAINPOOL_P384 = "brainpoolP384r1";
+
+    static final int TAG_ALGORITHM_ATTRIBUTES_AUT = 0x00c3;
+    static final int TAG_APPLICATION_RELATED_DATA = 0x006e;
+    static final int TAG_CARDHOLDER_CERTIFICATE = 0x7f21;
+
+    static final byte[] CRT_AUTHENTICATION_KEY = { (byte)0xa4, (byte)0x00 };
+
+    private Cards() {
+    }
+
+    static byte[] attributes(final String algorithm) {
+        return Algorithm.forId(algorithm).attributes();
+    }
+
+    static byte[] check(final byte[] response) {
+        if(Apdus.sw(response) != Apdus.SW_OK) {
+            throw new IllegalStateException("card returned " + Integer.toHexString(Apdus.sw(response)));
+        }
+        return response;
+    }
+
+    static byte[] put(final SimulatedCard card, final int tag, final byte[] data) {
+        return Apdus.exchange(card, Apdus.INS_PUT_DATA, tag >> 8, tag & 0xff, data);
+    }
+
+    static byte[] get(final SimulatedCard card, final int tag) {
+        return Apdus.exchange(card, Apdus.INS_GET_DATA, tag >> 8, tag & 0xff);
+    }
+
+    static byte[] generate(final SimulatedCard card) {
+        return Apdus.exchange(card, Apdus.INS_GENERATE_ASYMMETRIC_KEY_PAIR,
+                              0x80, 0x00, CRT_AUTHENTICATION_KEY);
+    }
+
+    static SimulatedCard selected() {
+        final SimulatedCard card = new SimulatedCard();
+        check(card.transmit(Apdus.select(card.aid())));
+        return card;
+    }
+
+    static SimulatedCard withKey(final String algorithm) {
+        final SimulatedCard card = selected();
+        check(put(card, TAG_ALGORITHM_ATTRIBUTES_AUT, attributes(algorithm)));
+        check(generate(card));
+        return card;
+    }
+
+    static byte[] certificate(final int length) {
+        final byte[] res = new byte[length];
+        for(int i = 0; i < length; ++i) {
+            res[i] = (byte)i;
+        }
+        return res;
+    }
+}
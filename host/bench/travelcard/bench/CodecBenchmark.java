@@ -0,0 +1,157 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.bench;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import travelcard.host.Algorithm;
+import travelcard.host.Apdus;
+import travelcard.host.ApplicationData;
+import travelcard.host.ApplicationDataView;
+import travelcard.host.CardPublicKey;
+import travelcard.host.CertificateView;
+import travelcard.host.LocalCertificateAuthority;
+import travelcard.host.PublicKeyView;
+import travelcard.host.SignatureView;
+import travelcard.host.SimulatedCard;
+import travelcard.host.TravelCardClient;
+
+/* Parsing of what a validator reads on each tap, with the allocating
+   parsers (ApplicationData, CardPublicKey, CertificateFactory, BigInteger)
+   and with the flyweight views. Run with -prof gc to compare the
+   allocation rates. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ Cards.P_256, Cards.P_521 })
+    public String algorithm;
+
+    private byte[] select;
+    private byte[] publicKey;
+    private byte[] certificate;
+    private byte[] signature;
+
+    private ByteBuffer selectBuffer;
+    private ByteBuffer publicKeyBuffer;
+    private ByteBuffer certificateBuffer;
+    private ByteBuffer signatureBuffer;
+
+    private CertificateFactory certificates;
+
+    private final ApplicationDataView applicationDataView = new ApplicationDataView();
+    private final PublicKeyView publicKeyView = new PublicKeyView();
+    private final CertificateView certificateView = new CertificateView();
+    private final SignatureView signatureView = new SignatureView();
+    private final byte[] der = new byte[160];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        final Algorithm alg = Algorithm.forId(algorithm);
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        publicKey = client.generateKey(alg);
+        certificate = new LocalCertificateAuthority().issue(card.aid(), alg, publicKey);
+        client.writeCertificate(certificate);
+        signature = client.authenticate(new byte[32]);
+        final byte[] response = Cards.check(card.transmit(Apdus.select(card.aid())));
+        select = Arrays.copyOf(response, response.length - 2);
+
+        selectBuffer = ByteBuffer.wrap(select);
+        publicKeyBuffer = ByteBuffer.wrap(publicKey);
+        certificateBuffer = ByteBuffer.wrap(certificate);
+        signatureBuffer = ByteBuffer.wrap(signature);
+        certificates = CertificateFactory.getInstance("X.509");
+    }
+
+    @Benchmark
+    public int applicationDataCopying() {
+        return ApplicationData.parse(select, 0, select.length).signatureCounter();
+    }
+
+    @Benchmark
+    public long applicationDataView() {
+        return applicationDataView.wrap(selectBuffer, 0, select.length).signatureCounter();
+    }
+
+    @Benchmark
+    public Object publicKeyCopying() throws GeneralSecurityException {
+        return CardPublicKey.parse(Algorithm.forId(algorithm), publicKey).point();
+    }
+
+    @Benchmark
+    public int publicKeyView() {
+        return publicKeyView.wrap(publicKeyBuffer, 0, publicKey.length).yOffset();
+    }
+
+    @Benchmark
+    public long certificateCopying() throws GeneralSecurityException {
+        final X509Certificate x = (X509Certificate)certificates
+            .generateCertificate(new ByteArrayInputStream(certificate));
+        return x.getNotAfter().getTime() + x.getTBSCertificate().length;
+    }
+
+    @Benchmark
+    public long certificateView() {
+        final CertificateView v = certificateView.wrap(certificateBuffer, 0, certificate.length);
+        return v.notAfter() + v.tbsLength();
+    }
+
+    @Benchmark
+    public byte[] signatureCopying() {
+        final int half = signature.length / 2;
+        final byte[] r = new BigInteger(1, Arrays.copyOfRange(signature, 0, half)).toByteArray();
+        final byte[] s = new BigInteger(1, Arrays.copyOfRange(signature, half, signature.length)).toByteArray();
+        final int len = 2 + r.length + 2 + s.length;
+        final byte[] res = new byte[((len > 0x7f) ? 3 : 2) + len];
+        int p = 0;
+        res[p++] = 0x30;
+        if(len > 0x7f) {
+            res[p++] = (byte)0x81;
+        }
+        res[p++] = (byte)len;
+        res[p++] = 0x02;
+        res[p++] = (byte)r.length;
+        System.arraycopy(r, 0, res, p, r.length);
+        p += r.length;
+        res[p++] = 0x02;
+        res[p++] = (byte)s.length;
+        System.arraycopy(s, 0, res, p, s.length);
+        return res;
+    }
+
+    @Benchmark
+    public int signatureView() {
+        return signatureView.wrap(signatureBuffer, 0, signature.length, false).toDer(der, 0);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import travelcard.host.Apdus;
+import travelcard.host.SimulatedCard;
+
+/* SELECT, GET DATA and PUT DATA of the certificate. Certificates larger
+   than one response are read with GET RESPONSE chaining, and stored with
+   command chaining. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataObjectBenchmark {
+
+    @Param({ "200", "1152" })
+    public int certificateLength;
+
+    private SimulatedCard card;
+    private byte[] select;
+    private byte[] certificate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        card = Cards.selected();
+        select = Apdus.select(card.aid());
+        certificate = Cards.certificate(certificateLength);
+        Cards.check(Cards.put(card, Cards.TAG_CARDHOLDER_CERTIFICATE, certificate));
+    }
+
+    @Benchmark
+    public byte[] select() {
+        return Cards.check(card.transmit(select));
+    }
+
+    @Benchmark
+    public byte[] getApplicationRelatedData() {
+        return Cards.check(Cards.get(card, Cards.TAG_APPLICATION_RELATED_DATA));
+    }
+
+    @Benchmark
+    public byte[] getCertificate() {
+        return Cards.check(Cards.get(card, Cards.TAG_CARDHOLDER_CERTIFICATE));
+    }
+
+    @Benchmark
+    public byte[] putCertificate() {
+        return Cards.check(Cards.put(card, Cards.TAG_CARDHOLDER_CERTIFICATE, certificate));
+    }
+}
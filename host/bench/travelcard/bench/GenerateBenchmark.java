@@ -0,0 +1,53 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import travelcard.host.SimulatedCard;
+
+/* GENERATE ASYMMETRIC KEY PAIR. Key generation time varies a lot from one
+   call to another (RSA prime search), so each call is measured alone. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 20)
+@Fork(1)
+public class GenerateBenchmark {
+
+    @Param({ Cards.RSA_2048, Cards.P_256, Cards.P_384, Cards.P_521,
+             Cards.BRAINPOOL_P256, Cards.BRAINPOOL_P384 })
+    public String algorithm;
+
+    private SimulatedCard card;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        card = Cards.selected();
+        Cards.check(Cards.put(card, Cards.TAG_ALGORITHM_ATTRIBUTES_AUT, Cards.attributes(algorithm)));
+    }
+
+    @Benchmark
+    public byte[] generate() {
+        return Cards.check(Cards.generate(card));
+    }
+}
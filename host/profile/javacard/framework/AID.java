@@ -0,0 +1,72 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+public class AID {
+
+    private final byte[] aid;
+
+    public AID(final byte[] bArray, final short offset, final byte length) {
+        if((length < 5) || (length > 16)) {
+            SystemException.throwIt(SystemException.ILLEGAL_VALUE);
+        }
+        aid = new byte[length];
+        System.arraycopy(bArray, offset, aid, 0, length);
+    }
+
+    public final byte getBytes(final byte[] dest, final short offset) {
+        System.arraycopy(aid, 0, dest, offset, aid.length);
+        return (byte)aid.length;
+    }
+
+    public final boolean equals(final byte[] bArray, final short offset, final byte length) {
+        return (length == aid.length) && partialEquals(bArray, offset, length);
+    }
+
+    public final boolean partialEquals(final byte[] bArray, final short offset, final byte length) {
+        if(length > aid.length) {
+            return false;
+        }
+        for(int i = 0; i < length; ++i) {
+            if(aid[i] != bArray[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public final boolean RIDEquals(final AID otherAID) {
+        return partialEquals(otherAID.aid, (short)0, (byte)5);
+    }
+
+    public final byte getPartialBytes(final short aidOffset, final byte[] dest,
+                                      final short oOffset, final byte oLength) {
+        final int len = (oLength == 0) ? (aid.length - aidOffset) : oLength;
+        System.arraycopy(aid, aidOffset, dest, oOffset, len);
+        return (byte)len;
+    }
+
+    public final boolean equals(final Object anObject) {
+        return (anObject instanceof AID) && java.util.Arrays.equals(aid, ((AID)anObject).aid);
+    }
+
+    public final int hashCode() {
+        return java.util.Arrays.hashCode(aid);
+    }
+}
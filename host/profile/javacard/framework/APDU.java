@@ -0,0 +1,243 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+import java.io.ByteArrayOutputStream;
+
+public final class APDU {
+
+    public static final byte STATE_INITIAL = 0;
+    public static final byte STATE_PARTIAL_INCOMING = 1;
+    public static final byte STATE_FULL_INCOMING = 2;
+    public static final byte STATE_OUTGOING = 3;
+    public static final byte STATE_OUTGOING_LENGTH_KNOWN = 4;
+    public static final byte STATE_PARTIAL_OUTGOING = 5;
+    public static final byte STATE_FULL_OUTGOING = 6;
+    public static final byte STATE_ERROR_NO_T0_GETRESPONSE = (byte)-1;
+    public static final byte STATE_ERROR_T1_IFD_ABORT = (byte)-2;
+    public static final byte STATE_ERROR_IO = (byte)-3;
+    public static final byte STATE_ERROR_NO_T0_REISSUE = (byte)-4;
+
+    public static final byte PROTOCOL_MEDIA_MASK = (byte)0xF0;
+    public static final byte PROTOCOL_TYPE_MASK = (byte)0x0F;
+    public static final byte PROTOCOL_T0 = 0;
+    public static final byte PROTOCOL_T1 = 1;
+    public static final byte PROTOCOL_MEDIA_DEFAULT = 0;
+    public static final byte PROTOCOL_MEDIA_CONTACTLESS_TYPE_A = (byte)0x80;
+    public static final byte PROTOCOL_MEDIA_CONTACTLESS_TYPE_B = (byte)0x90;
+    public static final byte PROTOCOL_MEDIA_USB = (byte)0xA0;
+
+    private static APDU current;
+
+    private final byte[] buffer;
+    private final byte[] data;
+    private final int lc;
+    private final int ne;
+    private final boolean extended;
+    private int received;
+    private byte state;
+    private int outgoingLength;
+    private final ByteArrayOutputStream response = new ByteArrayOutputStream();
+
+    /* Stand-in only: built by the host runtime for each command. */
+    public APDU(final byte[] command, final int bufferLength, final boolean allowExtended) {
+        if(command.length < 4) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+        }
+        int lc = 0;
+        int ne = 0;
+        int cdata = ISO7816.OFFSET_CDATA;
+        boolean ext = false;
+        if(command.length == 5) {
+            ne = ((command[4] & 0xff) == 0) ? 256 : (command[4] & 0xff);
+        } else if(command.length > 5) {
+            if((command[4] == 0) && (command.length >= 7)) {
+                ext = true;
+                cdata = ISO7816.OFFSET_EXT_CDATA;
+                if(command.length == 7) {
+                    ne = ((command[5] & 0xff) << 8) | (command[6] & 0xff);
+                    if(ne == 0) {
+                        ne = 65536;
+                    }
+                } else {
+                    lc = ((command[5] & 0xff) << 8) | (command[6] & 0xff);
+                    final int rest = command.length - 7 - lc;
+                    if(rest == 2) {
+                        ne = ((command[7 + lc] & 0xff) << 8) | (command[8 + lc] & 0xff);
+                        if(ne == 0) {
+                            ne = 65536;
+                        }
+                    } else if(rest != 0) {
+                        ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+                    }
+                }
+            } else {
+                lc = command[4] & 0xff;
+                final int rest = command.length - 5 - lc;
+                if(rest == 1) {
+                    ne = ((command[5 + lc] & 0xff) == 0) ? 256 : (command[5 + lc] & 0xff);
+                } else if(rest != 0) {
+                    ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+                }
+            }
+        }
+        if(ext && !allowExtended) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+        }
+        this.buffer = new byte[bufferLength];
+        System.arraycopy(command, 0, buffer, 0, Math.min(command.length, ext ? 7 : 5));
+        this.data = new byte[lc];
+        System.arraycopy(command, cdata, data, 0, lc);
+        this.lc = lc;
+        this.ne = ne;
+        this.extended = ext;
+        this.state = STATE_INITIAL;
+        current = this;
+    }
+
+    /* Stand-in only: bytes sent by the applet so far. */
+    public byte[] standInResponse() {
+        return response.toByteArray();
+    }
+
+    public byte[] getBuffer() {
+        return buffer;
+    }
+
+    public static short getInBlockSize() {
+        return 0;
+    }
+
+    public static short getOutBlockSize() {
+        return (short)258;
+    }
+
+    public static byte getProtocol() {
+        return PROTOCOL_T1;
+    }
+
+    public byte getNAD() {
+        return 0;
+    }
+
+    public short setOutgoing() {
+        if(state >= STATE_OUTGOING) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        state = STATE_OUTGOING;
+        return (short)((ne == 0) ? 256 : ((ne > 32767) ? 32767 : ne));
+    }
+
+    public short setOutgoingNoChaining() {
+        return setOutgoing();
+    }
+
+    public void setOutgoingLength(final short len) {
+        if(state != STATE_OUTGOING) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        if((len < 0) || (!extended && (len > 256))) {
+            APDUException.throwIt(APDUException.BAD_LENGTH);
+        }
+        outgoingLength = len;
+        state = STATE_OUTGOING_LENGTH_KNOWN;
+    }
+
+    public short receiveBytes(final short bOff) {
+        if((state != STATE_PARTIAL_INCOMING) && (state != STATE_FULL_INCOMING)) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        return receive(bOff);
+    }
+
+    public short setIncomingAndReceive() {
+        if(state != STATE_INITIAL) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        return receive(getOffsetCdata());
+    }
+
+    private short receive(final short bOff) {
+        final int len = Math.min(lc - received, buffer.length - bOff);
+        if(len < 0) {
+            APDUException.throwIt(APDUException.BUFFER_BOUNDS);
+        }
+        System.arraycopy(data, received, buffer, bOff, len);
+        received += len;
+        state = (received == lc) ? STATE_FULL_INCOMING : STATE_PARTIAL_INCOMING;
+        return (short)len;
+    }
+
+    public void sendBytes(final short bOff, final short len) {
+        sendBytesLong(buffer, bOff, len);
+    }
+
+    public void sendBytesLong(final byte[] outData, final short bOff, final short len) {
+        if((state != STATE_OUTGOING_LENGTH_KNOWN) && (state != STATE_PARTIAL_OUTGOING)) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        if((response.size() + len) > outgoingLength) {
+            APDUException.throwIt(APDUException.ILLEGAL_USE);
+        }
+        response.write(outData, bOff, len);
+        state = (response.size() == outgoingLength) ? STATE_FULL_OUTGOING : STATE_PARTIAL_OUTGOING;
+    }
+
+    public void setOutgoingAndSend(final short bOff, final short len) {
+        setOutgoing();
+        setOutgoingLength(len);
+        sendBytes(bOff, len);
+    }
+
+    public byte getCurrentState() {
+        return state;
+    }
+
+    public static APDU getCurrentAPDU() {
+        return current;
+    }
+
+    public static byte[] getCurrentAPDUBuffer() {
+        return current.buffer;
+    }
+
+    public static byte getCLAChannel() {
+        return (byte)(current.buffer[ISO7816.OFFSET_CLA] & 0x03);
+    }
+
+    public boolean isCommandChainingCLA() {
+        return (buffer[ISO7816.OFFSET_CLA] & 0x10) == 0x10;
+    }
+
+    public boolean isSecureMessagingCLA() {
+        return (buffer[ISO7816.OFFSET_CLA] & 0x0C) != 0;
+    }
+
+    public boolean isISOInterindustryCLA() {
+        return (buffer[ISO7816.OFFSET_CLA] & 0x80) == 0;
+    }
+
+    public short getIncomingLength() {
+        return (short)lc;
+    }
+
+    public short getOffsetCdata() {
+        return extended ? ISO7816.OFFSET_EXT_CDATA : ISO7816.OFFSET_CDATA;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+public class APDUException extends CardRuntimeException {
+
+    public static final short ILLEGAL_USE = 1;
+    public static final short BUFFER_BOUNDS = 2;
+    public static final short BAD_LENGTH = 3;
+    public static final short IO_ERROR = 4;
+    public static final short NO_T0_GETRESPONSE = 0xAA;
+    public static final short T1_IFD_ABORT = 0xAB;
+    public static final short NO_T0_REISSUE = 0xAC;
+
+    public APDUException(final short reason) {
+        super(reason);
+    }
+
+    public static void throwIt(final short reason) {
+        throw new APDUException(reason);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+import travelcard.profile.CardRuntime;
+
+public abstract class Applet {
+
+    protected Applet() {
+    }
+
+    public static void install(final byte[] bArray, final short bOffset, final byte bLength) {
+        ISOException.throwIt(ISO7816.SW_FUNC_NOT_SUPPORTED);
+    }
+
+    public abstract void process(APDU apdu) throws ISOException;
+
+    public boolean select() {
+        return true;
+    }
+
+    public void deselect() {
+    }
+
+    public Shareable getShareableInterfaceObject(final AID clientAID, final byte parameter) {
+        return null;
+    }
+
+    protected final void register() {
+        CardRuntime.current().register(this, null);
+    }
+
+    protected final void register(final byte[] bArray, final short bOffset, final byte bLength) {
+        CardRuntime.current().register(this, new AID(bArray, bOffset, bLength));
+    }
+
+    protected final boolean selectingApplet() {
+        return CardRuntime.current().isSelecting();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+import travelcard.profile.CardRuntime;
+
+public final class JCSystem {
+
+    public static final byte NOT_A_TRANSIENT_OBJECT = 0;
+    public static final byte CLEAR_ON_RESET = 1;
+    public static final byte CLEAR_ON_DESELECT = 2;
+
+    public static final byte MEMORY_TYPE_PERSISTENT = 0;
+    public static final byte MEMORY_TYPE_TRANSIENT_RESET = 1;
+    public static final byte MEMORY_TYPE_TRANSIENT_DESELECT = 2;
+
+    private JCSystem() {
+    }
+
+    public static byte isTransient(final Object theObj) {
+        return CardRuntime.current().transientType(theObj);
+    }
+
+    public static boolean[] makeTransientBooleanArray(final short length, final byte event) {
+        return CardRuntime.current().registerTransient(new boolean[length], event, length);
+    }
+
+    public static byte[] makeTransientByteArray(final short length, final byte event) {
+        return CardRuntime.current().registerTransient(new byte[length], event, length);
+    }
+
+    public static short[] makeTransientShortArray(final short length, final byte event) {
+        return CardRuntime.current().registerTransient(new short[length], event, 2 * length);
+    }
+
+    public static Object[] makeTransientObjectArray(final short length, final byte event) {
+        return CardRuntime.current().registerTransient(new Object[length], event, 2 * length);
+    }
+
+    public static AID getAID() {
+        return CardRuntime.current().appletAid();
+    }
+
+    public static AID lookupAID(final byte[] buffer, final short offset, final byte length) {
+        final AID aid = CardRuntime.current().appletAid();
+        return aid.equals(buffer, offset, length) ? aid : null;
+    }
+
+    public static void beginTransaction() {
+        CardRuntime.current().beginTransaction();
+    }
+
+    public static void abortTransaction() {
+        CardRuntime.current().abortTransaction();
+    }
+
+    public static void commitTransaction() {
+        CardRuntime.current().commitTransaction();
+    }
+
+    public static byte getTransactionDepth() {
+        return CardRuntime.current().transactionDepth();
+    }
+
+    public static short getUnusedCommitCapacity() {
+        return CardRuntime.current().unusedCommitCapacity();
+    }
+
+    public static short getMaxCommitCapacity() {
+        return CardRuntime.current().maxCommitCapacity();
+    }
+
+    public static AID getPreviousContextAID() {
+        return null;
+    }
+
+    public static short getAvailableMemory(final byte memoryType) {
+        final int available = CardRuntime.current().availableMemory(memoryType);
+        return (short)((available > 32767) ? 32767 : available);
+    }
+
+    public static short getVersion() {
+        return (short)0x0304;
+    }
+
+    public static Shareable getAppletShareableInterfaceObject(final AID serverAID, final byte parameter) {
+        return null;
+    }
+
+    public static boolean isObjectDeletionSupported() {
+        return true;
+    }
+
+    public static void requestObjectDeletion() {
+    }
+
+    public static byte getAssignedChannel() {
+        return 0;
+    }
+
+    public static boolean isAppletActive(final AID theApplet) {
+        return true;
+    }
+}
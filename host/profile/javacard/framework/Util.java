@@ -0,0 +1,87 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.framework;
+
+import travelcard.profile.CardRuntime;
+
+public class Util {
+
+    private Util() {
+    }
+
+    public static final short arrayCopy(final byte[] src, final short srcOff,
+                                        final byte[] dest, final short destOff,
+                                        final short length) {
+        System.arraycopy(src, srcOff, dest, destOff, length);
+        CardRuntime.current().countWrite(dest, length, true);
+        CardRuntime.current().countCopy(length);
+        return (short)(destOff + length);
+    }
+
+    public static final short arrayCopyNonAtomic(final byte[] src, final short srcOff,
+                                                 final byte[] dest, final short destOff,
+                                                 final short length) {
+        System.arraycopy(src, srcOff, dest, destOff, length);
+        CardRuntime.current().countWrite(dest, length, false);
+        CardRuntime.current().countCopy(length);
+        return (short)(destOff + length);
+    }
+
+    public static final short arrayFillNonAtomic(final byte[] bArray, final short bOff,
+                                                 final short bLen, final byte bValue) {
+        if((bLen < 0) || ((bOff + bLen) > bArray.length) || (bOff < 0)) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        java.util.Arrays.fill(bArray, bOff, bOff + bLen, bValue);
+        CardRuntime.current().countWrite(bArray, bLen, false);
+        CardRuntime.current().countFill(bLen);
+        return (short)(bOff + bLen);
+    }
+
+    public static final byte arrayCompare(final byte[] src, final short srcOff,
+                                          final byte[] dest, final short destOff,
+                                          final short length) {
+        if((srcOff + length > src.length) || (destOff + length > dest.length) || (length < 0)) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        for(int i = 0; i < length; ++i) {
+            final int a = src[srcOff + i] & 0xff;
+            final int b = dest[destOff + i] & 0xff;
+            if(a != b) {
+                return (byte)((a < b) ? -1 : 1);
+            }
+        }
+        return 0;
+    }
+
+    public static final short makeShort(final byte b1, final byte b2) {
+        return (short)(((b1 & 0xff) << 8) | (b2 & 0xff));
+    }
+
+    public static final short getShort(final byte[] bArray, final short bOff) {
+        return makeShort(bArray[bOff], bArray[bOff + 1]);
+    }
+
+    public static final short setShort(final byte[] bArray, final short bOff, final short sValue) {
+        bArray[bOff] = (byte)(sValue >> 8);
+        bArray[bOff + 1] = (byte)sValue;
+        CardRuntime.current().countWrite(bArray, 2, true);
+        return (short)(bOff + 2);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+public interface ECKey {
+    void setFieldFP(byte[] buffer, short offset, short length) throws CryptoException;
+    void setFieldF2M(short e) throws CryptoException;
+    void setFieldF2M(short e1, short e2, short e3) throws CryptoException;
+    void setA(byte[] buffer, short offset, short length) throws CryptoException;
+    void setB(byte[] buffer, short offset, short length) throws CryptoException;
+    void setG(byte[] buffer, short offset, short length) throws CryptoException;
+    void setR(byte[] buffer, short offset, short length) throws CryptoException;
+    void setK(short K);
+    short getField(byte[] buffer, short offset) throws CryptoException;
+    short getA(byte[] buffer, short offset) throws CryptoException;
+    short getB(byte[] buffer, short offset) throws CryptoException;
+    short getG(byte[] buffer, short offset) throws CryptoException;
+    short getR(byte[] buffer, short offset) throws CryptoException;
+    short getK() throws CryptoException;
+}
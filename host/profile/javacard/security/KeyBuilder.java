@@ -0,0 +1,55 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+import travelcard.profile.StandInCrypto;
+
+public class KeyBuilder {
+
+    public static final byte TYPE_DES_TRANSIENT_RESET = 1;
+    public static final byte TYPE_DES_TRANSIENT_DESELECT = 2;
+    public static final byte TYPE_DES = 3;
+    public static final byte TYPE_RSA_PUBLIC = 4;
+    public static final byte TYPE_RSA_PRIVATE = 5;
+    public static final byte TYPE_RSA_CRT_PRIVATE = 6;
+    public static final byte TYPE_DSA_PUBLIC = 7;
+    public static final byte TYPE_DSA_PRIVATE = 8;
+    public static final byte TYPE_EC_F2M_PUBLIC = 9;
+    public static final byte TYPE_EC_F2M_PRIVATE = 10;
+    public static final byte TYPE_EC_FP_PUBLIC = 11;
+    public static final byte TYPE_EC_FP_PRIVATE = 12;
+    public static final byte TYPE_AES_TRANSIENT_RESET = 13;
+    public static final byte TYPE_AES_TRANSIENT_DESELECT = 14;
+    public static final byte TYPE_AES = 15;
+
+    public static final short LENGTH_RSA_1024 = 1024;
+    public static final short LENGTH_RSA_2048 = 2048;
+    public static final short LENGTH_RSA_3072 = 3072;
+    public static final short LENGTH_RSA_4096 = 4096;
+    public static final short LENGTH_EC_FP_256 = 256;
+    public static final short LENGTH_EC_FP_384 = 384;
+    public static final short LENGTH_EC_FP_521 = 521;
+
+    private KeyBuilder() {
+    }
+
+    public static Key buildKey(final byte keyType, final short keyLength, final boolean keyEncryption) {
+        return StandInCrypto.buildKey(keyType, keyLength);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+import travelcard.profile.StandInCrypto;
+
+public final class KeyPair {
+
+    public static final byte ALG_RSA = 1;
+    public static final byte ALG_RSA_CRT = 2;
+    public static final byte ALG_DSA = 3;
+    public static final byte ALG_EC_F2M = 4;
+    public static final byte ALG_EC_FP = 5;
+
+    private final PublicKey publicKey;
+    private final PrivateKey privateKey;
+
+    public KeyPair(final byte algorithm, final short keyLength) {
+        switch(algorithm) {
+        case ALG_RSA_CRT:
+            publicKey = (PublicKey)KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, keyLength, false);
+            privateKey = (PrivateKey)KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_CRT_PRIVATE, keyLength, false);
+            break;
+        case ALG_EC_FP:
+            publicKey = (PublicKey)KeyBuilder.buildKey(KeyBuilder.TYPE_EC_FP_PUBLIC, keyLength, false);
+            privateKey = (PrivateKey)KeyBuilder.buildKey(KeyBuilder.TYPE_EC_FP_PRIVATE, keyLength, false);
+            break;
+        default:
+            throw new CryptoException(CryptoException.NO_SUCH_ALGORITHM);
+        }
+    }
+
+    public KeyPair(final PublicKey publicKey, final PrivateKey privateKey) {
+        if((publicKey == null) || (privateKey == null)) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+    }
+
+    public final void genKeyPair() {
+        StandInCrypto.genKeyPair(publicKey, privateKey);
+    }
+
+    public PublicKey getPublic() {
+        return publicKey;
+    }
+
+    public PrivateKey getPrivate() {
+        return privateKey;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+import travelcard.profile.StandInCrypto;
+
+public abstract class MessageDigest {
+
+    public static final byte ALG_SHA = 1;
+    public static final byte ALG_MD5 = 2;
+    public static final byte ALG_RIPEMD160 = 3;
+    public static final byte ALG_SHA_256 = 4;
+    public static final byte ALG_SHA_384 = 5;
+    public static final byte ALG_SHA_512 = 6;
+    public static final byte ALG_SHA_224 = 7;
+
+    public static final byte LENGTH_MD5 = 16;
+    public static final byte LENGTH_RIPEMD160 = 20;
+    public static final byte LENGTH_SHA = 20;
+    public static final byte LENGTH_SHA_224 = 28;
+    public static final byte LENGTH_SHA_256 = 32;
+    public static final byte LENGTH_SHA_384 = 48;
+    public static final byte LENGTH_SHA_512 = 64;
+
+    protected MessageDigest() {
+    }
+
+    public static final MessageDigest getInstance(final byte algorithm, final boolean externalAccess) {
+        return StandInCrypto.digest(algorithm);
+    }
+
+    public abstract byte getAlgorithm();
+    public abstract byte getLength();
+    public abstract short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset);
+    public abstract void update(byte[] inBuff, short inOffset, short inLength);
+    public abstract void reset();
+}
@@ -0,0 +1,37 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+import travelcard.profile.StandInCrypto;
+
+public abstract class RandomData {
+
+    public static final byte ALG_PSEUDO_RANDOM = 1;
+    public static final byte ALG_SECURE_RANDOM = 2;
+
+    protected RandomData() {
+    }
+
+    public static final RandomData getInstance(final byte algorithm) {
+        return StandInCrypto.random(algorithm);
+    }
+
+    public abstract void generateData(byte[] buffer, short offset, short length) throws CryptoException;
+    public abstract void setSeed(byte[] buffer, short offset, short length);
+}
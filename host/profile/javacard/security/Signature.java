@@ -0,0 +1,70 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacard.security;
+
+import travelcard.profile.StandInCrypto;
+
+public abstract class Signature {
+
+    public static final byte ALG_RSA_SHA_PKCS1 = 10;
+    public static final byte ALG_ECDSA_SHA = 17;
+    public static final byte ALG_RSA_SHA_256_PKCS1 = 40;
+    public static final byte ALG_ECDSA_SHA_256 = 33;
+    public static final byte ALG_ECDSA_SHA_384 = 34;
+    public static final byte ALG_ECDSA_SHA_224 = 37;
+    public static final byte ALG_ECDSA_SHA_512 = 38;
+
+    public static final byte SIG_CIPHER_DES_MAC4 = 1;
+    public static final byte SIG_CIPHER_DES_MAC8 = 2;
+    public static final byte SIG_CIPHER_RSA = 3;
+    public static final byte SIG_CIPHER_DSA = 4;
+    public static final byte SIG_CIPHER_ECDSA = 5;
+    public static final byte SIG_CIPHER_AES_MAC128 = 6;
+    public static final byte SIG_CIPHER_HMAC = 7;
+    public static final byte SIG_CIPHER_KOREAN_SEED_MAC = 8;
+
+    public static final byte MODE_SIGN = 1;
+    public static final byte MODE_VERIFY = 2;
+
+    protected Signature() {
+    }
+
+    public static final Signature getInstance(final byte algorithm, final boolean externalAccess) {
+        return StandInCrypto.signature(algorithm);
+    }
+
+    public static final Signature getInstance(final byte messageDigestAlgorithm, final byte cipherAlgorithm,
+                                              final byte paddingAlgorithm, final boolean externalAccess) {
+        return StandInCrypto.signature(messageDigestAlgorithm, cipherAlgorithm, paddingAlgorithm);
+    }
+
+    public abstract void init(Key theKey, byte theMode) throws CryptoException;
+    public abstract void init(Key theKey, byte theMode, byte[] bArray, short bOff, short bLen) throws CryptoException;
+    public abstract void setInitialDigest(byte[] state, short stateOffset, short stateLength, byte[] digestedMsgLenBuf, short digestedMsgLenOffset, short digestedMsgLenLength) throws CryptoException;
+    public abstract byte getAlgorithm();
+    public abstract byte getMessageDigestAlgorithm();
+    public abstract byte getCipherAlgorithm();
+    public abstract byte getPaddingAlgorithm();
+    public abstract short getLength() throws CryptoException;
+    public abstract void update(byte[] inBuff, short inOffset, short inLength) throws CryptoException;
+    public abstract short sign(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset) throws CryptoException;
+    public abstract short signPreComputedHash(byte[] hashBuff, short hashOffset, short hashLength, byte[] sigBuff, short sigOffset) throws CryptoException;
+    public abstract boolean verify(byte[] inBuff, short inOffset, short inLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException;
+    public abstract boolean verifyPreComputedHash(byte[] hashBuff, short hashOffset, short hashLength, byte[] sigBuff, short sigOffset, short sigLength) throws CryptoException;
+}
@@ -0,0 +1,77 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package javacardx.crypto;
+
+import javacard.security.Key;
+import javacard.security.CryptoException;
+import travelcard.profile.StandInCrypto;
+
+public abstract class Cipher {
+
+    public static final byte ALG_RSA_PKCS1 = 10;
+    public static final byte ALG_RSA_NOPAD = 12;
+
+    public static final byte CIPHER_AES_CBC = 1;
+    public static final byte CIPHER_AES_ECB = 2;
+    public static final byte CIPHER_DES_CBC = 3;
+    public static final byte CIPHER_DES_ECB = 4;
+    public static final byte CIPHER_KOREAN_SEED_CBC = 5;
+    public static final byte CIPHER_KOREAN_SEED_ECB = 6;
+    public static final byte CIPHER_RSA = 7;
+
+    public static final byte PAD_NULL = 0;
+    public static final byte PAD_NOPAD = 1;
+    public static final byte PAD_ISO9797_M1 = 2;
+    public static final byte PAD_ISO9797_M2 = 3;
+    public static final byte PAD_ISO9797_1_M1_ALG3 = 4;
+    public static final byte PAD_ISO9797_1_M2_ALG3 = 5;
+    public static final byte PAD_PKCS5 = 6;
+    public static final byte PAD_PKCS1 = 7;
+    public static final byte PAD_PKCS1_PSS = 8;
+    public static final byte PAD_PKCS1_OAEP = 9;
+
+    public static final byte MODE_DECRYPT = 1;
+    public static final byte MODE_ENCRYPT = 2;
+
+    protected Cipher() {
+    }
+
+    public static final Cipher getInstance(final byte algorithm, final boolean externalAccess) {
+        if(algorithm == ALG_RSA_PKCS1) {
+            return StandInCrypto.cipher(CIPHER_RSA, PAD_PKCS1);
+        }
+        if(algorithm == ALG_RSA_NOPAD) {
+            return StandInCrypto.cipher(CIPHER_RSA, PAD_NOPAD);
+        }
+        throw new CryptoException(CryptoException.NO_SUCH_ALGORITHM);
+    }
+
+    public static final Cipher getInstance(final byte cipherAlgorithm, final byte paddingAlgorithm,
+                                           final boolean externalAccess) {
+        return StandInCrypto.cipher(cipherAlgorithm, paddingAlgorithm);
+    }
+
+    public abstract void init(Key theKey, byte theMode) throws CryptoException;
+    public abstract void init(Key theKey, byte theMode, byte[] bArray, short bOff, short bLen) throws CryptoException;
+    public abstract byte getAlgorithm();
+    public abstract byte getCipherAlgorithm();
+    public abstract byte getPaddingAlgorithm();
+    public abstract short doFinal(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException;
+    public abstract short update(byte[] inBuff, short inOffset, short inLength, byte[] outBuff, short outOffset) throws CryptoException;
+}
@@ -0,0 +1,330 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javacard.framework.AID;
+import javacard.framework.APDU;
+import javacard.framework.Applet;
+import javacard.framework.CardRuntimeException;
+import javacard.framework.ISO7816;
+import javacard.framework.ISOException;
+import javacard.framework.JCSystem;
+import javacard.framework.TransactionException;
+import javacardx.apdu.ExtendedLength;
+
+/*
+  Minimal single-applet card runtime backing the JavaCard API stand-ins.
+  It is not a simulator: it only implements what the applet uses, and
+  it accounts for the costs that matter on silicon.
+
+  Writes are counted when they go through the API (Util, crypto output,
+  APDU buffer). Plain array stores and field assignments in the applet
+  cannot be observed from Java and are not counted.
+*/
+public final class CardRuntime {
+
+    /* Several runtimes may be driven from different threads, each one
+       being used by one thread at a time. */
+    private static final ThreadLocal<CardRuntime> current = new ThreadLocal<CardRuntime>();
+
+    private final OperationCounters counters = new OperationCounters();
+    private final Map<Object, Byte> transients = new IdentityHashMap<Object, Byte>();
+    private final List<Object> clearOnDeselect = new ArrayList<Object>();
+    private final List<Object> clearOnReset = new ArrayList<Object>();
+
+    private final int commitCapacity;
+    private final int shortBufferLength;
+    private final int extendedBufferLength;
+
+    private int persistentAvailable;
+    private int transientResetAvailable;
+    private int transientDeselectAvailable;
+
+    private byte transactionDepth;
+    private int commitUsed;
+
+    private Applet applet;
+    private AID aid;
+    private AID installAid;
+    private boolean selecting;
+
+    public CardRuntime() {
+        this(0x7fff, 0x2000, 0x0800, 0x0400);
+    }
+
+    public CardRuntime(final int persistentMemory, final int transientMemory,
+                       final int commitCapacity, final int extendedBufferLength) {
+        this.persistentAvailable = persistentMemory;
+        this.transientResetAvailable = transientMemory / 2;
+        this.transientDeselectAvailable = transientMemory / 2;
+        this.commitCapacity = commitCapacity;
+        this.shortBufferLength = 261;
+        this.extendedBufferLength = extendedBufferLength;
+        current.set(this);
+    }
+
+    public static CardRuntime current() {
+        final CardRuntime rt = current.get();
+        if(rt == null) {
+            throw new IllegalStateException("no card runtime");
+        }
+        return rt;
+    }
+
+    public void makeCurrent() {
+        current.set(this);
+    }
+
+    public OperationCounters counters() {
+        return counters;
+    }
+
+    public void install(final Class<? extends Applet> appletClass,
+                        final byte[] aidBytes, final byte[] parameters) throws Exception {
+        makeCurrent();
+        final byte[] params = (parameters == null) ? new byte[0] : parameters;
+        final byte[] b = new byte[1 + aidBytes.length + 1 + 1 + params.length];
+        int off = 0;
+        b[off++] = (byte)aidBytes.length;
+        System.arraycopy(aidBytes, 0, b, off, aidBytes.length);
+        off += aidBytes.length;
+        b[off++] = 0;
+        b[off++] = (byte)params.length;
+        System.arraycopy(params, 0, b, off, params.length);
+
+        installAid = new AID(aidBytes, (short)0, (byte)aidBytes.length);
+        final Method install = appletClass.getMethod("install", byte[].class, short.class, byte.class);
+        counters.reset();
+        install.invoke(null, b, (short)0, (byte)b.length);
+        if(applet == null) {
+            throw new IllegalStateException("applet did not register");
+        }
+    }
+
+    public void register(final Applet a, final AID registeredAid) {
+        applet = a;
+        aid = (registeredAid == null) ? installAid : registeredAid;
+    }
+
+    public AID appletAid() {
+        return aid;
+    }
+
+    public boolean isSelecting() {
+        return selecting;
+    }
+
+    public void reset() {
+        makeCurrent();
+        clearAll(clearOnReset);
+        clearAll(clearOnDeselect);
+        transactionDepth = 0;
+        commitUsed = 0;
+    }
+
+    private static void clearAll(final List<Object> arrays) {
+        for(final Object o : arrays) {
+            if(o instanceof byte[]) {
+                java.util.Arrays.fill((byte[])o, (byte)0);
+            } else if(o instanceof short[]) {
+                java.util.Arrays.fill((short[])o, (short)0);
+            } else if(o instanceof boolean[]) {
+                java.util.Arrays.fill((boolean[])o, false);
+            } else if(o instanceof Object[]) {
+                java.util.Arrays.fill((Object[])o, null);
+            }
+        }
+    }
+
+    private boolean isSelectCommand(final byte[] cmd) {
+        if((cmd.length < 5) || (cmd[ISO7816.OFFSET_CLA] != 0) ||
+           (cmd[ISO7816.OFFSET_INS] != ISO7816.INS_SELECT) || (cmd[ISO7816.OFFSET_P1] != 0x04)) {
+            return false;
+        }
+        final int lc = cmd[ISO7816.OFFSET_LC] & 0xff;
+        return (lc > 0) && (cmd.length >= 5 + lc) &&
+            aid.partialEquals(cmd, (short)ISO7816.OFFSET_CDATA, (byte)lc);
+    }
+
+    public byte[] transmit(final byte[] cmd) {
+        makeCurrent();
+        counters.reset();
+        short sw = ISO7816.SW_NO_ERROR;
+        byte[] data = new byte[0];
+        selecting = isSelectCommand(cmd);
+        try {
+            if(selecting) {
+                clearAll(clearOnDeselect);
+                if(!applet.select()) {
+                    ISOException.throwIt(ISO7816.SW_APPLET_SELECT_FAILED);
+                }
+            }
+            final boolean ext = applet instanceof ExtendedLength;
+            final APDU apdu = new APDU(cmd, ext ? extendedBufferLength : shortBufferLength, ext);
+            transients.put(apdu.getBuffer(), JCSystem.CLEAR_ON_RESET);
+            try {
+                applet.process(apdu);
+            } finally {
+                transients.remove(apdu.getBuffer());
+                data = apdu.standInResponse();
+            }
+        } catch(final ISOException e) {
+            sw = e.getReason();
+        } catch(final CardRuntimeException e) {
+            sw = ISO7816.SW_UNKNOWN;
+        } catch(final RuntimeException e) {
+            sw = ISO7816.SW_UNKNOWN;
+        } finally {
+            selecting = false;
+            while(transactionDepth > 0) {
+                abortTransaction();
+            }
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + 2);
+        out.write(data, 0, data.length);
+        out.write((sw >> 8) & 0xff);
+        out.write(sw & 0xff);
+        return out.toByteArray();
+    }
+
+    /* Memory */
+
+    public <T> T registerTransient(final T array, final byte event, final int bytes) {
+        if(event == JCSystem.CLEAR_ON_RESET) {
+            transientResetAvailable -= bytes;
+            clearOnReset.add(array);
+        } else if(event == JCSystem.CLEAR_ON_DESELECT) {
+            transientDeselectAvailable -= bytes;
+            clearOnDeselect.add(array);
+        } else {
+            javacard.framework.SystemException.throwIt(javacard.framework.SystemException.ILLEGAL_VALUE);
+        }
+        if((transientResetAvailable < 0) || (transientDeselectAvailable < 0)) {
+            javacard.framework.SystemException.throwIt(javacard.framework.SystemException.NO_TRANSIENT_SPACE);
+        }
+        transients.put(array, event);
+        return array;
+    }
+
+    public byte transientType(final Object o) {
+        final Byte t = transients.get(o);
+        return (t == null) ? JCSystem.NOT_A_TRANSIENT_OBJECT : t;
+    }
+
+    public int availableMemory(final byte type) {
+        switch(type) {
+        case JCSystem.MEMORY_TYPE_PERSISTENT:
+            return persistentAvailable;
+        case JCSystem.MEMORY_TYPE_TRANSIENT_RESET:
+            return transientResetAvailable;
+        case JCSystem.MEMORY_TYPE_TRANSIENT_DESELECT:
+            return transientDeselectAvailable;
+        default:
+            javacard.framework.SystemException.throwIt(javacard.framework.SystemException.ILLEGAL_VALUE);
+            return 0;
+        }
+    }
+
+    /* Called by crypto stand-ins to model the footprint of their objects. */
+    public void allocate(final int persistent, final int transientDeselect) {
+        persistentAvailable -= persistent;
+        transientDeselectAvailable -= transientDeselect;
+        if(persistentAvailable < 0) {
+            javacard.framework.SystemException.throwIt(javacard.framework.SystemException.NO_RESOURCE);
+        }
+    }
+
+    /* Transactions */
+
+    public void beginTransaction() {
+        if(transactionDepth != 0) {
+            TransactionException.throwIt(TransactionException.IN_PROGRESS);
+        }
+        transactionDepth = 1;
+        commitUsed = 0;
+        ++counters.transactionsBegun;
+    }
+
+    public void commitTransaction() {
+        if(transactionDepth == 0) {
+            TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
+        }
+        transactionDepth = 0;
+        ++counters.transactionsCommitted;
+    }
+
+    public void abortTransaction() {
+        if(transactionDepth == 0) {
+            TransactionException.throwIt(TransactionException.NOT_IN_PROGRESS);
+        }
+        transactionDepth = 0;
+        ++counters.transactionsAborted;
+    }
+
+    public byte transactionDepth() {
+        return transactionDepth;
+    }
+
+    public short unusedCommitCapacity() {
+        return (short)Math.max(0, Math.min(0x7fff, commitCapacity - commitUsed));
+    }
+
+    public short maxCommitCapacity() {
+        return (short)Math.min(0x7fff, commitCapacity);
+    }
+
+    /* Accounting hooks used by the stand-ins */
+
+    public void countWrite(final Object dest, final int length, final boolean atomic) {
+        if(transients.containsKey(dest)) {
+            counters.transientBytes += length;
+            return;
+        }
+        counters.persistentBytes += length;
+        if(atomic && (transactionDepth > 0)) {
+            counters.journaledBytes += length;
+            commitUsed += length;
+            if(commitUsed > counters.maxCommitUsed) {
+                counters.maxCommitUsed = commitUsed;
+            }
+            if(commitUsed > commitCapacity) {
+                TransactionException.throwIt(TransactionException.BUFFER_FULL);
+            }
+        }
+    }
+
+    public void countCopy(final int length) {
+        counters.copiedBytes += length;
+    }
+
+    public void countFill(final int length) {
+        counters.filledBytes += length;
+    }
+
+    public void countCrypto(final String operation) {
+        counters.countCrypto(operation);
+    }
+}
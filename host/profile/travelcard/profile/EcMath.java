@@ -0,0 +1,115 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.math.BigInteger;
+
+/* Affine short Weierstrass arithmetic over GF(p), enough for keygen and ECDSA. */
+final class EcMath {
+
+    private static final BigInteger TWO = BigInteger.valueOf(2);
+    private static final BigInteger THREE = BigInteger.valueOf(3);
+
+    final BigInteger p, a, b, n;
+    final BigInteger[] g;
+    final int len;
+
+    EcMath(final byte[] field, final byte[] a, final byte[] b, final byte[] g, final byte[] r) {
+        this.p = new BigInteger(1, field);
+        this.a = new BigInteger(1, a);
+        this.b = new BigInteger(1, b);
+        this.n = new BigInteger(1, r);
+        this.len = (p.bitLength() + 7) / 8;
+        this.g = decode(g);
+    }
+
+    BigInteger[] decode(final byte[] w) {
+        if((w.length != 1 + 2 * len) || (w[0] != 0x04)) {
+            throw new IllegalArgumentException("only uncompressed points are supported");
+        }
+        final byte[] x = new byte[len];
+        final byte[] y = new byte[len];
+        System.arraycopy(w, 1, x, 0, len);
+        System.arraycopy(w, 1 + len, y, 0, len);
+        return new BigInteger[]{ new BigInteger(1, x), new BigInteger(1, y) };
+    }
+
+    byte[] encode(final BigInteger[] pt) {
+        final byte[] out = new byte[1 + 2 * len];
+        out[0] = 0x04;
+        System.arraycopy(StandInKeys.fixed(pt[0], len), 0, out, 1, len);
+        System.arraycopy(StandInKeys.fixed(pt[1], len), 0, out, 1 + len, len);
+        return out;
+    }
+
+    private BigInteger[] add(final BigInteger[] u, final BigInteger[] v) {
+        if(u == null) {
+            return v;
+        }
+        if(v == null) {
+            return u;
+        }
+        final BigInteger l;
+        if(u[0].equals(v[0])) {
+            if(!u[1].equals(v[1]) || (u[1].signum() == 0)) {
+                return null;
+            }
+            l = THREE.multiply(u[0].pow(2)).add(a).multiply(TWO.multiply(u[1]).modInverse(p)).mod(p);
+        } else {
+            l = v[1].subtract(u[1]).multiply(v[0].subtract(u[0]).modInverse(p)).mod(p);
+        }
+        final BigInteger x = l.pow(2).subtract(u[0]).subtract(v[0]).mod(p);
+        final BigInteger y = l.multiply(u[0].subtract(x)).subtract(u[1]).mod(p);
+        return new BigInteger[]{ x, y };
+    }
+
+    BigInteger[] multiply(final BigInteger[] pt, final BigInteger k) {
+        BigInteger[] r = null;
+        for(int i = k.bitLength() - 1; i >= 0; --i) {
+            r = add(r, r);
+            if(k.testBit(i)) {
+                r = add(r, pt);
+            }
+        }
+        return r;
+    }
+
+    /* Returns { r, s }. */
+    BigInteger[] sign(final byte[] s, final byte[] hash) {
+        final BigInteger d = new BigInteger(1, s);
+        BigInteger e = new BigInteger(1, hash);
+        if(hash.length * 8 > n.bitLength()) {
+            e = e.shiftRight(hash.length * 8 - n.bitLength());
+        }
+        while(true) {
+            final BigInteger k = new BigInteger(n.bitLength(), StandInCrypto.RANDOM);
+            if((k.signum() == 0) || (k.compareTo(n) >= 0)) {
+                continue;
+            }
+            final BigInteger r = multiply(g, k)[0].mod(n);
+            if(r.signum() == 0) {
+                continue;
+            }
+            final BigInteger sig = k.modInverse(n).multiply(e.add(r.multiply(d))).mod(n);
+            if(sig.signum() != 0) {
+                return new BigInteger[]{ r, sig };
+            }
+        }
+    }
+}
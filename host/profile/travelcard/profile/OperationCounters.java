@@ -0,0 +1,103 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/* Costs observed while the applet processed one APDU. */
+public final class OperationCounters {
+
+    int persistentBytes;
+    int transientBytes;
+    int journaledBytes;
+    int copiedBytes;
+    int filledBytes;
+    int transactionsBegun;
+    int transactionsCommitted;
+    int transactionsAborted;
+    int maxCommitUsed;
+    final Map<String, Integer> crypto = new TreeMap<String, Integer>();
+
+    void reset() {
+        persistentBytes = 0;
+        transientBytes = 0;
+        journaledBytes = 0;
+        copiedBytes = 0;
+        filledBytes = 0;
+        transactionsBegun = 0;
+        transactionsCommitted = 0;
+        transactionsAborted = 0;
+        maxCommitUsed = 0;
+        crypto.clear();
+    }
+
+    void countCrypto(final String operation) {
+        final Integer n = crypto.get(operation);
+        crypto.put(operation, (n == null) ? 1 : (n + 1));
+    }
+
+    public int persistentBytes() {
+        return persistentBytes;
+    }
+
+    public int transientBytes() {
+        return transientBytes;
+    }
+
+    public int journaledBytes() {
+        return journaledBytes;
+    }
+
+    public int copiedBytes() {
+        return copiedBytes;
+    }
+
+    public int filledBytes() {
+        return filledBytes;
+    }
+
+    public int transactionsBegun() {
+        return transactionsBegun;
+    }
+
+    public int transactionsCommitted() {
+        return transactionsCommitted;
+    }
+
+    public int transactionsAborted() {
+        return transactionsAborted;
+    }
+
+    public int maxCommitUsed() {
+        return maxCommitUsed;
+    }
+
+    public int cryptoOperations() {
+        int n = 0;
+        for(final Integer i : crypto.values()) {
+            n += i;
+        }
+        return n;
+    }
+
+    public Map<String, Integer> crypto() {
+        return crypto;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javacard.framework.Applet;
+
+/*
+  Runs a script of APDUs against the applet and reports the costs of each
+  one. A script line is
+
+    label hex-apdu [budget ...]
+
+  where the APDU may use (XX*n) to repeat byte XX n times, and a budget
+  is name<=value with name among persistent, transient, journal, commit,
+  tx, copy, fill and crypto. Lines starting with '#' are comments, and
+  the line 'reset' power cycles the card.
+
+  The exit status is 1 when a budget is exceeded or when a status word
+  differs from the expected one (sw=XXXX, 9000 by default, '*' for any).
+*/
+public final class Profiler {
+
+    private static final String APPLET_CLASS = "travelcard.TravelCardApplet";
+    private static final String APPLET_AID = "A0000007810101002A01020304050607";
+
+    private static final Pattern REPEAT = Pattern.compile("\\(([0-9A-Fa-f]{2})\\*([0-9]+)\\)");
+
+    private Profiler() {
+    }
+
+    static byte[] unhex(final String s) {
+        final StringBuffer sb = new StringBuffer();
+        final Matcher m = REPEAT.matcher(s);
+        while(m.find()) {
+            final StringBuilder r = new StringBuilder();
+            for(int i = Integer.parseInt(m.group(2)); i > 0; --i) {
+                r.append(m.group(1));
+            }
+            m.appendReplacement(sb, r.toString());
+        }
+        m.appendTail(sb);
+        final String h = sb.toString();
+        if((h.length() % 2) != 0) {
+            throw new IllegalArgumentException("odd number of digits in " + s);
+        }
+        final byte[] res = new byte[h.length() / 2];
+        for(int i = 0; i < res.length; ++i) {
+            res[i] = (byte)Integer.parseInt(h.substring(2 * i, 2 * i + 2), 16);
+        }
+        return res;
+    }
+
+    static Map<String, Integer> measures(final OperationCounters c) {
+        final Map<String, Integer> m = new LinkedHashMap<String, Integer>();
+        m.put("persistent", c.persistentBytes());
+        m.put("transient", c.transientBytes());
+        m.put("journal", c.journaledBytes());
+        m.put("commit", c.maxCommitUsed());
+        m.put("tx", c.transactionsBegun());
+        m.put("copy", c.copiedBytes());
+        m.put("fill", c.filledBytes());
+        m.put("crypto", c.cryptoOperations());
+        return m;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static void main(final String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("usage: Profiler script [install-parameters]");
+            System.exit(2);
+        }
+
+        final PrintStream out = System.out;
+        final CardRuntime card = new CardRuntime();
+        card.install((Class<? extends Applet>)Class.forName(APPLET_CLASS),
+                     unhex(APPLET_AID), (args.length > 1) ? unhex(args[1]) : null);
+
+        int failures = 0;
+        final BufferedReader r = new BufferedReader(new FileReader(args[0]));
+        try {
+            out.printf("%-24s %6s %10s %9s %7s %6s %3s %6s %6s %6s  %s%n",
+                       "command", "sw", "persistent", "transient", "journal",
+                       "commit", "tx", "copy", "fill", "crypto", "operations");
+            String line;
+            int lineno = 0;
+            while((line = r.readLine()) != null) {
+                ++lineno;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if(line.equals("reset")) {
+                    card.reset();
+                    continue;
+                }
+
+                final String[] fields = line.split("\\s+");
+                if(fields.length < 2) {
+                    throw new IOException(args[0] + ":" + lineno + ": missing APDU");
+                }
+
+                final byte[] resp = card.transmit(unhex(fields[1]));
+                final int sw = ((resp[resp.length - 2] & 0xff) << 8) | (resp[resp.length - 1] & 0xff);
+                final OperationCounters c = card.counters();
+                final Map<String, Integer> m = measures(c);
+
+                out.printf("%-24s %04X %10d %9d %7d %6d %3d %6d %6d %6d  %s%n",
+                           fields[0], sw, m.get("persistent"), m.get("transient"),
+                           m.get("journal"), m.get("commit"), m.get("tx"),
+                           m.get("copy"), m.get("fill"), m.get("crypto"), c.crypto());
+
+                String expected = "9000";
+                final List<String> over = new ArrayList<String>();
+                for(int i = 2; i < fields.length; ++i) {
+                    if(fields[i].startsWith("sw=")) {
+                        expected = fields[i].substring(3);
+                        continue;
+                    }
+                    final int sep = fields[i].indexOf("<=");
+                    if(sep < 0) {
+                        throw new IOException(args[0] + ":" + lineno + ": bad budget " + fields[i]);
+                    }
+                    final String name = fields[i].substring(0, sep);
+                    final Integer value = m.get(name);
+                    if(value == null) {
+                        throw new IOException(args[0] + ":" + lineno + ": unknown measure " + name);
+                    }
+                    if(value > Integer.parseInt(fields[i].substring(sep + 2))) {
+                        over.add(name + "=" + value + " > " + fields[i].substring(sep + 2));
+                    }
+                }
+                if(!expected.equals("*") && (Integer.parseInt(expected, 16) != sw)) {
+                    over.add(String.format("sw=%04X != %s", sw, expected));
+                }
+                for(final String o : over) {
+                    out.println("  OVER BUDGET " + fields[0] + ": " + o);
+                }
+                failures += over.size();
+            }
+        } finally {
+            r.close();
+        }
+
+        if(failures > 0) {
+            out.println(failures + " budget(s) exceeded");
+            System.exit(1);
+        }
+    }
+}
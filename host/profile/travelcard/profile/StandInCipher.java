@@ -0,0 +1,79 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import javacard.security.CryptoException;
+import javacard.security.Key;
+import javacardx.crypto.Cipher;
+
+/* Only the private-key direction of RSA is modelled: that is all the applet uses. */
+final class StandInCipher extends Cipher {
+
+    private final byte pad;
+    private StandInKeys.RsaCrtPrivate key;
+
+    StandInCipher(final byte pad) {
+        this.pad = pad;
+    }
+
+    public void init(final Key theKey, final byte theMode) {
+        if(!(theKey instanceof StandInKeys.RsaCrtPrivate) || (theMode != MODE_ENCRYPT)) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+        if(!theKey.isInitialized()) {
+            CryptoException.throwIt(CryptoException.UNINITIALIZED_KEY);
+        }
+        key = (StandInKeys.RsaCrtPrivate)theKey;
+    }
+
+    public void init(final Key theKey, final byte theMode, final byte[] b, final short off, final short len) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+    }
+
+    public byte getAlgorithm() {
+        return (pad == PAD_PKCS1) ? ALG_RSA_PKCS1 : ALG_RSA_NOPAD;
+    }
+
+    public byte getCipherAlgorithm() {
+        return CIPHER_RSA;
+    }
+
+    public byte getPaddingAlgorithm() {
+        return pad;
+    }
+
+    public short doFinal(final byte[] in, final short off, final short len,
+                         final byte[] out, final short outOff) {
+        if(key == null) {
+            CryptoException.throwIt(CryptoException.INVALID_INIT);
+        }
+        final byte[] t = new byte[len];
+        System.arraycopy(in, off, t, 0, len);
+        final byte[] r = (pad == PAD_PKCS1) ? StandInCrypto.rsaPrivate(key, t) : StandInCrypto.rsaRaw(key, t);
+        System.arraycopy(r, 0, out, outOff, r.length);
+        CardRuntime.current().countWrite(out, r.length, false);
+        return (short)r.length;
+    }
+
+    public short update(final byte[] in, final short off, final short len,
+                        final byte[] out, final short outOff) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+        return 0;
+    }
+}
@@ -0,0 +1,270 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.math.BigInteger;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Arrays;
+
+import javacard.security.CryptoException;
+import javacard.security.Key;
+import javacard.security.KeyBuilder;
+import javacard.security.MessageDigest;
+import javacard.security.PrivateKey;
+import javacard.security.PublicKey;
+import javacard.security.RandomData;
+import javacard.security.Signature;
+import javacardx.crypto.Cipher;
+
+/* Factories and algorithms behind the javacard.security stand-ins. */
+public final class StandInCrypto {
+
+    /* Platform feature switches, so a profile can model older chips. */
+    public static boolean PLAIN_ECDSA_SUPPORTED = true;
+    public static boolean RSA_PRECOMPUTED_HASH_SUPPORTED = true;
+    public static boolean RSA_CIPHER_SUPPORTED = true;
+
+    static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final byte SIG_CIPHER_ECDSA_PLAIN = 9;
+
+    private StandInCrypto() {
+    }
+
+    public static Key buildKey(final byte type, final short length) {
+        final int bytes = (length + 7) / 8;
+        final Key k;
+        switch(type) {
+        case KeyBuilder.TYPE_RSA_PUBLIC:
+            k = new StandInKeys.RsaPublic(type, length);
+            CardRuntime.current().allocate(bytes + 4 + 16, 0);
+            break;
+        case KeyBuilder.TYPE_RSA_CRT_PRIVATE:
+            k = new StandInKeys.RsaCrtPrivate(type, length);
+            CardRuntime.current().allocate(5 * (bytes / 2) + 16, 0);
+            break;
+        case KeyBuilder.TYPE_EC_FP_PUBLIC:
+            k = new StandInKeys.EcPublic(type, length);
+            CardRuntime.current().allocate(7 * bytes + 16, 0);
+            break;
+        case KeyBuilder.TYPE_EC_FP_PRIVATE:
+            k = new StandInKeys.EcPrivate(type, length);
+            CardRuntime.current().allocate(6 * bytes + 16, 0);
+            break;
+        default:
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+            return null;
+        }
+        return k;
+    }
+
+    public static void genKeyPair(final PublicKey pub, final PrivateKey priv) {
+        if((pub instanceof StandInKeys.RsaPublic) && (priv instanceof StandInKeys.RsaCrtPrivate)) {
+            genRsa((StandInKeys.RsaPublic)pub, (StandInKeys.RsaCrtPrivate)priv);
+            return;
+        }
+        if((pub instanceof StandInKeys.EcPublic) && (priv instanceof StandInKeys.EcPrivate)) {
+            genEc((StandInKeys.EcPublic)pub, (StandInKeys.EcPrivate)priv);
+            return;
+        }
+        CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+    }
+
+    private static void genRsa(final StandInKeys.RsaPublic pub, final StandInKeys.RsaCrtPrivate priv) {
+        CardRuntime.current().countCrypto("genKeyPair RSA-" + pub.getSize());
+        final BigInteger e = (pub.exponent != null) ? new BigInteger(1, pub.exponent) : BigInteger.valueOf(65537);
+        try {
+            final KeyPairGenerator g = KeyPairGenerator.getInstance("RSA");
+            g.initialize(new RSAKeyGenParameterSpec(pub.getSize(), e), RANDOM);
+            final java.security.KeyPair kp = g.generateKeyPair();
+            final RSAPublicKey jpub = (RSAPublicKey)kp.getPublic();
+            final RSAPrivateCrtKey jpriv = (RSAPrivateCrtKey)kp.getPrivate();
+            final int n = (pub.getSize() + 7) / 8;
+            pub.modulus = StandInKeys.fixed(jpub.getModulus(), n);
+            pub.exponent = StandInKeys.unsigned(jpub.getPublicExponent());
+            priv.p = StandInKeys.fixed(jpriv.getPrimeP(), n / 2);
+            priv.q = StandInKeys.fixed(jpriv.getPrimeQ(), n / 2);
+            priv.dp = StandInKeys.fixed(jpriv.getPrimeExponentP(), n / 2);
+            priv.dq = StandInKeys.fixed(jpriv.getPrimeExponentQ(), n / 2);
+            priv.pq = StandInKeys.fixed(jpriv.getCrtCoefficient(), n / 2);
+        } catch(final java.security.GeneralSecurityException ex) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+    }
+
+    private static void genEc(final StandInKeys.EcPublic pub, final StandInKeys.EcPrivate priv) {
+        final StandInKeys.EcDomain d = pub.domain.isComplete() ? pub.domain : priv.domain;
+        if(!d.isComplete()) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+        CardRuntime.current().countCrypto("genKeyPair EC-" + pub.getSize());
+        final EcMath curve = d.curve();
+        BigInteger s;
+        do {
+            s = new BigInteger(curve.n.bitLength(), RANDOM);
+        } while((s.signum() == 0) || (s.compareTo(curve.n) >= 0));
+        final BigInteger[] w = curve.multiply(curve.g, s);
+        pub.domain.copyFrom(d);
+        priv.domain.copyFrom(d);
+        pub.w = curve.encode(w);
+        priv.s = StandInKeys.fixed(s, (curve.n.bitLength() + 7) / 8);
+    }
+
+    public static Signature signature(final byte algorithm) {
+        switch(algorithm) {
+        case Signature.ALG_ECDSA_SHA:
+            return signature(MessageDigest.ALG_SHA, Signature.SIG_CIPHER_ECDSA, Cipher.PAD_NULL);
+        case Signature.ALG_ECDSA_SHA_224:
+            return signature(MessageDigest.ALG_SHA_224, Signature.SIG_CIPHER_ECDSA, Cipher.PAD_NULL);
+        case Signature.ALG_ECDSA_SHA_256:
+            return signature(MessageDigest.ALG_SHA_256, Signature.SIG_CIPHER_ECDSA, Cipher.PAD_NULL);
+        case Signature.ALG_ECDSA_SHA_384:
+            return signature(MessageDigest.ALG_SHA_384, Signature.SIG_CIPHER_ECDSA, Cipher.PAD_NULL);
+        case Signature.ALG_ECDSA_SHA_512:
+            return signature(MessageDigest.ALG_SHA_512, Signature.SIG_CIPHER_ECDSA, Cipher.PAD_NULL);
+        case Signature.ALG_RSA_SHA_PKCS1:
+            return signature(MessageDigest.ALG_SHA, Signature.SIG_CIPHER_RSA, Cipher.PAD_PKCS1);
+        case Signature.ALG_RSA_SHA_256_PKCS1:
+            return signature(MessageDigest.ALG_SHA_256, Signature.SIG_CIPHER_RSA, Cipher.PAD_PKCS1);
+        default:
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+            return null;
+        }
+    }
+
+    public static Signature signature(final byte md, final byte cipher, final byte pad) {
+        if(digestName(md) == null) {
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+        }
+        if((cipher == Signature.SIG_CIPHER_RSA) && (pad == Cipher.PAD_PKCS1) && RSA_PRECOMPUTED_HASH_SUPPORTED) {
+            CardRuntime.current().allocate(48, 96);
+            return new StandInSignature(md, cipher, pad);
+        }
+        if(cipher == Signature.SIG_CIPHER_ECDSA ||
+           ((cipher == SIG_CIPHER_ECDSA_PLAIN) && PLAIN_ECDSA_SUPPORTED)) {
+            CardRuntime.current().allocate(48, 96);
+            return new StandInSignature(md, cipher, pad);
+        }
+        CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+        return null;
+    }
+
+    public static Cipher cipher(final byte cipher, final byte pad) {
+        if((cipher != Cipher.CIPHER_RSA) || ((pad != Cipher.PAD_PKCS1) && (pad != Cipher.PAD_NOPAD)) ||
+           !RSA_CIPHER_SUPPORTED) {
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+        }
+        CardRuntime.current().allocate(32, 32);
+        return new StandInCipher(pad);
+    }
+
+    public static MessageDigest digest(final byte algorithm) {
+        if(digestName(algorithm) == null) {
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+        }
+        CardRuntime.current().allocate(24, 112);
+        return new StandInDigest(algorithm);
+    }
+
+    public static RandomData random(final byte algorithm) {
+        CardRuntime.current().allocate(16, 32);
+        return new RandomData() {
+            public void generateData(final byte[] buffer, final short offset, final short length) {
+                CardRuntime.current().countCrypto("random");
+                final byte[] r = new byte[length];
+                RANDOM.nextBytes(r);
+                System.arraycopy(r, 0, buffer, offset, length);
+            }
+
+            public void setSeed(final byte[] buffer, final short offset, final short length) {
+            }
+        };
+    }
+
+    static String digestName(final byte md) {
+        switch(md) {
+        case MessageDigest.ALG_SHA:
+            return "SHA-1";
+        case MessageDigest.ALG_SHA_224:
+            return "SHA-224";
+        case MessageDigest.ALG_SHA_256:
+            return "SHA-256";
+        case MessageDigest.ALG_SHA_384:
+            return "SHA-384";
+        case MessageDigest.ALG_SHA_512:
+            return "SHA-512";
+        default:
+            return null;
+        }
+    }
+
+    static byte[] digestInfoPrefix(final byte md) {
+        switch(md) {
+        case MessageDigest.ALG_SHA:
+            return hex("3021300906052b0e03021a05000414");
+        case MessageDigest.ALG_SHA_224:
+            return hex("302d300d06096086480165030402040500041c");
+        case MessageDigest.ALG_SHA_256:
+            return hex("3031300d060960864801650304020105000420");
+        case MessageDigest.ALG_SHA_384:
+            return hex("3041300d060960864801650304020205000430");
+        case MessageDigest.ALG_SHA_512:
+            return hex("3051300d060960864801650304020305000440");
+        default:
+            return null;
+        }
+    }
+
+    static byte[] hex(final String s) {
+        final byte[] b = new byte[s.length() / 2];
+        for(int i = 0; i < b.length; ++i) {
+            b[i] = (byte)Integer.parseInt(s.substring(2 * i, 2 * i + 2), 16);
+        }
+        return b;
+    }
+
+    /* EMSA-PKCS1-v1_5 block type 1 followed by the CRT private operation. */
+    static byte[] rsaPrivate(final StandInKeys.RsaCrtPrivate k, final byte[] t) {
+        final int n = (k.getSize() + 7) / 8;
+        if(t.length > n - 11) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+        }
+        final byte[] em = new byte[n];
+        em[1] = 0x01;
+        Arrays.fill(em, 2, n - t.length - 1, (byte)0xff);
+        System.arraycopy(t, 0, em, n - t.length, t.length);
+        return rsaRaw(k, em);
+    }
+
+    static byte[] rsaRaw(final StandInKeys.RsaCrtPrivate k, final byte[] em) {
+        CardRuntime.current().countCrypto("RSA-" + k.getSize() + " private");
+        final int n = (k.getSize() + 7) / 8;
+        final BigInteger m = new BigInteger(1, em);
+        final BigInteger p = new BigInteger(1, k.p);
+        final BigInteger q = new BigInteger(1, k.q);
+        final BigInteger m1 = m.modPow(new BigInteger(1, k.dp), p);
+        final BigInteger m2 = m.modPow(new BigInteger(1, k.dq), q);
+        final BigInteger h = new BigInteger(1, k.pq).multiply(m1.subtract(m2)).mod(p);
+        return StandInKeys.fixed(m2.add(h.multiply(q)), n);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import javacard.security.CryptoException;
+import javacard.security.MessageDigest;
+
+final class StandInDigest extends MessageDigest {
+
+    private final byte algorithm;
+    private final java.security.MessageDigest md;
+
+    StandInDigest(final byte algorithm) {
+        this.algorithm = algorithm;
+        try {
+            md = java.security.MessageDigest.getInstance(StandInCrypto.digestName(algorithm));
+        } catch(final java.security.NoSuchAlgorithmException e) {
+            throw new CryptoException(CryptoException.NO_SUCH_ALGORITHM);
+        }
+    }
+
+    public byte getAlgorithm() {
+        return algorithm;
+    }
+
+    public byte getLength() {
+        return (byte)md.getDigestLength();
+    }
+
+    public short doFinal(final byte[] in, final short inOff, final short inLen,
+                         final byte[] out, final short outOff) {
+        CardRuntime.current().countCrypto(StandInCrypto.digestName(algorithm));
+        md.update(in, inOff, inLen);
+        final byte[] d = md.digest();
+        System.arraycopy(d, 0, out, outOff, d.length);
+        CardRuntime.current().countWrite(out, d.length, false);
+        return (short)d.length;
+    }
+
+    public void update(final byte[] in, final short inOff, final short inLen) {
+        md.update(in, inOff, inLen);
+    }
+
+    public void reset() {
+        md.reset();
+    }
+}
@@ -0,0 +1,313 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import javacard.security.CryptoException;
+import javacard.security.ECPrivateKey;
+import javacard.security.ECPublicKey;
+import javacard.security.RSAPrivateCrtKey;
+import javacard.security.RSAPublicKey;
+
+/* Key containers behind KeyBuilder.buildKey. */
+final class StandInKeys {
+
+    private StandInKeys() {
+    }
+
+    static byte[] fixed(final BigInteger v, final int len) {
+        final byte[] raw = v.toByteArray();
+        final byte[] out = new byte[len];
+        if(raw.length >= len) {
+            System.arraycopy(raw, raw.length - len, out, 0, len);
+        } else {
+            System.arraycopy(raw, 0, out, len - raw.length, raw.length);
+        }
+        return out;
+    }
+
+    static byte[] unsigned(final BigInteger v) {
+        return fixed(v, (v.bitLength() + 7) / 8);
+    }
+
+    static byte[] copy(final byte[] buf, final short off, final short len) {
+        CardRuntime.current().countWrite(new Object(), len, false);
+        return Arrays.copyOfRange(buf, off, off + len);
+    }
+
+    static short put(final byte[] value, final byte[] buf, final short off) {
+        if(value == null) {
+            CryptoException.throwIt(CryptoException.UNINITIALIZED_KEY);
+        }
+        System.arraycopy(value, 0, buf, off, value.length);
+        CardRuntime.current().countWrite(buf, value.length, false);
+        return (short)value.length;
+    }
+
+    abstract static class Base {
+        private final byte type;
+        private final short size;
+
+        Base(final byte type, final short size) {
+            this.type = type;
+            this.size = size;
+        }
+
+        public byte getType() {
+            return type;
+        }
+
+        public short getSize() {
+            return size;
+        }
+    }
+
+    static final class RsaPublic extends Base implements RSAPublicKey {
+        byte[] modulus;
+        byte[] exponent;
+
+        RsaPublic(final byte type, final short size) {
+            super(type, size);
+        }
+
+        public boolean isInitialized() {
+            return (modulus != null) && (exponent != null);
+        }
+
+        public void clearKey() {
+            modulus = null;
+            exponent = null;
+        }
+
+        public void setModulus(final byte[] b, final short off, final short len) {
+            modulus = copy(b, off, len);
+        }
+
+        public void setExponent(final byte[] b, final short off, final short len) {
+            exponent = copy(b, off, len);
+        }
+
+        public short getModulus(final byte[] b, final short off) {
+            return put(modulus, b, off);
+        }
+
+        public short getExponent(final byte[] b, final short off) {
+            return put(exponent, b, off);
+        }
+    }
+
+    static final class RsaCrtPrivate extends Base implements RSAPrivateCrtKey {
+        byte[] p, q, dp, dq, pq;
+
+        RsaCrtPrivate(final byte type, final short size) {
+            super(type, size);
+        }
+
+        public boolean isInitialized() {
+            return (p != null) && (q != null) && (dp != null) && (dq != null) && (pq != null);
+        }
+
+        public void clearKey() {
+            p = q = dp = dq = pq = null;
+        }
+
+        public void setP(final byte[] b, final short off, final short len) {
+            p = copy(b, off, len);
+        }
+
+        public void setQ(final byte[] b, final short off, final short len) {
+            q = copy(b, off, len);
+        }
+
+        public void setDP1(final byte[] b, final short off, final short len) {
+            dp = copy(b, off, len);
+        }
+
+        public void setDQ1(final byte[] b, final short off, final short len) {
+            dq = copy(b, off, len);
+        }
+
+        public void setPQ(final byte[] b, final short off, final short len) {
+            pq = copy(b, off, len);
+        }
+
+        public short getP(final byte[] b, final short off) {
+            return put(p, b, off);
+        }
+
+        public short getQ(final byte[] b, final short off) {
+            return put(q, b, off);
+        }
+
+        public short getDP1(final byte[] b, final short off) {
+            return put(dp, b, off);
+        }
+
+        public short getDQ1(final byte[] b, final short off) {
+            return put(dq, b, off);
+        }
+
+        public short getPQ(final byte[] b, final short off) {
+            return put(pq, b, off);
+        }
+    }
+
+    static final class EcDomain {
+        byte[] field, a, b, g, r;
+        short k;
+
+        boolean isComplete() {
+            return (field != null) && (a != null) && (b != null) && (g != null) && (r != null) && (k != 0);
+        }
+
+        void copyFrom(final EcDomain d) {
+            field = d.field;
+            a = d.a;
+            b = d.b;
+            g = d.g;
+            r = d.r;
+            k = d.k;
+        }
+
+        void clear() {
+            field = a = b = g = r = null;
+            k = 0;
+        }
+
+        EcMath curve() {
+            return new EcMath(field, a, b, g, r);
+        }
+    }
+
+    abstract static class Ec extends Base {
+        final EcDomain domain = new EcDomain();
+
+        Ec(final byte type, final short size) {
+            super(type, size);
+        }
+
+        public void setFieldFP(final byte[] b, final short off, final short len) {
+            domain.field = copy(b, off, len);
+        }
+
+        public void setFieldF2M(final short e) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+
+        public void setFieldF2M(final short e1, final short e2, final short e3) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+
+        public void setA(final byte[] b, final short off, final short len) {
+            domain.a = copy(b, off, len);
+        }
+
+        public void setB(final byte[] b, final short off, final short len) {
+            domain.b = copy(b, off, len);
+        }
+
+        public void setG(final byte[] b, final short off, final short len) {
+            domain.g = copy(b, off, len);
+        }
+
+        public void setR(final byte[] b, final short off, final short len) {
+            domain.r = copy(b, off, len);
+        }
+
+        public void setK(final short k) {
+            domain.k = k;
+        }
+
+        public short getField(final byte[] b, final short off) {
+            return put(domain.field, b, off);
+        }
+
+        public short getA(final byte[] b, final short off) {
+            return put(domain.a, b, off);
+        }
+
+        public short getB(final byte[] b, final short off) {
+            return put(domain.b, b, off);
+        }
+
+        public short getG(final byte[] b, final short off) {
+            return put(domain.g, b, off);
+        }
+
+        public short getR(final byte[] b, final short off) {
+            return put(domain.r, b, off);
+        }
+
+        public short getK() {
+            return domain.k;
+        }
+    }
+
+    static final class EcPublic extends Ec implements ECPublicKey {
+        byte[] w;
+
+        EcPublic(final byte type, final short size) {
+            super(type, size);
+        }
+
+        public boolean isInitialized() {
+            return domain.isComplete() && (w != null);
+        }
+
+        public void clearKey() {
+            domain.clear();
+            w = null;
+        }
+
+        public void setW(final byte[] b, final short off, final short len) {
+            w = copy(b, off, len);
+        }
+
+        public short getW(final byte[] b, final short off) {
+            return put(w, b, off);
+        }
+    }
+
+    static final class EcPrivate extends Ec implements ECPrivateKey {
+        byte[] s;
+
+        EcPrivate(final byte type, final short size) {
+            super(type, size);
+        }
+
+        public boolean isInitialized() {
+            return domain.isComplete() && (s != null);
+        }
+
+        public void clearKey() {
+            domain.clear();
+            s = null;
+        }
+
+        public void setS(final byte[] b, final short off, final short len) {
+            s = copy(b, off, len);
+        }
+
+        public short getS(final byte[] b, final short off) {
+            return put(s, b, off);
+        }
+    }
+}
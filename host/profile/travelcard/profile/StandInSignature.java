@@ -0,0 +1,173 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+
+import javacard.security.CryptoException;
+import javacard.security.Key;
+import javacard.security.Signature;
+
+final class StandInSignature extends Signature {
+
+    private final byte md;
+    private final byte cipher;
+    private final byte pad;
+    private Key key;
+    private byte mode;
+
+    StandInSignature(final byte md, final byte cipher, final byte pad) {
+        this.md = md;
+        this.cipher = cipher;
+        this.pad = pad;
+    }
+
+    public void init(final Key theKey, final byte theMode) {
+        if(!theKey.isInitialized()) {
+            CryptoException.throwIt(CryptoException.UNINITIALIZED_KEY);
+        }
+        if(cipher == SIG_CIPHER_RSA) {
+            if(!(theKey instanceof StandInKeys.RsaCrtPrivate)) {
+                CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+            }
+        } else if(!(theKey instanceof StandInKeys.EcPrivate)) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+        if(theMode != MODE_SIGN) {
+            CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+        }
+        key = theKey;
+        mode = theMode;
+    }
+
+    public void init(final Key theKey, final byte theMode, final byte[] b, final short off, final short len) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_VALUE);
+    }
+
+    public void setInitialDigest(final byte[] s, final short so, final short sl,
+                                 final byte[] l, final short lo, final short ll) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+    }
+
+    public byte getAlgorithm() {
+        return 0;
+    }
+
+    public byte getMessageDigestAlgorithm() {
+        return md;
+    }
+
+    public byte getCipherAlgorithm() {
+        return cipher;
+    }
+
+    public byte getPaddingAlgorithm() {
+        return pad;
+    }
+
+    public short getLength() {
+        return (short)((key.getSize() + 7) / 8);
+    }
+
+    public void update(final byte[] in, final short off, final short len) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+    }
+
+    public short sign(final byte[] in, final short off, final short len,
+                      final byte[] sig, final short sigOff) {
+        try {
+            final java.security.MessageDigest d =
+                java.security.MessageDigest.getInstance(StandInCrypto.digestName(md));
+            d.update(in, off, len);
+            final byte[] h = d.digest();
+            return signPreComputedHash(h, (short)0, (short)h.length, sig, sigOff);
+        } catch(final java.security.NoSuchAlgorithmException e) {
+            CryptoException.throwIt(CryptoException.NO_SUCH_ALGORITHM);
+            return 0;
+        }
+    }
+
+    public short signPreComputedHash(final byte[] hash, final short off, final short len,
+                                     final byte[] sig, final short sigOff) {
+        if((key == null) || (mode != MODE_SIGN)) {
+            CryptoException.throwIt(CryptoException.INVALID_INIT);
+        }
+        final byte[] h = new byte[len];
+        System.arraycopy(hash, off, h, 0, len);
+        final byte[] out;
+        if(cipher == SIG_CIPHER_RSA) {
+            final byte[] prefix = StandInCrypto.digestInfoPrefix(md);
+            if(len != prefix[prefix.length - 1]) {
+                CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+            }
+            final byte[] t = new byte[prefix.length + len];
+            System.arraycopy(prefix, 0, t, 0, prefix.length);
+            System.arraycopy(h, 0, t, prefix.length, len);
+            out = StandInCrypto.rsaPrivate((StandInKeys.RsaCrtPrivate)key, t);
+        } else {
+            final StandInKeys.EcPrivate k = (StandInKeys.EcPrivate)key;
+            final EcMath curve = k.domain.curve();
+            CardRuntime.current().countCrypto("ECDSA-" + k.getSize() + ((cipher == SIG_CIPHER_ECDSA) ? "" : " plain"));
+            final BigInteger[] rs = curve.sign(k.s, h);
+            if(cipher == SIG_CIPHER_ECDSA) {
+                out = der(rs[0], rs[1]);
+            } else {
+                final int n = (curve.n.bitLength() + 7) / 8;
+                out = new byte[2 * n];
+                System.arraycopy(StandInKeys.fixed(rs[0], n), 0, out, 0, n);
+                System.arraycopy(StandInKeys.fixed(rs[1], n), 0, out, n, n);
+            }
+        }
+        System.arraycopy(out, 0, sig, sigOff, out.length);
+        CardRuntime.current().countWrite(sig, out.length, false);
+        return (short)out.length;
+    }
+
+    private static byte[] der(final BigInteger r, final BigInteger s) {
+        final byte[] rb = r.toByteArray();
+        final byte[] sb = s.toByteArray();
+        final ByteArrayOutputStream o = new ByteArrayOutputStream();
+        final int body = 2 + rb.length + 2 + sb.length;
+        o.write(0x30);
+        if(body > 0x7f) {
+            o.write(0x81);
+        }
+        o.write(body);
+        o.write(0x02);
+        o.write(rb.length);
+        o.write(rb, 0, rb.length);
+        o.write(0x02);
+        o.write(sb.length);
+        o.write(sb, 0, sb.length);
+        return o.toByteArray();
+    }
+
+    public boolean verify(final byte[] in, final short off, final short len,
+                          final byte[] sig, final short sigOff, final short sigLen) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+        return false;
+    }
+
+    public boolean verifyPreComputedHash(final byte[] in, final short off, final short len,
+                                         final byte[] sig, final short sigOff, final short sigLen) {
+        CryptoException.throwIt(CryptoException.ILLEGAL_USE);
+        return false;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* Key algorithms of the card, with their algorithm attributes (DO C3) */
+public enum Algorithm {
+
+    RSA_2048("rsa2048", "010800001103", null),
+    P_256("p256", "122A8648CE3D030107", "secp256r1"),
+    P_384("p384", "122B81040022", "secp384r1"),
+    P_521("p521", "122B81040023", "secp521r1"),
+    BRAINPOOL_P256R1("brainpoolP256r1", "122B2403030208010107", "brainpoolP256r1"),
+    BRAINPOOL_P384R1("brainpoolP384r1", "122B240303020801010B", "brainpoolP384r1");
+
+    private final String id;
+    private final byte[] attributes;
+    private final String curve;
+
+    Algorithm(final String id, final String attributes, final String curve) {
+        this.id = id;
+        this.attributes = Apdus.unhex(attributes);
+        this.curve = curve;
+    }
+
+    /* Standard name of the curve, null for RSA */
+    public final String curve() {
+        return curve;
+    }
+
+    public final String id() {
+        return id;
+    }
+
+    public final boolean isRsa() {
+        return attributes[0] == 0x01;
+    }
+
+    public final byte[] attributes() {
+        return attributes.clone();
+    }
+
+    /* Algorithm of the attributes read from DO C3 */
+    public static Algorithm forAttributes(final byte[] attributes) {
+        for(final Algorithm a : values()) {
+            if(java.util.Arrays.equals(a.attributes, attributes)) {
+                return a;
+            }
+        }
+        throw new IllegalArgumentException("unknown algorithm attributes " + Apdus.hex(attributes));
+    }
+
+    public static Algorithm forId(final String id) {
+        for(final Algorithm a : values()) {
+            if(a.id.equals(id)) {
+                return a;
+            }
+        }
+        throw new IllegalArgumentException("unknown algorithm " + id);
+    }
+}
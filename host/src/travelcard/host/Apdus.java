@@ -0,0 +1,141 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.ByteArrayOutputStream;
+
+/* Command encoding and the chaining rules of the applet: commands longer
+   than one short APDU are sent with CLA 0x10, and responses are
+   collected with GET RESPONSE while the card answers 61xx. */
+public final class Apdus {
+
+    public static final int SW_OK = 0x9000;
+    public static final int SW_BYTES_REMAINING = 0x6100;
+    public static final int SW_TERMINATED = 0x6285;
+
+    public static final byte CLA = (byte)0x00;
+    public static final byte CLA_CHAINING = (byte)0x10;
+
+    public static final byte INS_SELECT = (byte)0xA4;
+    public static final byte INS_GET_DATA = (byte)0xCA;
+    public static final byte INS_GET_DATA_ODD = (byte)0xCB;
+    public static final byte INS_GET_NEXT_DATA = (byte)0xCC;
+    public static final byte INS_PUT_DATA = (byte)0xDA;
+    public static final byte INS_PUT_DATA_ODD = (byte)0xDB;
+    public static final byte INS_GENERATE_ASYMMETRIC_KEY_PAIR = (byte)0x47;
+    public static final byte INS_INTERNAL_AUTHENTICATE = (byte)0x88;
+    public static final byte INS_GET_CHALLENGE = (byte)0x84;
+    public static final byte INS_GET_RESPONSE = (byte)0xC0;
+    public static final byte INS_TERMINATE_DF = (byte)0xE6;
+    public static final byte INS_ACTIVATE_FILE = (byte)0x44;
+
+    public static final int SHORT_LC_MAX = 0xff;
+
+    /* size of the random pool of the card, longer challenges bypass it */
+    public static final int CHALLENGE_MAX_LENGTH = 0x40;
+
+    private Apdus() {
+    }
+
+    public static final byte[] command(final byte cla, final byte ins,
+                                       final int p1, final int p2,
+                                       final byte[] data, final int off, final int len,
+                                       final boolean withLe) {
+        final byte[] cmd = new byte[4 + (len > 0 ? 1 + len : 0) + (withLe ? 1 : 0)];
+        cmd[0] = cla;
+        cmd[1] = ins;
+        cmd[2] = (byte)p1;
+        cmd[3] = (byte)p2;
+        if(len > 0) {
+            cmd[4] = (byte)len;
+            System.arraycopy(data, off, cmd, 5, len);
+        }
+        return cmd;
+    }
+
+    public static final byte[] select(final byte[] aid) {
+        return command(CLA, INS_SELECT, 0x04, 0x00, aid, 0, aid.length, true);
+    }
+
+    public static final int sw(final byte[] response) {
+        return ((response[response.length - 2] & 0xff) << 8) | (response[response.length - 1] & 0xff);
+    }
+
+    public static final byte[] data(final byte[] response) {
+        final byte[] res = new byte[response.length - 2];
+        System.arraycopy(response, 0, res, 0, res.length);
+        return res;
+    }
+
+    /* Sends a command of any length and returns the whole response data
+       followed by the final status word. */
+    public static final byte[] exchange(final Transport transport,
+                                        final byte ins, final int p1, final int p2,
+                                        final byte[] data) {
+        int off = 0;
+        byte[] res;
+
+        do {
+            final int len = Math.min(data.length - off, SHORT_LC_MAX);
+            final boolean last = (off + len) >= data.length;
+            res = transport.transmit(command(last ? CLA : CLA_CHAINING, ins, p1, p2,
+                                             data, off, len, last));
+            off += len;
+            if(!last && (sw(res) != SW_OK)) {
+                return res;
+            }
+        } while(off < data.length);
+
+        if((sw(res) & 0xff00) != SW_BYTES_REMAINING) {
+            return res;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while((sw(res) & 0xff00) == SW_BYTES_REMAINING) {
+            out.write(res, 0, res.length - 2);
+            res = transport.transmit(command(CLA, INS_GET_RESPONSE, 0, 0, null, 0, 0, true));
+        }
+        out.write(res, 0, res.length);
+        return out.toByteArray();
+    }
+
+    public static final byte[] exchange(final Transport transport,
+                                        final byte ins, final int p1, final int p2) {
+        return exchange(transport, ins, p1, p2, new byte[0]);
+    }
+
+    public static final String hex(final byte[] buf) {
+        final StringBuilder sb = new StringBuilder(buf.length * 2);
+        for(final byte b : buf) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString().toUpperCase();
+    }
+
+    public static final byte[] unhex(final String s) {
+        final String h = s.replaceAll("\\s", "");
+        final byte[] res = new byte[h.length() / 2];
+        for(int i = 0; i < res.length; ++i) {
+            res[i] = (byte)Integer.parseInt(h.substring(2 * i, 2 * i + 2), 16);
+        }
+        return res;
+    }
+
+}
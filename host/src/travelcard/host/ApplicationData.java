@@ -0,0 +1,113 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* Content of the application related data (DO 6E) returned by SELECT */
+public final class ApplicationData {
+
+    private final byte[] aid;
+    private final int signatureCounter;
+    private final int maxCommandLength;
+    private final int maxResponseLength;
+    private final byte[] certificateDigest;
+
+    ApplicationData(final byte[] aid, final int signatureCounter,
+                    final int maxCommandLength, final int maxResponseLength,
+                    final byte[] certificateDigest) {
+        this.aid = aid;
+        this.signatureCounter = signatureCounter;
+        this.maxCommandLength = maxCommandLength;
+        this.maxResponseLength = maxResponseLength;
+        this.certificateDigest = certificateDigest;
+    }
+
+    public final byte[] aid() {
+        return aid.clone();
+    }
+
+    public final int signatureCounter() {
+        return signatureCounter;
+    }
+
+    /* From DO 7F66, the largest command and response data fields the
+       card accepts in a single APDU */
+    public final int maxCommandLength() {
+        return maxCommandLength;
+    }
+
+    public final int maxResponseLength() {
+        return maxResponseLength;
+    }
+
+    /* SHA-256 of the certificate (DO 0102), null when the card has no
+       certificate */
+    public final byte[] certificateDigest() {
+        return (certificateDigest == null) ? null : certificateDigest.clone();
+    }
+
+    public static ApplicationData parse(final byte[] buf, final int off, final int len) {
+        byte[] aid = new byte[0];
+        int counter = 0;
+        int maxCommand = Apdus.SHORT_LC_MAX;
+        int maxResponse = Apdus.SHORT_LC_MAX + 1;
+        byte[] digest = null;
+
+        final Tlv t = new Tlv(buf, off, len);
+        if(t.next() && (t.tag() == 0x64)) {
+            t.enter();
+            t.next();
+        }
+        if(t.tag() != 0x6e) {
+            throw new IllegalArgumentException("no application related data");
+        }
+        t.enter();
+        while(t.next()) {
+            switch(t.tag()) {
+            case 0x4f:
+                aid = t.value();
+                break;
+            case 0x7a:
+                final Tlv c = t.children();
+                while(c.next()) {
+                    if(c.tag() == 0x93) {
+                        for(int i = 0; i < c.length(); ++i) {
+                            counter = (counter << 8) | (buf[c.valueOffset() + i] & 0xff);
+                        }
+                    }
+                }
+                break;
+            case 0x7f66:
+                final Tlv e = t.children();
+                if(e.next()) {
+                    maxCommand = e.intValue();
+                }
+                if(e.next()) {
+                    maxResponse = e.intValue();
+                }
+                break;
+            case 0x0102:
+                digest = (t.length() > 0) ? t.value() : null;
+                break;
+            default:
+                break;
+            }
+        }
+        return new ApplicationData(aid, counter, maxCommand, maxResponse, digest);
+    }
+}
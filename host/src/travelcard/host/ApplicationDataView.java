@@ -0,0 +1,127 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+
+/*
+  Flyweight view of the application related data (DO 6E, possibly in a
+  64 template as returned by SELECT), as written by writeDataObject in
+  TravelCardApplet. The allocating counterpart is ApplicationData.
+*/
+public final class ApplicationDataView {
+
+    private final TlvView t = new TlvView();
+    private final TlvView c = new TlvView();
+
+    private ByteBuffer buf;
+    private int aidOffset;
+    private int aidLength;
+    private long signatureCounter;
+    private int maxCommandLength;
+    private int maxResponseLength;
+    private int digestOffset;
+    private int digestLength;
+
+    public final ApplicationDataView wrap(final ByteBuffer buf, final int off, final int len) {
+        this.buf = buf;
+        aidOffset = 0;
+        aidLength = 0;
+        signatureCounter = 0;
+        maxCommandLength = Apdus.SHORT_LC_MAX;
+        maxResponseLength = Apdus.SHORT_LC_MAX + 1;
+        digestOffset = 0;
+        digestLength = 0;
+
+        t.wrap(buf, off, len);
+        if(t.next() && (t.tag() == 0x64)) {
+            t.enter();
+            t.next();
+        }
+        if(t.tag() != 0x6e) {
+            throw new IllegalArgumentException("no application related data");
+        }
+        t.enter();
+        while(t.next()) {
+            switch(t.tag()) {
+            case 0x4f:
+                aidOffset = t.valueOffset();
+                aidLength = t.length();
+                break;
+            case 0x7a:
+                if(c.wrapValue(t).find(0x93)) {
+                    signatureCounter = c.longValue();
+                }
+                break;
+            case 0x7f66:
+                c.wrapValue(t);
+                if(c.next()) {
+                    maxCommandLength = c.intValue();
+                }
+                if(c.next()) {
+                    maxResponseLength = c.intValue();
+                }
+                break;
+            case 0x0102:
+                digestOffset = t.valueOffset();
+                digestLength = t.length();
+                break;
+            default:
+                break;
+            }
+        }
+        return this;
+    }
+
+    public final int aidLength() {
+        return aidLength;
+    }
+
+    public final boolean aidEquals(final byte[] aid) {
+        return TlvView.equals(buf, aidOffset, aidLength, aid);
+    }
+
+    public final int copyAid(final byte[] dst, final int off) {
+        return TlvView.copy(buf, aidOffset, aidLength, dst, off);
+    }
+
+    public final long signatureCounter() {
+        return signatureCounter;
+    }
+
+    public final int maxCommandLength() {
+        return maxCommandLength;
+    }
+
+    public final int maxResponseLength() {
+        return maxResponseLength;
+    }
+
+    public final boolean hasCertificateDigest() {
+        return digestLength > 0;
+    }
+
+    public final boolean certificateDigestEquals(final byte[] digest) {
+        return TlvView.equals(buf, digestOffset, digestLength, digest);
+    }
+
+    public final int copyCertificateDigest(final byte[] dst, final int off) {
+        return TlvView.copy(buf, digestOffset, digestLength, dst, off);
+    }
+}
@@ -0,0 +1,325 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+  Verifies batches of INTERNAL AUTHENTICATE responses in parallel.
+
+  Signatures are verified on a fork-join pool, each worker thread keeping
+  its own java.security.Signature instances and DER buffer. Parsed public
+  keys are cached by their public key DO. ECDSA signatures are the raw r || s of the card
+  (both halves of the same length) and RSA signatures are PKCS#1 v1.5 over
+  the DigestInfo of the hash, the digest algorithm following from the hash
+  length.
+
+  Once the signatures are checked, the signature counters (read from DO
+  7A/93 before the authentication) are checked in batch order: for each
+  card, that is each public key, a counter must be greater than the last
+  one accepted. The last counters are kept for at most maxCachedKeys cards,
+  like the parsed keys, the least recently seen card being evicted first:
+  new keys, such as keys generated to flood the table, only push out the
+  cards that have been idle longest, whose replays are then accepted once.
+*/
+public final class BatchVerifier {
+
+    public enum Status {
+        VALID,
+        BAD_SIGNATURE,
+        BAD_KEY,
+        COUNTER_NOT_INCREASING
+    }
+
+    public static final class Item {
+        final Algorithm algorithm;
+        final byte[] publicKeyDo;
+        final byte[] hash;
+        final byte[] signature;
+        final long counter;
+
+        public Item(final Algorithm algorithm, final byte[] publicKeyDo,
+                    final byte[] hash, final byte[] signature, final long counter) {
+            this.algorithm = algorithm;
+            this.publicKeyDo = publicKeyDo;
+            this.hash = hash;
+            this.signature = signature;
+            this.counter = counter;
+        }
+    }
+
+    private static final class KeyId {
+        private final Algorithm algorithm;
+        private final byte[] publicKeyDo;
+        private final int hash;
+
+        KeyId(final Algorithm algorithm, final byte[] publicKeyDo) {
+            this.algorithm = algorithm;
+            this.publicKeyDo = publicKeyDo;
+            this.hash = (31 * algorithm.hashCode()) + Arrays.hashCode(publicKeyDo);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if(!(o instanceof KeyId)) {
+                return false;
+            }
+            final KeyId k = (KeyId)o;
+            return (k.algorithm == algorithm) && Arrays.equals(k.publicKeyDo, publicKeyDo);
+        }
+    }
+
+    /* DigestInfo prefixes of PKCS#1 v1.5, indexed by hash length */
+    private static byte[] digestInfo(final int hashLength) {
+        switch(hashLength) {
+        case 20:
+            return Apdus.unhex("3021300906052B0E03021A05000414");
+        case 28:
+            return Apdus.unhex("302D300D06096086480165030402040500041C");
+        case 32:
+            return Apdus.unhex("3031300D060960864801650304020105000420");
+        case 48:
+            return Apdus.unhex("3041300D060960864801650304020205000430");
+        case 64:
+            return Apdus.unhex("3051300D060960864801650304020305000440");
+        default:
+            return null;
+        }
+    }
+
+    private static final int BATCH_SPLIT = 16;
+
+    private final ForkJoinPool pool;
+    private final Lru<CardPublicKey> keys;
+    private final Lru<Long> counters;
+
+    /* Access ordered map evicting beyond maxCachedKeys entries, used under
+       its own lock */
+    private static final class Lru<V> extends LinkedHashMap<KeyId, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int max;
+
+        Lru(final int max) {
+            super(16, 0.75f, true);
+            this.max = max;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<KeyId, V> eldest) {
+            return size() > max;
+        }
+    }
+
+    private final ThreadLocal<Signature> ecdsa = new ThreadLocal<Signature>() {
+            @Override
+            protected Signature initialValue() {
+                return newSignature("NONEwithECDSA");
+            }
+        };
+
+    private final ThreadLocal<SignatureView> signatureView = new ThreadLocal<SignatureView>() {
+            @Override
+            protected SignatureView initialValue() {
+                return new SignatureView();
+            }
+        };
+
+    private final ThreadLocal<byte[]> derBuffer = new ThreadLocal<byte[]>() {
+            @Override
+            protected byte[] initialValue() {
+                return new byte[0];
+            }
+        };
+
+    private final ThreadLocal<Signature> rsa = new ThreadLocal<Signature>() {
+            @Override
+            protected Signature initialValue() {
+                return newSignature("NONEwithRSA");
+            }
+        };
+
+    public BatchVerifier(final ForkJoinPool pool, final int maxCachedKeys) {
+        this.pool = pool;
+        this.keys = new Lru<CardPublicKey>(maxCachedKeys);
+        this.counters = new Lru<Long>(maxCachedKeys);
+    }
+
+    public BatchVerifier() {
+        this(ForkJoinPool.commonPool(), 100000);
+    }
+
+    private static Signature newSignature(final String alg) {
+        try {
+            return Signature.getInstance(alg);
+        } catch(final GeneralSecurityException e) {
+            throw new IllegalStateException(alg + " not available", e);
+        }
+    }
+
+    public final Status[] verify(final List<Item> batch) {
+        final Status[] res = new Status[batch.size()];
+        pool.invoke(new Chunk(batch, res, 0, batch.size()));
+
+        for(int i = 0; i < res.length; ++i) {
+            if(res[i] != Status.VALID) {
+                continue;
+            }
+            if(!advance(batch.get(i))) {
+                res[i] = Status.COUNTER_NOT_INCREASING;
+            }
+        }
+        return res;
+    }
+
+    /* compare and store the counter in one step, concurrent batches of the
+       same card cannot both accept the same counter */
+    private boolean advance(final Item item) {
+        final KeyId id = new KeyId(item.algorithm, item.publicKeyDo);
+        synchronized(counters) {
+            final Long last = counters.get(id);
+            if((last != null) && (item.counter <= last)) {
+                return false;
+            }
+            counters.put(id, item.counter);
+            return true;
+        }
+    }
+
+    public final Status verify(final Item item) {
+        final List<Item> batch = new ArrayList<Item>(1);
+        batch.add(item);
+        return verify(batch)[0];
+    }
+
+    private final class Chunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Item> batch;
+        private final Status[] res;
+        private final int from;
+        private final int to;
+
+        Chunk(final List<Item> batch, final Status[] res, final int from, final int to) {
+            this.batch = batch;
+            this.res = res;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if((to - from) <= BATCH_SPLIT) {
+                for(int i = from; i < to; ++i) {
+                    res[i] = check(batch.get(i));
+                }
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            invokeAll(new Chunk(batch, res, from, mid), new Chunk(batch, res, mid, to));
+        }
+    }
+
+    private CardPublicKey key(final Algorithm algorithm, final byte[] publicKeyDo)
+        throws GeneralSecurityException {
+        final KeyId id = new KeyId(algorithm, publicKeyDo);
+        synchronized(keys) {
+            final CardPublicKey k = keys.get(id);
+            if(k != null) {
+                return k;
+            }
+        }
+        /* parsed outside of the lock: threads missing the same key at
+           once parse it twice, to equal keys */
+        final CardPublicKey k = CardPublicKey.parse(algorithm, publicKeyDo);
+        synchronized(keys) {
+            keys.put(id, k);
+        }
+        return k;
+    }
+
+    private Status check(final Item item) {
+        final CardPublicKey k;
+        try {
+            k = key(item.algorithm, item.publicKeyDo);
+        } catch(final GeneralSecurityException e) {
+            return Status.BAD_KEY;
+        }
+        try {
+            return (k.algorithm().isRsa() ? checkRsa(k, item) : checkEcdsa(k, item))
+                ? Status.VALID : Status.BAD_SIGNATURE;
+        } catch(final GeneralSecurityException e) {
+            return Status.BAD_SIGNATURE;
+        }
+    }
+
+    private boolean checkRsa(final CardPublicKey k, final Item item) throws GeneralSecurityException {
+        final byte[] prefix = digestInfo(item.hash.length);
+        if(prefix == null) {
+            return false;
+        }
+        final Signature s = rsa.get();
+        s.initVerify(k.key());
+        s.update(prefix);
+        s.update(item.hash);
+        return s.verify(item.signature);
+    }
+
+    private boolean checkEcdsa(final CardPublicKey k, final Item item) throws GeneralSecurityException {
+        final int half = item.signature.length / 2;
+        if((half == 0) || ((item.signature.length % 2) != 0)) {
+            return false;
+        }
+
+        if(!k.providerSupported()) {
+            final BigInteger r = new BigInteger(1, Arrays.copyOfRange(item.signature, 0, half));
+            final BigInteger s = new BigInteger(1, Arrays.copyOfRange(item.signature, half, item.signature.length));
+            return Curves.verify(k.curve(), k.point(), item.hash, r, s);
+        }
+
+        final SignatureView view = signatureView.get();
+        view.wrap(ByteBuffer.wrap(item.signature), 0, item.signature.length, false);
+        byte[] der = derBuffer.get();
+        if(der.length < view.maxDerLength()) {
+            der = new byte[view.maxDerLength()];
+            derBuffer.set(der);
+        }
+        final int len = view.toDer(der, 0);
+
+        final Signature sig = ecdsa.get();
+        sig.initVerify(k.key());
+        sig.update(item.hash);
+        return sig.verify(der, 0, len);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.Arrays;
+
+/* Public key of a card parsed from its public key DO (7F49), with an
+   uncompressed or compressed EC point. The DO does not name the curve,
+   so the algorithm comes from the card attributes. */
+public final class CardPublicKey {
+
+    private final Algorithm algorithm;
+    private final PublicKey key;
+    private final ECParameterSpec curve;
+    private final ECPoint point;
+    private final boolean providerSupported;
+
+    private CardPublicKey(final Algorithm algorithm, final PublicKey key,
+                          final ECParameterSpec curve, final ECPoint point,
+                          final boolean providerSupported) {
+        this.algorithm = algorithm;
+        this.key = key;
+        this.curve = curve;
+        this.point = point;
+        this.providerSupported = providerSupported;
+    }
+
+    public final Algorithm algorithm() {
+        return algorithm;
+    }
+
+    /* JCA key, null when the providers do not support the curve */
+    public final PublicKey key() {
+        return key;
+    }
+
+    public final ECParameterSpec curve() {
+        return curve;
+    }
+
+    public final ECPoint point() {
+        return point;
+    }
+
+    public final boolean providerSupported() {
+        return providerSupported;
+    }
+
+    public static CardPublicKey parse(final Algorithm algorithm, final byte[] publicKeyDo)
+        throws GeneralSecurityException {
+
+        final Tlv t = new Tlv(publicKeyDo, 0, publicKeyDo.length);
+        if(!t.next() || (t.tag() != 0x7f49)) {
+            throw new GeneralSecurityException("not a public key DO");
+        }
+        t.enter();
+
+        if(algorithm.isRsa()) {
+            BigInteger modulus = null;
+            BigInteger exponent = null;
+            while(t.next()) {
+                if(t.tag() == 0x81) {
+                    modulus = new BigInteger(1, t.value());
+                } else if(t.tag() == 0x82) {
+                    exponent = new BigInteger(1, t.value());
+                }
+            }
+            if((modulus == null) || (exponent == null)) {
+                throw new GeneralSecurityException("incomplete RSA public key DO");
+            }
+            final PublicKey key = KeyFactory.getInstance("RSA")
+                .generatePublic(new RSAPublicKeySpec(modulus, exponent));
+            return new CardPublicKey(algorithm, key, null, null, true);
+        }
+
+        if(!Tlv.find(t, 0x86)) {
+            throw new GeneralSecurityException("incomplete EC public key DO");
+        }
+        final byte[] w = t.value();
+        final ECParameterSpec curve = Curves.spec(algorithm);
+        final int size = (curve.getCurve().getField().getFieldSize() + 7) / 8;
+        final ECPoint point;
+        if((w.length == (1 + 2 * size)) && (w[0] == 0x04)) {
+            point = new ECPoint(new BigInteger(1, Arrays.copyOfRange(w, 1, 1 + size)),
+                                new BigInteger(1, Arrays.copyOfRange(w, 1 + size, w.length)));
+        } else if((w.length == (1 + size)) && ((w[0] == 0x02) || (w[0] == 0x03))) {
+            point = Curves.decompress(curve, new BigInteger(1, Arrays.copyOfRange(w, 1, w.length)),
+                                      w[0] == 0x03);
+        } else {
+            throw new GeneralSecurityException("unsupported EC point encoding");
+        }
+        if(!Curves.supportedByProviders(algorithm)) {
+            return new CardPublicKey(algorithm, null, curve, point, false);
+        }
+        final PublicKey key = KeyFactory.getInstance("EC").generatePublic(new ECPublicKeySpec(point, curve));
+        return new CardPublicKey(algorithm, key, curve, point, true);
+    }
+}
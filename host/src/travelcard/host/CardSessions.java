@@ -0,0 +1,92 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Runs card sessions concurrently, one per reader or simulated card.
+  Sessions spend most of their time waiting for the card, so they run
+  on virtual threads when the JVM has them (Java 21 and later) and on a
+  cached thread pool otherwise.
+*/
+public final class CardSessions implements AutoCloseable {
+
+    public interface Session<T> {
+        T run(final TravelCardClient client) throws Exception;
+    }
+
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    public CardSessions() {
+        ExecutorService e = null;
+        try {
+            final Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            e = (ExecutorService)m.invoke(null);
+        } catch(final ReflectiveOperationException ignored) {
+            e = null;
+        }
+        virtualThreads = (e != null);
+        executor = virtualThreads ? e : Executors.newCachedThreadPool();
+    }
+
+    public final boolean virtualThreads() {
+        return virtualThreads;
+    }
+
+    public final ExecutorService executor() {
+        return executor;
+    }
+
+    /* Opens the transport, runs the session on a client of its own and
+       closes the transport if it is closeable. */
+    public final <T> Future<T> submit(final Callable<? extends Transport> connect,
+                                      final byte[] aid, final Session<T> session) {
+        return executor.submit(new Callable<T>() {
+                public T call() throws Exception {
+                    final Transport transport = connect.call();
+                    try {
+                        return session.run(new TravelCardClient(transport, aid));
+                    } finally {
+                        if(transport instanceof AutoCloseable) {
+                            ((AutoCloseable)transport).close();
+                        }
+                    }
+                }
+            });
+    }
+
+    /* Waits for the running sessions; an interrupt stops the wait and is
+       kept for the caller */
+    @Override
+    public final void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.GeneralSecurityException;
+
+/* Issues the certificate of a card from its public key DO (7F49), which
+   may be followed by its attestation (5F37, see KeyAttestation). Called
+   from several threads at once by the personalization pipeline. */
+public interface CertificateAuthority {
+
+    byte[] issue(final byte[] aid, final Algorithm algorithm, final byte[] publicKeyDo)
+        throws GeneralSecurityException;
+}
@@ -0,0 +1,549 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+  Validator side cache of card certificates and public keys, keyed by the
+  AID of the application and the SHA-256 of its certificate. The digest
+  comes in the SELECT response (DO 0102 in 6E), so a known card costs a
+  SELECT instead of reading its certificate and public key.
+
+  The cache is an append-only log in a memory-mapped file:
+
+    header  magic "TCC1", version
+    record  length (4) | CRC-32 of the payload (4) | payload
+
+  A payload either stores an entry (AID, digest, validity of the
+  certificate, algorithm attributes, public key DO, certificate) or
+  deletes one. Records are only appended, so a crash leaves at most one
+  torn record at the end, which fails its CRC and is cut off when the
+  file is opened again.
+
+  The least recently used entries are evicted once there are more than
+  maxEntries of them. When the log holds more than twice the size of the
+  live entries it is rewritten to a temporary file, least recent first,
+  which replaces it with an atomic rename. Lookups do not write, so after
+  a restart the recency order is the order the entries were stored in.
+
+  Certificates are stored in the form the card serves them, compressed
+  ones included, which keeps the log small. The validity of a compressed
+  certificate is known when the compressor given to open() has its
+  dictionary, and Entry.der() decompresses with it.
+
+  Parsed public keys are kept in memory only. The methods synchronize on
+  the cache, which can be shared by the threads of a validator.
+*/
+public final class CertificateCache implements Closeable {
+
+    private static final int MAGIC = 0x54434331;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+    private static final int RECORD_HEADER_LENGTH = 8;
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_DELETE = 2;
+
+    private static final int DIGEST_LENGTH = 32;
+    private static final int MIN_MAPPED = 0x10000;
+    private static final int MIN_COMPACTED = 0x10000;
+
+    private static final int TAG_ALGORITHM_ATTRIBUTES_AUT = 0x00c3;
+
+    public static final long NOT_BEFORE_UNKNOWN = Long.MIN_VALUE;
+    public static final long NOT_AFTER_UNKNOWN = Long.MAX_VALUE;
+
+    public static final class Entry {
+        private final byte[] aid;
+        private final byte[] digest;
+        private final long notBefore;
+        private final long notAfter;
+        private final Algorithm algorithm;
+        private final byte[] publicKeyDo;
+        private final int certificateOffset;
+        private final int certificateLength;
+        private final int recordLength;
+        private final CertificateCache cache;
+        private CardPublicKey publicKey;
+
+        Entry(final CertificateCache cache, final byte[] aid, final byte[] digest,
+              final long notBefore, final long notAfter, final Algorithm algorithm,
+              final byte[] publicKeyDo, final int certificateOffset,
+              final int certificateLength, final int recordLength) {
+            this.cache = cache;
+            this.aid = aid;
+            this.digest = digest;
+            this.notBefore = notBefore;
+            this.notAfter = notAfter;
+            this.algorithm = algorithm;
+            this.publicKeyDo = publicKeyDo;
+            this.certificateOffset = certificateOffset;
+            this.certificateLength = certificateLength;
+            this.recordLength = recordLength;
+        }
+
+        public final byte[] aid() {
+            return aid.clone();
+        }
+
+        public final byte[] certificateDigest() {
+            return digest.clone();
+        }
+
+        public final Algorithm algorithm() {
+            return algorithm;
+        }
+
+        public final byte[] publicKeyDo() {
+            return publicKeyDo.clone();
+        }
+
+        /* Validity of the certificate in milliseconds since the epoch,
+           unknown when the certificate is not X.509 */
+        public final long notBefore() {
+            return notBefore;
+        }
+
+        public final long notAfter() {
+            return notAfter;
+        }
+
+        public final boolean validAt(final long time) {
+            return (time >= notBefore) && (time <= notAfter);
+        }
+
+        /* Read from the mapped file, the entry must still be cached */
+        public final byte[] certificate() {
+            return cache.read(this);
+        }
+
+        /* The certificate as DER, unknown dictionaries throwing
+           IllegalArgumentException */
+        public final byte[] der() {
+            return cache.compressor.decompress(cache.read(this));
+        }
+
+        public final synchronized CardPublicKey publicKey() throws GeneralSecurityException {
+            if(publicKey == null) {
+                publicKey = CardPublicKey.parse(algorithm, publicKeyDo);
+            }
+            return publicKey;
+        }
+    }
+
+    private static final class Key {
+        private final byte[] aid;
+        private final byte[] digest;
+        private final int hash;
+
+        Key(final byte[] aid, final byte[] digest) {
+            this.aid = aid;
+            this.digest = digest;
+            this.hash = (31 * Arrays.hashCode(aid)) + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if(!(o instanceof Key)) {
+                return false;
+            }
+            final Key k = (Key)o;
+            return Arrays.equals(aid, k.aid) && Arrays.equals(digest, k.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final Path path;
+    private final int maxEntries;
+    private final CertificateCompressor compressor;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private int end;
+    private long liveBytes;
+    private long hits;
+    private long misses;
+
+    private CertificateCache(final Path path, final int maxEntries,
+                             final CertificateCompressor compressor) {
+        this.path = path;
+        this.maxEntries = maxEntries;
+        this.compressor = compressor;
+    }
+
+    public static CertificateCache open(final Path path, final int maxEntries) throws IOException {
+        return open(path, maxEntries, new CertificateCompressor());
+    }
+
+    public static CertificateCache open(final Path path, final int maxEntries,
+                                        final CertificateCompressor compressor) throws IOException {
+        if(maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        final CertificateCache cache = new CertificateCache(path, maxEntries, compressor);
+        cache.load();
+        return cache;
+    }
+
+    public final synchronized Entry get(final byte[] aid, final byte[] digest) {
+        final Entry e = entries.get(new Key(aid, digest));
+        if(e == null) {
+            ++misses;
+        } else {
+            ++hits;
+        }
+        return e;
+    }
+
+    /* Stores the certificate and public key of a card, replacing the
+       entry with the same AID and certificate */
+    public final synchronized Entry put(final byte[] aid, final Algorithm algorithm,
+                                       final byte[] publicKeyDo, final byte[] certificate)
+        throws IOException {
+        final byte[] digest = sha256(certificate);
+        long notBefore = NOT_BEFORE_UNKNOWN;
+        long notAfter = NOT_AFTER_UNKNOWN;
+        final CertificateView x509 = x509(compressor, certificate);
+        if(x509 != null) {
+            notBefore = x509.notBefore();
+            notAfter = x509.notAfter();
+        }
+
+        final byte[] attributes = algorithm.attributes();
+        final int len = 1 + 1 + aid.length + DIGEST_LENGTH + 8 + 8 +
+            1 + attributes.length + 4 + publicKeyDo.length + 4 + certificate.length;
+        final ByteBuffer b = ByteBuffer.allocate(len);
+        b.put(RECORD_PUT);
+        b.put((byte)aid.length).put(aid).put(digest);
+        b.putLong(notBefore).putLong(notAfter);
+        b.put((byte)attributes.length).put(attributes);
+        b.putInt(publicKeyDo.length).put(publicKeyDo);
+        b.putInt(certificate.length).put(certificate);
+
+        final Key key = new Key(aid.clone(), digest);
+        final Entry old = entries.remove(key);
+        if(old != null) {
+            liveBytes -= old.recordLength;
+        }
+        final int at = append(b.array());
+        final Entry e = new Entry(this, key.aid, digest, notBefore, notAfter, algorithm,
+                                  publicKeyDo.clone(), at + RECORD_HEADER_LENGTH + len - certificate.length,
+                                  certificate.length, RECORD_HEADER_LENGTH + len);
+        entries.put(key, e);
+        liveBytes += e.recordLength;
+
+        evict();
+        if((end > MIN_COMPACTED) && (end > (2 * liveBytes))) {
+            compact();
+        }
+        return e;
+    }
+
+    public final synchronized boolean remove(final byte[] aid, final byte[] digest) throws IOException {
+        final Entry e = entries.remove(new Key(aid, digest));
+        if(e == null) {
+            return false;
+        }
+        liveBytes -= e.recordLength;
+        append(deleteRecord(e));
+        return true;
+    }
+
+    /*
+      Entry of the card selected by the client, null when it has no
+      certificate. On a miss the algorithm attributes, the certificate
+      and the public key are read from the card and stored.
+    */
+    public final Entry resolve(final TravelCardClient client) throws IOException {
+        ApplicationData data = client.applicationData();
+        if(data == null) {
+            data = client.select();
+        }
+        final byte[] digest = data.certificateDigest();
+        if(digest == null) {
+            return null;
+        }
+        final Entry cached = get(data.aid(), digest);
+        if(cached != null) {
+            return cached;
+        }
+        final Algorithm algorithm = Algorithm.forAttributes(client.getData(TAG_ALGORITHM_ATTRIBUTES_AUT));
+        final byte[] certificate = client.readCertificate();
+        if(!Arrays.equals(sha256(certificate), digest)) {
+            throw new IllegalStateException("certificate does not match its digest");
+        }
+        return put(data.aid(), algorithm, client.readPublicKey(), certificate);
+    }
+
+    public final synchronized int size() {
+        return entries.size();
+    }
+
+    public final synchronized long hits() {
+        return hits;
+    }
+
+    public final synchronized long misses() {
+        return misses;
+    }
+
+    /* Writes the mapped file to the storage device */
+    public final synchronized void force() {
+        if(map != null) {
+            map.force();
+        }
+    }
+
+    @Override
+    public final synchronized void close() throws IOException {
+        if(channel != null) {
+            force();
+            map = null;
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private synchronized byte[] read(final Entry e) {
+        if(entries.get(new Key(e.aid, e.digest)) != e) {
+            throw new IllegalStateException("entry no longer cached");
+        }
+        final byte[] certificate = new byte[e.certificateLength];
+        final ByteBuffer b = map.duplicate();
+        b.position(e.certificateOffset);
+        b.get(certificate);
+        return certificate;
+    }
+
+    /* Log */
+
+    private void load() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+        final long size = channel.size();
+        if(size > Integer.MAX_VALUE) {
+            throw new IOException("cache file too large: " + path);
+        }
+        remap(Math.max(MIN_MAPPED, (int)size));
+        if(size == 0) {
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            end = HEADER_LENGTH;
+            return;
+        }
+        if((size < HEADER_LENGTH) || (map.getInt(0) != MAGIC)) {
+            throw new IOException("not a certificate cache: " + path);
+        }
+        if(map.getInt(4) != VERSION) {
+            throw new IOException("unsupported certificate cache version " + map.getInt(4));
+        }
+
+        int p = HEADER_LENGTH;
+        while(p + RECORD_HEADER_LENGTH <= size) {
+            final int len = map.getInt(p);
+            if((len <= 0) || (len > (size - p - RECORD_HEADER_LENGTH)) ||
+               (checksum(p + RECORD_HEADER_LENGTH, len) != map.getInt(p + 4))) {
+                break;
+            }
+            replay(p, len);
+            p += RECORD_HEADER_LENGTH + len;
+        }
+        end = p;
+
+        /* Cut off a torn record and whatever follows, the next append
+           must not leave stale bytes behind it */
+        if(end < size) {
+            map = null;
+            channel.truncate(end);
+            remap(Math.max(MIN_MAPPED, end));
+        }
+        evict();
+    }
+
+    private void replay(final int p, final int len) throws IOException {
+        final ByteBuffer b = map.duplicate();
+        b.position(p + RECORD_HEADER_LENGTH);
+        b.limit(p + RECORD_HEADER_LENGTH + len);
+        final byte type = b.get();
+        final byte[] aid = new byte[b.get() & 0xff];
+        b.get(aid);
+        final byte[] digest = new byte[DIGEST_LENGTH];
+        b.get(digest);
+        final Key key = new Key(aid, digest);
+        final Entry old = entries.remove(key);
+        if(old != null) {
+            liveBytes -= old.recordLength;
+        }
+        if(type == RECORD_DELETE) {
+            return;
+        }
+        if(type != RECORD_PUT) {
+            throw new IOException("unknown record type " + type + " at " + p);
+        }
+        final long notBefore = b.getLong();
+        final long notAfter = b.getLong();
+        final byte[] attributes = new byte[b.get() & 0xff];
+        b.get(attributes);
+        final byte[] publicKeyDo = new byte[b.getInt()];
+        b.get(publicKeyDo);
+        final int certificateLength = b.getInt();
+        final Entry e = new Entry(this, aid, digest, notBefore, notAfter,
+                                  Algorithm.forAttributes(attributes), publicKeyDo,
+                                  b.position(), certificateLength, RECORD_HEADER_LENGTH + len);
+        entries.put(key, e);
+        liveBytes += e.recordLength;
+    }
+
+    private int append(final byte[] payload) throws IOException {
+        final int at = end;
+        final long next = (long)at + RECORD_HEADER_LENGTH + payload.length;
+        if(next > Integer.MAX_VALUE) {
+            throw new IOException("certificate cache full: " + path);
+        }
+        if(next > map.capacity()) {
+            remap((int)Math.min(Integer.MAX_VALUE, Math.max(next, 2L * map.capacity())));
+        }
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        final ByteBuffer b = map.duplicate();
+        b.position(at + 4);
+        b.putInt((int)crc.getValue());
+        b.put(payload);
+        /* The length is written last, a record torn before it reads as
+           the end of the log */
+        map.putInt(at, payload.length);
+        end = (int)next;
+        return at;
+    }
+
+    private void evict() throws IOException {
+        final Iterator<Entry> i = entries.values().iterator();
+        final List<Entry> evicted = new ArrayList<Entry>();
+        while((entries.size() - evicted.size() > maxEntries) && i.hasNext()) {
+            evicted.add(i.next());
+        }
+        for(final Entry e : evicted) {
+            entries.remove(new Key(e.aid, e.digest));
+            liveBytes -= e.recordLength;
+            if(channel != null) {
+                append(deleteRecord(e));
+            }
+        }
+    }
+
+    private void compact() throws IOException {
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        final List<Entry> live = new ArrayList<Entry>(entries.values());
+        final int size = HEADER_LENGTH + (int)liveBytes;
+        try(final FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                                                     StandardOpenOption.TRUNCATE_EXISTING,
+                                                     StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedByteBuffer m = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            m.putInt(MAGIC).putInt(VERSION);
+            for(final Entry e : live) {
+                final ByteBuffer b = map.duplicate();
+                b.position(e.certificateOffset + e.certificateLength - e.recordLength);
+                b.limit(e.certificateOffset + e.certificateLength);
+                m.put(b);
+            }
+            m.force();
+        }
+
+        map = null;
+        channel.close();
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        remap(Math.max(MIN_MAPPED, size));
+
+        /* Same records in least recently used order, only the offsets
+           change */
+        entries.clear();
+        liveBytes = 0;
+        int p = HEADER_LENGTH;
+        while(p < size) {
+            final int len = map.getInt(p);
+            replay(p, len);
+            p += RECORD_HEADER_LENGTH + len;
+        }
+        end = p;
+    }
+
+    private void remap(final int size) throws IOException {
+        map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private int checksum(final int off, final int len) {
+        final ByteBuffer b = map.duplicate();
+        b.position(off);
+        b.limit(off + len);
+        crc.reset();
+        crc.update(b);
+        return (int)crc.getValue();
+    }
+
+    private static byte[] deleteRecord(final Entry e) {
+        final ByteBuffer b = ByteBuffer.allocate(1 + 1 + e.aid.length + DIGEST_LENGTH);
+        b.put(RECORD_DELETE);
+        b.put((byte)e.aid.length).put(e.aid).put(e.digest);
+        return b.array();
+    }
+
+    private static byte[] sha256(final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch(final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /* Decoded with the view rather than a CertificateFactory, which
+       rejects the compressed EC points the cards can be certified with */
+    private static CertificateView x509(final CertificateCompressor compressor,
+                                        final byte[] certificate) {
+        try {
+            final byte[] der = compressor.decompress(certificate);
+            return new CertificateView().wrap(ByteBuffer.wrap(der), 0, der.length);
+        } catch(final RuntimeException e) {
+            return null;
+        }
+    }
+}
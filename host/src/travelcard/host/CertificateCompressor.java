@@ -0,0 +1,163 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+  Compressed form of the cardholder certificate (7F21). The card stores
+  and serves it in a proprietary envelope in place of the DER:
+
+    0104 L | dictionary identifier (2) | DER length (2) | raw deflate
+
+  The envelope is told from a certificate by its first bytes (a DER
+  certificate starts with 30). The dictionaries of the issuers are
+  registered with the compressor; decompress() returns a DER
+  certificate as is.
+*/
+public final class CertificateCompressor {
+
+    public static final int TAG_COMPRESSED_CERTIFICATE = 0x0104;
+
+    private static final int HEADER_LENGTH = 4;
+
+    private final Map<Integer, CertificateDictionary> dictionaries =
+        new ConcurrentHashMap<Integer, CertificateDictionary>();
+
+    public CertificateCompressor(final CertificateDictionary... dictionaries) {
+        for(final CertificateDictionary d : dictionaries) {
+            add(d);
+        }
+    }
+
+    public final void add(final CertificateDictionary dictionary) {
+        dictionaries.put(dictionary.id(), dictionary);
+    }
+
+    public final CertificateDictionary dictionary(final int id) {
+        return dictionaries.get(id);
+    }
+
+    public static boolean isCompressed(final byte[] certificate) {
+        return (certificate.length >= 2) &&
+            (((certificate[0] & 0xff) << 8) | (certificate[1] & 0xff)) == TAG_COMPRESSED_CERTIFICATE;
+    }
+
+    /* Envelope of the certificate, or the certificate itself when
+       compression does not make it shorter */
+    public static byte[] compress(final byte[] der, final CertificateDictionary dictionary) {
+        if(der.length > 0xffff) {
+            throw new IllegalArgumentException("certificate too long");
+        }
+        final ByteArrayOutputStream deflated = new ByteArrayOutputStream(der.length);
+        final Deflater d = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            d.setDictionary(dictionary.shared());
+            d.setInput(der);
+            d.finish();
+            final byte[] chunk = new byte[512];
+            while(!d.finished()) {
+                deflated.write(chunk, 0, d.deflate(chunk));
+            }
+        } finally {
+            d.end();
+        }
+
+        final int len = HEADER_LENGTH + deflated.size();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(len + 5);
+        out.write(TAG_COMPRESSED_CERTIFICATE >> 8);
+        out.write(TAG_COMPRESSED_CERTIFICATE & 0xff);
+        if(len > 0xff) {
+            out.write(0x82);
+            out.write(len >> 8);
+        } else if(len > 0x7f) {
+            out.write(0x81);
+        }
+        out.write(len & 0xff);
+        out.write(dictionary.id() >> 8);
+        out.write(dictionary.id() & 0xff);
+        out.write(der.length >> 8);
+        out.write(der.length & 0xff);
+        out.write(deflated.toByteArray(), 0, deflated.size());
+        return (out.size() < der.length) ? out.toByteArray() : der;
+    }
+
+    /* Identifier of the dictionary of a compressed certificate, -1 for
+       a DER certificate */
+    public static int dictionaryId(final byte[] certificate) {
+        if(!isCompressed(certificate)) {
+            return -1;
+        }
+        final Tlv t = envelope(certificate);
+        return ((certificate[t.valueOffset()] & 0xff) << 8) | (certificate[t.valueOffset() + 1] & 0xff);
+    }
+
+    public final byte[] decompress(final byte[] certificate) {
+        if(!isCompressed(certificate)) {
+            return certificate;
+        }
+        final Tlv t = envelope(certificate);
+        final int off = t.valueOffset();
+        final int id = ((certificate[off] & 0xff) << 8) | (certificate[off + 1] & 0xff);
+        final CertificateDictionary dictionary = dictionaries.get(id);
+        if(dictionary == null) {
+            throw new IllegalArgumentException("unknown certificate dictionary " + Integer.toHexString(id));
+        }
+        final byte[] der = new byte[((certificate[off + 2] & 0xff) << 8) | (certificate[off + 3] & 0xff)];
+        final Inflater i = new Inflater(true);
+        try {
+            i.setDictionary(dictionary.shared());
+            /* A raw inflater may need one byte past the deflate stream */
+            final byte[] in = new byte[t.length() - HEADER_LENGTH + 1];
+            System.arraycopy(certificate, off + HEADER_LENGTH, in, 0, in.length - 1);
+            i.setInput(in);
+            int n = 0;
+            while((n < der.length) && !i.finished()) {
+                final int r = i.inflate(der, n, der.length - n);
+                if((r == 0) && (i.needsInput() || i.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            /* The stream must end exactly at the announced length */
+            if((n != der.length) || (!i.finished() && (i.inflate(new byte[1]) != 0))) {
+                throw new IllegalArgumentException("compressed certificate does not match its length");
+            }
+        } catch(final DataFormatException e) {
+            throw new IllegalArgumentException("bad compressed certificate", e);
+        } finally {
+            i.end();
+        }
+        return der;
+    }
+
+    private static Tlv envelope(final byte[] certificate) {
+        final Tlv t = new Tlv(certificate, 0, certificate.length);
+        if(!t.next() || (t.tag() != TAG_COMPRESSED_CERTIFICATE) ||
+           (t.length() < HEADER_LENGTH) || ((t.valueOffset() + t.length()) != certificate.length)) {
+            throw new IllegalArgumentException("bad compressed certificate envelope");
+        }
+        return t;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+  Preset dictionary for the compression of the certificates of one
+  issuer. Certificates of a batch share the issuer name, the algorithm
+  identifiers, the extensions and the CA key identifier, so a few of
+  them make a dictionary that leaves little more than the serial number,
+  the subject, the dates, the key and the signature to encode.
+
+  The identifier is stored with each compressed certificate: a new
+  dictionary, for a new issuer or a new certificate profile, takes a new
+  identifier and the previous ones are kept to read the cards already
+  personalized with them.
+*/
+public final class CertificateDictionary {
+
+    /* Deflate only refers back to the last 32 kB */
+    public static final int MAX_LENGTH = 0x8000;
+
+    private final int id;
+    private final byte[] bytes;
+
+    public CertificateDictionary(final int id, final byte[] bytes) {
+        if((id < 0) || (id > 0xffff)) {
+            throw new IllegalArgumentException("dictionary identifier out of range");
+        }
+        if((bytes.length == 0) || (bytes.length > MAX_LENGTH)) {
+            throw new IllegalArgumentException("bad dictionary length");
+        }
+        this.id = id;
+        this.bytes = bytes.clone();
+    }
+
+    /* Dictionary made of sample certificates of the issuer, the most
+       representative last as deflate encodes closer matches in fewer
+       bits */
+    public static CertificateDictionary build(final int id, final List<byte[]> samples) {
+        final List<byte[]> kept = new ArrayList<byte[]>();
+        int len = 0;
+        for(int i = samples.size() - 1; i >= 0; --i) {
+            final byte[] s = samples.get(i);
+            if((len + s.length) > MAX_LENGTH) {
+                break;
+            }
+            kept.add(s);
+            len += s.length;
+        }
+        if(kept.isEmpty()) {
+            throw new IllegalArgumentException("no sample fits in a dictionary");
+        }
+        final byte[] bytes = new byte[len];
+        int off = len;
+        for(final byte[] s : kept) {
+            off -= s.length;
+            System.arraycopy(s, 0, bytes, off, s.length);
+        }
+        return new CertificateDictionary(id, bytes);
+    }
+
+    public final int id() {
+        return id;
+    }
+
+    public final byte[] bytes() {
+        return bytes.clone();
+    }
+
+    final byte[] shared() {
+        return bytes;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+
+/*
+  Flyweight view of an X.509 certificate (the content of DO 7F21): the
+  offsets of the fields a validator checks on each tap, and the validity
+  dates decoded without building Date or String objects. Extensions are
+  not looked at.
+*/
+public final class CertificateView {
+
+    private static final int INTEGER = 0x02;
+    private static final int BIT_STRING = 0x03;
+    private static final int UTC_TIME = 0x17;
+    private static final int GENERALIZED_TIME = 0x18;
+    private static final int SEQUENCE = 0x30;
+    private static final int VERSION = 0xa0;
+
+    private final TlvView t = new TlvView();
+    private final TlvView c = new TlvView();
+
+    private ByteBuffer buf;
+    private int tbsOffset;
+    private int tbsLength;
+    private int serialOffset;
+    private int serialLength;
+    private int issuerOffset;
+    private int issuerLength;
+    private int subjectOffset;
+    private int subjectLength;
+    private long notBefore;
+    private long notAfter;
+    private int publicKeyInfoOffset;
+    private int publicKeyInfoLength;
+    private int signatureAlgorithmOffset;
+    private int signatureAlgorithmLength;
+    private int signatureOffset;
+    private int signatureLength;
+
+    public final CertificateView wrap(final ByteBuffer buf, final int off, final int len) {
+        this.buf = buf;
+        t.wrap(buf, off, len);
+        expect(t.next(), t, SEQUENCE);
+        t.enter();
+
+        expect(t.next(), t, SEQUENCE);
+        tbsOffset = t.offset();
+        tbsLength = t.valueEnd() - tbsOffset;
+        c.wrapValue(t);
+        c.next();
+        if(c.tag() == VERSION) {
+            c.next();
+        }
+        expect(true, c, INTEGER);
+        serialOffset = c.valueOffset();
+        serialLength = c.length();
+        expect(c.next(), c, SEQUENCE);
+        expect(c.next(), c, SEQUENCE);
+        issuerOffset = c.offset();
+        issuerLength = c.valueEnd() - issuerOffset;
+        expect(c.next(), c, SEQUENCE);
+        final int validityEnd = c.valueEnd();
+        c.enter();
+        c.next();
+        notBefore = time(c);
+        c.next();
+        notAfter = time(c);
+        c.wrap(buf, validityEnd, tbsOffset + tbsLength - validityEnd);
+        expect(c.next(), c, SEQUENCE);
+        subjectOffset = c.offset();
+        subjectLength = c.valueEnd() - subjectOffset;
+        expect(c.next(), c, SEQUENCE);
+        publicKeyInfoOffset = c.offset();
+        publicKeyInfoLength = c.valueEnd() - publicKeyInfoOffset;
+
+        expect(t.next(), t, SEQUENCE);
+        signatureAlgorithmOffset = t.offset();
+        signatureAlgorithmLength = t.valueEnd() - signatureAlgorithmOffset;
+        expect(t.next(), t, BIT_STRING);
+        signatureOffset = t.valueOffset() + 1;
+        signatureLength = t.length() - 1;
+        return this;
+    }
+
+    private static void expect(final boolean present, final TlvView v, final int tag) {
+        if(!present || (v.tag() != tag)) {
+            throw new IllegalArgumentException("not an X.509 certificate");
+        }
+    }
+
+    /* UTCTime or GeneralizedTime in UTC (Z) with seconds, as RFC 5280
+       requires, to ms since the epoch */
+    private long time(final TlvView v) {
+        int p = v.valueOffset();
+        final int year;
+        if((v.tag() == UTC_TIME) && (v.length() == 13)) {
+            final int yy = digits(p, 2);
+            year = (yy < 50) ? (2000 + yy) : (1900 + yy);
+            p += 2;
+        } else if((v.tag() == GENERALIZED_TIME) && (v.length() == 15)) {
+            year = digits(p, 4);
+            p += 4;
+        } else {
+            throw new IllegalArgumentException("unsupported certificate time");
+        }
+        if(buf.get(v.valueEnd() - 1) != 'Z') {
+            throw new IllegalArgumentException("unsupported certificate time");
+        }
+        final int month = digits(p, 2);
+        final int day = digits(p + 2, 2);
+        final long seconds = ((daysFromCivil(year, month, day) * 24 + digits(p + 4, 2)) * 60 +
+                              digits(p + 6, 2)) * 60 + digits(p + 8, 2);
+        return seconds * 1000;
+    }
+
+    private int digits(final int off, final int n) {
+        int v = 0;
+        for(int i = 0; i < n; ++i) {
+            final int d = buf.get(off + i) - '0';
+            if((d < 0) || (d > 9)) {
+                throw new IllegalArgumentException("bad digit in certificate time");
+            }
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /* Days since 1970-01-01 of a date of the proleptic Gregorian calendar */
+    private static long daysFromCivil(final int year, final int month, final int day) {
+        final int y = (month <= 2) ? (year - 1) : year;
+        final int era = ((y >= 0) ? y : (y - 399)) / 400;
+        final int yoe = y - era * 400;
+        final int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+        final int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return (long)era * 146097 + doe - 719468;
+    }
+
+    public final long notBefore() {
+        return notBefore;
+    }
+
+    public final long notAfter() {
+        return notAfter;
+    }
+
+    public final boolean validAt(final long time) {
+        return (time >= notBefore) && (time <= notAfter);
+    }
+
+    /* The signed part, whole TLV */
+    public final int tbsOffset() {
+        return tbsOffset;
+    }
+
+    public final int tbsLength() {
+        return tbsLength;
+    }
+
+    public final int serialOffset() {
+        return serialOffset;
+    }
+
+    public final int serialLength() {
+        return serialLength;
+    }
+
+    public final int issuerOffset() {
+        return issuerOffset;
+    }
+
+    public final int issuerLength() {
+        return issuerLength;
+    }
+
+    public final int subjectOffset() {
+        return subjectOffset;
+    }
+
+    public final int subjectLength() {
+        return subjectLength;
+    }
+
+    public final int publicKeyInfoOffset() {
+        return publicKeyInfoOffset;
+    }
+
+    public final int publicKeyInfoLength() {
+        return publicKeyInfoLength;
+    }
+
+    public final int signatureAlgorithmOffset() {
+        return signatureAlgorithmOffset;
+    }
+
+    public final int signatureAlgorithmLength() {
+        return signatureAlgorithmLength;
+    }
+
+    /* Content of the signature bit string, without its unused bits byte */
+    public final int signatureOffset() {
+        return signatureOffset;
+    }
+
+    public final int signatureLength() {
+        return signatureLength;
+    }
+}
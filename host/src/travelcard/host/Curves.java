@@ -0,0 +1,192 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.math.BigInteger;
+import java.security.AlgorithmParameters;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECField;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.EllipticCurve;
+
+/*
+  Domain parameters of the card curves, and a plain ECDSA verification
+  for the curves the installed JCA providers do not support (recent JDKs
+  dropped the Brainpool curves).
+*/
+public final class Curves {
+
+    private static final ECParameterSpec BRAINPOOL_P256R1 =
+        spec("A9FB57DBA1EEA9BC3E660A909D838D726E3BF623D52620282013481D1F6E5377",
+             "7D5A0975FC2C3057EEF67530417AFFE7FB8055C126DC5C6CE94A4B44F330B5D9",
+             "26DC5C6CE94A4B44F330B5D9BBD77CBF958416295CF7E1CE6BCCDC18FF8C07B6",
+             "8BD2AEB9CB7E57CB2C4B482FFC81B7AFB9DE27E1E3BD23C23A4453BD9ACE3262",
+             "547EF835C3DAC4FD97F8461A14611DC9C27745132DED8E545C1D54C72F046997",
+             "A9FB57DBA1EEA9BC3E660A909D838D718C397AA3B561A6F7901E0E82974856A7");
+
+    private static final ECParameterSpec BRAINPOOL_P384R1 =
+        spec("8CB91E82A3386D280F5D6F7E50E641DF152F7109ED5456B412B1DA197FB71123ACD3A729901D1A71874700133107EC53",
+             "7BC382C63D8C150C3C72080ACE05AFA0C2BEA28E4FB22787139165EFBA91F90F8AA5814A503AD4EB04A8C7DD22CE2826",
+             "04A8C7DD22CE28268B39B55416F0447C2FB77DE107DCD2A62E880EA53EEB62D57CB4390295DBC9943AB78696FA504C11",
+             "1D1C64F068CF45FFA2A63A81B7C13F6B8847A3E77EF14FE3DB7FCAFE0CBD10E8E826E03436D646AAEF87B2E247D4AF1E",
+             "8ABE1D7520F9C2A45CB1EB8E95CFD55262B70B29FEEC5864E19C054FF99129280E4646217791811142820341263C5315",
+             "8CB91E82A3386D280F5D6F7E50E641DF152F7109ED5456B31F166E6CAC0425A7CF3AB6AF6B7FC3103B883202E9046565");
+
+    private Curves() {
+    }
+
+    private static ECParameterSpec spec(final String p, final String a, final String b,
+                                        final String gx, final String gy, final String n) {
+        final EllipticCurve curve = new EllipticCurve(new ECFieldFp(new BigInteger(p, 16)),
+                                                      new BigInteger(a, 16), new BigInteger(b, 16));
+        return new ECParameterSpec(curve, new ECPoint(new BigInteger(gx, 16), new BigInteger(gy, 16)),
+                                   new BigInteger(n, 16), 1);
+    }
+
+    public static ECParameterSpec spec(final Algorithm alg) throws GeneralSecurityException {
+        switch(alg) {
+        case BRAINPOOL_P256R1:
+            return BRAINPOOL_P256R1;
+        case BRAINPOOL_P384R1:
+            return BRAINPOOL_P384R1;
+        default:
+            final AlgorithmParameters params = AlgorithmParameters.getInstance("EC");
+            params.init(new ECGenParameterSpec(alg.curve()));
+            return params.getParameterSpec(ECParameterSpec.class);
+        }
+    }
+
+    private static final Boolean[] supported = new Boolean[Algorithm.values().length];
+
+    /* Whether the JCA providers can verify signatures on this curve. Some
+       providers know the curve parameters but not the arithmetic and only
+       fail when verifying, so the check verifies a dummy signature with
+       the generator as public key. */
+    public static boolean supportedByProviders(final Algorithm alg) {
+        Boolean res = supported[alg.ordinal()];
+        if(res == null) {
+            try {
+                final ECParameterSpec spec = spec(alg);
+                final PublicKey key = KeyFactory.getInstance("EC")
+                    .generatePublic(new ECPublicKeySpec(spec.getGenerator(), spec));
+                final Signature sig = Signature.getInstance("NONEwithECDSA");
+                sig.initVerify(key);
+                sig.update(new byte[32]);
+                sig.verify(new byte[] { 0x30, 0x06, 0x02, 0x01, 0x01, 0x02, 0x01, 0x01 });
+                res = Boolean.TRUE;
+            } catch(final GeneralSecurityException e) {
+                res = Boolean.FALSE;
+            }
+            supported[alg.ordinal()] = res;
+        }
+        return res.booleanValue();
+    }
+
+    /* ECDSA verification of a hash with affine coordinates, for the
+       curves the providers lack. */
+    public static boolean verify(final ECParameterSpec spec, final ECPoint q,
+                                 final byte[] hash, final BigInteger r, final BigInteger s) {
+        final BigInteger n = spec.getOrder();
+        if((r.signum() <= 0) || (s.signum() <= 0) || (r.compareTo(n) >= 0) || (s.compareTo(n) >= 0)) {
+            return false;
+        }
+        BigInteger e = new BigInteger(1, hash);
+        final int excess = (hash.length * 8) - n.bitLength();
+        if(excess > 0) {
+            e = e.shiftRight(excess);
+        }
+        final BigInteger w = s.modInverse(n);
+        final ECPoint x = add(spec, multiply(spec, spec.getGenerator(), e.multiply(w).mod(n)),
+                              multiply(spec, q, r.multiply(w).mod(n)));
+        return (x != ECPoint.POINT_INFINITY) && x.getAffineX().mod(n).equals(r);
+    }
+
+    /* Point of a SEC1 compressed encoding (x and the parity of y). The
+       square root is a single exponentiation as all the card curves
+       have p = 3 mod 4. */
+    public static ECPoint decompress(final ECParameterSpec spec, final BigInteger x, final boolean odd)
+        throws GeneralSecurityException {
+        final BigInteger p = prime(spec.getCurve().getField());
+        if(!p.testBit(0) || !p.testBit(1)) {
+            throw new GeneralSecurityException("compressed points need p = 3 mod 4");
+        }
+        if((x.signum() < 0) || (x.compareTo(p) >= 0)) {
+            throw new GeneralSecurityException("EC point not on curve");
+        }
+        final BigInteger rhs = x.pow(3).add(spec.getCurve().getA().multiply(x))
+            .add(spec.getCurve().getB()).mod(p);
+        BigInteger y = rhs.modPow(p.add(BigInteger.ONE).shiftRight(2), p);
+        if(!y.pow(2).mod(p).equals(rhs)) {
+            throw new GeneralSecurityException("EC point not on curve");
+        }
+        if(y.testBit(0) != odd) {
+            y = p.subtract(y).mod(p);
+        }
+        return new ECPoint(x, y);
+    }
+
+    private static ECPoint add(final ECParameterSpec spec, final ECPoint p1, final ECPoint p2) {
+        if(p1 == ECPoint.POINT_INFINITY) {
+            return p2;
+        }
+        if(p2 == ECPoint.POINT_INFINITY) {
+            return p1;
+        }
+        final BigInteger p = prime(spec.getCurve().getField());
+        final BigInteger x1 = p1.getAffineX();
+        final BigInteger y1 = p1.getAffineY();
+        final BigInteger x2 = p2.getAffineX();
+        final BigInteger y2 = p2.getAffineY();
+        final BigInteger l;
+        if(x1.equals(x2)) {
+            if(!y1.equals(y2) || (y1.signum() == 0)) {
+                return ECPoint.POINT_INFINITY;
+            }
+            l = x1.pow(2).multiply(BigInteger.valueOf(3)).add(spec.getCurve().getA())
+                .multiply(y1.shiftLeft(1).modInverse(p)).mod(p);
+        } else {
+            l = y2.subtract(y1).multiply(x2.subtract(x1).modInverse(p)).mod(p);
+        }
+        final BigInteger x3 = l.pow(2).subtract(x1).subtract(x2).mod(p);
+        final BigInteger y3 = l.multiply(x1.subtract(x3)).subtract(y1).mod(p);
+        return new ECPoint(x3, y3);
+    }
+
+    private static ECPoint multiply(final ECParameterSpec spec, final ECPoint p, final BigInteger k) {
+        ECPoint res = ECPoint.POINT_INFINITY;
+        for(int i = k.bitLength() - 1; i >= 0; --i) {
+            res = add(spec, res, res);
+            if(k.testBit(i)) {
+                res = add(spec, res, p);
+            }
+        }
+        return res;
+    }
+
+    private static BigInteger prime(final ECField field) {
+        return ((ECFieldFp)field).getP();
+    }
+}
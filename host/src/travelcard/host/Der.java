@@ -0,0 +1,134 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/* Just enough of a DER encoder to build X.509 certificates */
+final class Der {
+
+    static final int INTEGER = 0x02;
+    static final int BIT_STRING = 0x03;
+    static final int NULL = 0x05;
+    static final int OID = 0x06;
+    static final int UTF8_STRING = 0x0c;
+    static final int UTC_TIME = 0x17;
+    static final int GENERALIZED_TIME = 0x18;
+    static final int SEQUENCE = 0x30;
+    static final int SET = 0x31;
+
+    private Der() {
+    }
+
+    static byte[] tlv(final int tag, final byte[]... values) {
+        int len = 0;
+        for(final byte[] v : values) {
+            len += v.length;
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(len + 6);
+        out.write(tag);
+        if(len < 0x80) {
+            out.write(len);
+        } else if(len <= 0xff) {
+            out.write(0x81);
+            out.write(len);
+        } else if(len <= 0xffff) {
+            out.write(0x82);
+            out.write(len >> 8);
+            out.write(len);
+        } else {
+            out.write(0x83);
+            out.write(len >> 16);
+            out.write(len >> 8);
+            out.write(len);
+        }
+        for(final byte[] v : values) {
+            out.write(v, 0, v.length);
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] sequence(final byte[]... values) {
+        return tlv(SEQUENCE, values);
+    }
+
+    static byte[] integer(final BigInteger v) {
+        return tlv(INTEGER, v.toByteArray());
+    }
+
+    static byte[] integer(final long v) {
+        return integer(BigInteger.valueOf(v));
+    }
+
+    static byte[] bitString(final byte[] v) {
+        return tlv(BIT_STRING, new byte[] { 0 }, v);
+    }
+
+    static byte[] nul() {
+        return tlv(NULL);
+    }
+
+    /* Context specific constructed tag [n] */
+    static byte[] explicit(final int n, final byte[] v) {
+        return tlv(0xa0 | n, v);
+    }
+
+    static byte[] oid(final String dotted) {
+        final String[] arcs = dotted.split("\\.");
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(Integer.parseInt(arcs[0]) * 40 + Integer.parseInt(arcs[1]));
+        for(int i = 2; i < arcs.length; ++i) {
+            final long arc = Long.parseLong(arcs[i]);
+            int shift = 63 - Long.numberOfLeadingZeros(arc | 1);
+            shift -= shift % 7;
+            for(; shift > 0; shift -= 7) {
+                out.write((int)(0x80 | ((arc >>> shift) & 0x7f)));
+            }
+            out.write((int)(arc & 0x7f));
+        }
+        return tlv(OID, out.toByteArray());
+    }
+
+    /* Name made of a single common name */
+    static byte[] name(final String commonName) {
+        return sequence(tlv(SET, sequence(oid("2.5.4.3"),
+                                          tlv(UTF8_STRING, utf8(commonName)))));
+    }
+
+    /* UTCTime until 2049 as RFC 5280 requires, GeneralizedTime after */
+    static byte[] time(final Date date) {
+        final SimpleDateFormat utc = new SimpleDateFormat("yyMMddHHmmss'Z'");
+        utc.setTimeZone(TimeZone.getTimeZone("UTC"));
+        final String s = utc.format(date);
+        if(date.getTime() < 2524608000000L) {
+            return tlv(UTC_TIME, utf8(s));
+        }
+        final SimpleDateFormat generalized = new SimpleDateFormat("yyyyMMddHHmmss'Z'");
+        generalized.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return tlv(GENERALIZED_TIME, utf8(generalized.format(date)));
+    }
+
+    private static byte[] utf8(final String s) {
+        return s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
+import java.security.spec.ECPoint;
+
+/*
+  Extended header list (4D) of a private key import for the
+  authentication key, in the OpenPGP card layout:
+
+    4D L | A4 00 | 7F48 L (tag, length)... | 5F48 L values
+
+  RSA keys carry e (91), p (92), q (93), 1/q mod p (94), d mod (p-1)
+  (95), d mod (q-1) (96) and n (97), EC keys the private scalar (92) and
+  the uncompressed public point (99). The card sets each component as it
+  arrives, the list is sent with PUT DATA (odd INS, P1P2 3FFF).
+*/
+public final class ExtendedHeaderList {
+
+    private ExtendedHeaderList() {
+    }
+
+    public static byte[] encode(final KeyPair keys) {
+        if(keys.getPrivate() instanceof RSAPrivateCrtKey) {
+            final RSAPrivateCrtKey k = (RSAPrivateCrtKey)keys.getPrivate();
+            return rsa(k.getPublicExponent(), k.getPrimeP(), k.getPrimeQ(), k.getCrtCoefficient(),
+                       k.getPrimeExponentP(), k.getPrimeExponentQ(), k.getModulus());
+        }
+        if(keys.getPrivate() instanceof ECPrivateKey) {
+            final ECPrivateKey k = (ECPrivateKey)keys.getPrivate();
+            return ec(k.getParams().getCurve().getField().getFieldSize(), k.getS(),
+                      ((ECPublicKey)keys.getPublic()).getW());
+        }
+        throw new IllegalArgumentException("unsupported key " + keys.getPrivate().getAlgorithm());
+    }
+
+    public static byte[] rsa(final BigInteger e, final BigInteger p, final BigInteger q,
+                             final BigInteger pq, final BigInteger dp, final BigInteger dq,
+                             final BigInteger n) {
+        final int size = (n.bitLength() + 7) / 8;
+        final int half = (size + 1) / 2;
+        return encode(new int[] { 0x91, 0x92, 0x93, 0x94, 0x95, 0x96, 0x97 },
+                      new byte[][] { unsigned(e, (e.bitLength() + 7) / 8), unsigned(p, half),
+                                     unsigned(q, half), unsigned(pq, half), unsigned(dp, half),
+                                     unsigned(dq, half), unsigned(n, size) });
+    }
+
+    public static byte[] ec(final int fieldSize, final BigInteger s, final ECPoint w) {
+        final int size = (fieldSize + 7) / 8;
+        final byte[] point = new byte[1 + 2 * size];
+        point[0] = 0x04;
+        System.arraycopy(unsigned(w.getAffineX(), size), 0, point, 1, size);
+        System.arraycopy(unsigned(w.getAffineY(), size), 0, point, 1 + size, size);
+        return encode(new int[] { 0x92, 0x99 }, new byte[][] { unsigned(s, size), point });
+    }
+
+    private static byte[] encode(final int[] tags, final byte[][] values) {
+        final ByteArrayOutputStream list = new ByteArrayOutputStream();
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for(int i = 0; i < tags.length; ++i) {
+            list.write(tags[i]);
+            writeLength(list, values[i].length);
+            data.write(values[i], 0, values[i].length);
+        }
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(0xa4);
+        body.write(0x00);
+        body.write(0x7f);
+        body.write(0x48);
+        writeLength(body, list.size());
+        body.write(list.toByteArray(), 0, list.size());
+        body.write(0x5f);
+        body.write(0x48);
+        writeLength(body, data.size());
+        body.write(data.toByteArray(), 0, data.size());
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + 4);
+        out.write(0x4d);
+        writeLength(out, body.size());
+        out.write(body.toByteArray(), 0, body.size());
+        return out.toByteArray();
+    }
+
+    private static void writeLength(final ByteArrayOutputStream out, final int len) {
+        if(len > 0xff) {
+            out.write(0x82);
+            out.write(len >> 8);
+        } else if(len > 0x7f) {
+            out.write(0x81);
+        }
+        out.write(len & 0xff);
+    }
+
+    /* Big endian on exactly size bytes */
+    private static byte[] unsigned(final BigInteger v, final int size) {
+        final byte[] b = v.toByteArray();
+        final byte[] res = new byte[size];
+        final int skip = (b.length > size) ? (b.length - size) : 0;
+        for(int i = 0; i < skip; ++i) {
+            if(b[i] != 0) {
+                throw new IllegalArgumentException("key component too long");
+            }
+        }
+        System.arraycopy(b, skip, res, size - (b.length - skip), b.length - skip);
+        return res;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+
+/*
+  Attested GENERATE ASYMMETRIC KEY PAIR responses. A card whose
+  attestation key was generated (CRT B6 00, once in its life) returns the
+  new public key DO followed by a signature (5F37) made with that key,
+  ECDSA SHA-256 on P-256, over the public key DO and the AID:
+
+    7F49 L ... | 5F37 L signature (DER)
+
+  An issuer that registered the attestation key of the card can then
+  certify the key without asking the card for more.
+*/
+public final class KeyAttestation {
+
+    public static final Algorithm ALGORITHM = Algorithm.P_256;
+
+    private static final int TAG_PUBLIC_KEY = 0x7f49;
+    private static final int TAG_SIGNATURE = 0x5f37;
+
+    private KeyAttestation() {
+    }
+
+    /* The public key DO of a response, attested or not */
+    public static byte[] publicKeyDo(final byte[] response) {
+        final Tlv t = new Tlv(response, 0, response.length);
+        if(!t.next() || (t.tag() != TAG_PUBLIC_KEY)) {
+            throw new IllegalArgumentException("not a public key DO");
+        }
+        return Arrays.copyOf(response, t.valueOffset() + t.length());
+    }
+
+    /* The attestation of a response, null when there is none */
+    public static byte[] signature(final byte[] response) {
+        final Tlv t = new Tlv(response, 0, response.length);
+        while(t.next()) {
+            if(t.tag() == TAG_SIGNATURE) {
+                return t.value();
+            }
+        }
+        return null;
+    }
+
+    public static boolean isAttested(final byte[] response) {
+        return signature(response) != null;
+    }
+
+    public static boolean verify(final PublicKey attestationKey, final byte[] aid,
+                                 final byte[] response) throws GeneralSecurityException {
+        final byte[] signature = signature(response);
+        if(signature == null) {
+            return false;
+        }
+        final Signature s = Signature.getInstance("SHA256withECDSA");
+        s.initVerify(attestationKey);
+        s.update(publicKeyDo(response));
+        s.update(aid);
+        return s.verify(signature);
+    }
+}
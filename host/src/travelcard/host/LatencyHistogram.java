@@ -0,0 +1,86 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/* Log-linear histogram of latencies in microseconds, safe to record from
+   many threads without locking: values are grouped by power of two, each
+   group being split in SUB_BUCKETS buckets (relative error < 2%). */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 64;
+    private static final int SUB_BITS = 6;
+    private static final int GROUPS = 40;
+
+    private final AtomicLongArray counts = new AtomicLongArray(GROUPS * SUB_BUCKETS);
+
+    private static int index(final long micros) {
+        final long v = Math.max(0, micros);
+        if(v < SUB_BUCKETS) {
+            return (int)v;
+        }
+        final int group = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS + 1;
+        final int sub = (int)(v >>> (group - 1)) - SUB_BUCKETS;
+        return Math.min(group * SUB_BUCKETS + sub, (GROUPS * SUB_BUCKETS) - 1);
+    }
+
+    /* Highest value of a bucket */
+    private static long value(final int index) {
+        final int group = index / SUB_BUCKETS;
+        final int sub = index % SUB_BUCKETS;
+        if(group == 0) {
+            return sub;
+        }
+        return (((long)(sub + SUB_BUCKETS + 1)) << (group - 1)) - 1;
+    }
+
+    public final void record(final long micros) {
+        counts.incrementAndGet(index(micros));
+    }
+
+    public final long count() {
+        long n = 0;
+        for(int i = 0; i < counts.length(); ++i) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /* Value under which the given fraction (0..1) of the records fall */
+    public final long percentile(final double fraction) {
+        final long total = count();
+        if(total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long)Math.ceil(fraction * total));
+        long n = 0;
+        for(int i = 0; i < counts.length(); ++i) {
+            n += counts.get(i);
+            if(n >= rank) {
+                return value(i);
+            }
+        }
+        return value(counts.length() - 1);
+    }
+
+    public final long max() {
+        return percentile(1.0);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+  Fleet load generator: personalizes many simulated cards in-process,
+  each with its own key and certificate, then taps them at random with
+  Poisson arrivals at a given rate. A tap is SELECT, GET DATA 7F21 and
+  INTERNAL AUTHENTICATE of a fresh challenge hash.
+
+  Latencies are measured from the scheduled arrival time, so a saturated
+  fleet shows up as queueing delay instead of a lower arrival rate. A
+  card handles one tap at a time; a tap on a busy card waits for it as
+  it would at a gate.
+
+  usage: LoadGenerator [--cards n] [--rate taps/s] [--duration s]
+                       [--algorithm id] [--certificate-length bytes]
+                       [--json file]
+*/
+public final class LoadGenerator {
+
+    private static final class FleetCard {
+        final ReentrantLock lock = new ReentrantLock();
+        final TravelCardClient client;
+        final byte[] certificate;
+
+        FleetCard(final TravelCardClient client, final byte[] certificate) {
+            this.client = client;
+            this.certificate = certificate;
+        }
+    }
+
+    private int cards = 1000;
+    private double rate = 500;
+    private int duration = 30;
+    private Algorithm algorithm = Algorithm.P_256;
+    private int certificateLength = 1024;
+    private String json;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LatencyHistogram service = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    private LoadGenerator() {
+    }
+
+    private void parse(final String[] args) {
+        for(int i = 0; i < args.length; i += 2) {
+            if((i + 1) >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            final String v = args[i + 1];
+            switch(args[i]) {
+            case "--cards":
+                cards = Integer.parseInt(v);
+                break;
+            case "--rate":
+                rate = Double.parseDouble(v);
+                break;
+            case "--duration":
+                duration = Integer.parseInt(v);
+                break;
+            case "--algorithm":
+                algorithm = Algorithm.forId(v);
+                break;
+            case "--certificate-length":
+                certificateLength = Integer.parseInt(v);
+                break;
+            case "--json":
+                json = v;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+    }
+
+    private List<FleetCard> personalize(final ExecutorService executor) throws Exception {
+        final List<Future<FleetCard>> futures = new ArrayList<Future<FleetCard>>(cards);
+        for(int i = 0; i < cards; ++i) {
+            final long seed = i;
+            futures.add(executor.submit(() -> {
+                        final SimulatedCard card = new SimulatedCard();
+                        final TravelCardClient client = new TravelCardClient(card, card.aid());
+                        client.select();
+                        client.generateKey(algorithm);
+                        final byte[] certificate = new byte[certificateLength];
+                        new Random(seed).nextBytes(certificate);
+                        client.writeCertificate(certificate);
+                        return new FleetCard(client, certificate);
+                    }));
+        }
+        final List<FleetCard> res = new ArrayList<FleetCard>(cards);
+        for(final Future<FleetCard> f : futures) {
+            res.add(f.get());
+        }
+        return res;
+    }
+
+    private void tap(final FleetCard card, final long scheduled) {
+        final byte[] challenge = new byte[32];
+        ThreadLocalRandom.current().nextBytes(challenge);
+        card.lock.lock();
+        try {
+            final long start = System.nanoTime();
+            card.client.select();
+            final byte[] certificate = card.client.readCertificate();
+            if(certificate.length != card.certificate.length) {
+                throw new IllegalStateException("certificate mismatch");
+            }
+            card.client.authenticate(MessageDigest.getInstance("SHA-256").digest(challenge));
+            final long end = System.nanoTime();
+            service.record((end - start) / 1000);
+            latencies.record((end - scheduled) / 1000);
+        } catch(final Exception e) {
+            errors.incrementAndGet();
+        } finally {
+            card.lock.unlock();
+        }
+    }
+
+    private void run() throws Exception {
+        try (CardSessions sessions = new CardSessions()) {
+            final ExecutorService executor = sessions.executor();
+
+            long t = System.nanoTime();
+            final List<FleetCard> fleet = personalize(executor);
+            System.out.printf("personalized %d cards (%s, %d bytes certificates) in %.1f s%s%n",
+                              cards, algorithm.id(), certificateLength,
+                              (System.nanoTime() - t) / 1e9,
+                              sessions.virtualThreads() ? " on virtual threads" : "");
+
+            final Random random = new SecureRandom();
+            final long start = System.nanoTime();
+            final long end = start + (duration * 1000000000L);
+            final List<Future<?>> pending = new ArrayList<Future<?>>();
+            long next = start;
+            long taps = 0;
+            while(true) {
+                next += (long)(-Math.log(1.0 - random.nextDouble()) / rate * 1e9);
+                if(next >= end) {
+                    break;
+                }
+                final long wait = next - System.nanoTime();
+                if(wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                final FleetCard card = fleet.get(random.nextInt(fleet.size()));
+                final long scheduled = next;
+                pending.add(executor.submit(() -> tap(card, scheduled)));
+                ++taps;
+            }
+            for(final Future<?> f : pending) {
+                f.get();
+            }
+            final double elapsed = (System.nanoTime() - start) / 1e9;
+            report(taps, elapsed);
+        }
+    }
+
+    private void report(final long taps, final double elapsed) throws IOException {
+        final long completed = latencies.count();
+        System.out.printf("taps %d, completed %d, errors %d in %.1f s: %.1f taps/s (offered %.1f)%n",
+                          taps, completed, errors.get(), elapsed, completed / elapsed, rate);
+        System.out.printf("latency us  p50 %d  p90 %d  p99 %d  p99.9 %d  max %d%n",
+                          latencies.percentile(0.5), latencies.percentile(0.9),
+                          latencies.percentile(0.99), latencies.percentile(0.999), latencies.max());
+        System.out.printf("service us  p50 %d  p90 %d  p99 %d  p99.9 %d  max %d%n",
+                          service.percentile(0.5), service.percentile(0.9),
+                          service.percentile(0.99), service.percentile(0.999), service.max());
+
+        if(json == null) {
+            return;
+        }
+        try (Writer w = new FileWriter(json)) {
+            w.write(String.format("{\"cards\":%d,\"algorithm\":\"%s\",\"certificateLength\":%d,"
+                                  + "\"offeredRate\":%.3f,\"durationSeconds\":%.3f,"
+                                  + "\"taps\":%d,\"completed\":%d,\"errors\":%d,\"throughput\":%.3f,"
+                                  + "\"latencyMicros\":%s,\"serviceMicros\":%s}%n",
+                                  cards, algorithm.id(), certificateLength, rate, elapsed,
+                                  taps, completed, errors.get(), completed / elapsed,
+                                  percentiles(latencies), percentiles(service)));
+        }
+    }
+
+    private static String percentiles(final LatencyHistogram h) {
+        return String.format("{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}",
+                             h.percentile(0.5), h.percentile(0.9), h.percentile(0.99),
+                             h.percentile(0.999), h.max());
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadGenerator g = new LoadGenerator();
+        g.parse(args);
+        g.run();
+    }
+}
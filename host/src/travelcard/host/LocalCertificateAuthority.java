@@ -0,0 +1,152 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+  Stand-in certification authority for test batches: a P-256 key made at
+  construction issues X.509 v3 certificates signed with ECDSA SHA-256,
+  the subject being the AID and a serial number. A latency can be added
+  to each issuance to model the round trip to a remote CA or an HSM.
+
+  The keys of the cards whose attestation key was registered are only
+  certified with a valid attestation.
+*/
+public final class LocalCertificateAuthority implements CertificateAuthority {
+
+    private static final String EC_PUBLIC_KEY = "1.2.840.10045.2.1";
+    private static final String ECDSA_WITH_SHA256 = "1.2.840.10045.4.3.2";
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    private final KeyPair keys;
+    private final byte[] issuer;
+    private final int validityDays;
+    private final long latencyMicros;
+    private final AtomicLong serial = new AtomicLong(System.currentTimeMillis());
+    private final Map<String, PublicKey> attestationKeys = new ConcurrentHashMap<String, PublicKey>();
+
+    public LocalCertificateAuthority(final String name, final int validityDays,
+                                     final long latencyMicros) throws GeneralSecurityException {
+        final KeyPairGenerator g = KeyPairGenerator.getInstance("EC");
+        g.initialize(new ECGenParameterSpec("secp256r1"));
+        this.keys = g.generateKeyPair();
+        this.issuer = Der.name(name);
+        this.validityDays = validityDays;
+        this.latencyMicros = latencyMicros;
+    }
+
+    public LocalCertificateAuthority() throws GeneralSecurityException {
+        this("Travel Card Test CA", 365, 0);
+    }
+
+    public final PublicKey publicKey() {
+        return keys.getPublic();
+    }
+
+    /* The attestation key of a card, from its public key DO */
+    public final void trustAttestationKey(final byte[] aid, final byte[] attestationKeyDo)
+        throws GeneralSecurityException {
+        attestationKeys.put(Apdus.hex(aid),
+                            CardPublicKey.parse(KeyAttestation.ALGORITHM, attestationKeyDo).key());
+    }
+
+    @Override
+    public final byte[] issue(final byte[] aid, final Algorithm algorithm, final byte[] response)
+        throws GeneralSecurityException {
+        final PublicKey attestationKey = attestationKeys.get(Apdus.hex(aid));
+        if((attestationKey != null) && !KeyAttestation.verify(attestationKey, aid, response)) {
+            throw new GeneralSecurityException("public key not attested by the card");
+        }
+        final byte[] publicKeyDo = KeyAttestation.publicKeyDo(response);
+        final long n = serial.incrementAndGet();
+        final Date notBefore = new Date();
+        final Date notAfter = new Date(notBefore.getTime() + validityDays * DAY);
+        final byte[] signatureAlgorithm = Der.sequence(Der.oid(ECDSA_WITH_SHA256));
+        final byte[] tbs = Der.sequence(Der.explicit(0, Der.integer(2)),
+                                        Der.integer(n),
+                                        signatureAlgorithm,
+                                        issuer,
+                                        Der.sequence(Der.time(notBefore), Der.time(notAfter)),
+                                        Der.name(Apdus.hex(aid) + " " + Long.toHexString(n)),
+                                        subjectPublicKeyInfo(algorithm, publicKeyDo));
+
+        final Signature s = Signature.getInstance("SHA256withECDSA");
+        s.initSign(keys.getPrivate());
+        s.update(tbs);
+        final byte[] certificate = Der.sequence(tbs, signatureAlgorithm, Der.bitString(s.sign()));
+
+        if(latencyMicros > 0) {
+            try {
+                TimeUnit.MICROSECONDS.sleep(latencyMicros);
+            } catch(final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GeneralSecurityException("interrupted", e);
+            }
+        }
+        return certificate;
+    }
+
+    /* Built from the DO rather than with the JCA so that curves the
+       providers lack can be certified too, and so that the point keeps
+       the form the card sent (compressed points are valid in an SPKI) */
+    private static byte[] subjectPublicKeyInfo(final Algorithm algorithm, final byte[] publicKeyDo)
+        throws GeneralSecurityException {
+        if(algorithm.isRsa()) {
+            return CardPublicKey.parse(algorithm, publicKeyDo).key().getEncoded();
+        }
+        final Tlv t = new Tlv(publicKeyDo, 0, publicKeyDo.length);
+        if(!t.next() || (t.tag() != 0x7f49)) {
+            throw new GeneralSecurityException("not a public key DO");
+        }
+        t.enter();
+        if(!Tlv.find(t, 0x86)) {
+            throw new GeneralSecurityException("incomplete EC public key DO");
+        }
+        return Der.sequence(Der.sequence(Der.oid(EC_PUBLIC_KEY), Der.oid(curveOid(algorithm))),
+                            Der.bitString(t.value()));
+    }
+
+    private static String curveOid(final Algorithm algorithm) {
+        switch(algorithm) {
+        case P_256:
+            return "1.2.840.10045.3.1.7";
+        case P_384:
+            return "1.3.132.0.34";
+        case P_521:
+            return "1.3.132.0.35";
+        case BRAINPOOL_P256R1:
+            return "1.3.36.3.3.2.8.1.1.7";
+        case BRAINPOOL_P384R1:
+            return "1.3.36.3.3.2.8.1.1.11";
+        default:
+            throw new IllegalArgumentException(algorithm.id());
+        }
+    }
+}
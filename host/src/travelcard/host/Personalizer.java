@@ -0,0 +1,413 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+  Personalization pipeline for batches of cards. Each card goes through
+  three stages:
+
+    GENERATE  SELECT, algorithm attributes and key pair generation (7F49)
+    CERTIFY   issuance of the certificate by the CA
+    WRITE     PUT DATA 7F21, chained
+
+  The card stages run on card sessions and CERTIFY on a pool of its own,
+  as a chain of futures: while the CA signs for one card, other cards
+  generate their keys or receive their certificates, and a batch takes
+  about the time of its slowest stage. At most `parallel` cards are in
+  flight, one per reader.
+
+  A stage failing with a chaining error (6883) or a memory error (6581,
+  6A84) is retried after a new SELECT. A job that still fails keeps the
+  stage it reached and what it got so far, so running it again resumes
+  there instead of generating a new key.
+
+  EC keys can be read in compressed form, which saves half of the point
+  on the way to the CA; the certificate then holds the compressed point.
+  With a dictionary, certificates are written compressed (see
+  CertificateCompressor).
+
+  usage: Personalizer [--cards n] [--parallel n] [--ca-threads n]
+                      [--ca-latency us] [--algorithm id]
+                      [--point compressed|uncompressed]
+                      [--certificate compressed|der]
+*/
+public final class Personalizer implements AutoCloseable {
+
+    public enum Stage {
+        GENERATE,
+        CERTIFY,
+        WRITE,
+        DONE
+    }
+
+    private static final int SW_MEMORY_FAILURE = 0x6581;
+    private static final int SW_FILE_FULL = 0x6a84;
+
+    public static final class Job {
+        private final Callable<? extends Transport> connect;
+        private final byte[] aid;
+        private volatile Stage stage = Stage.GENERATE;
+        private volatile byte[] publicKeyDo;
+        private volatile byte[] certificate;
+        private volatile Exception failure;
+        private Transport transport;
+        private TravelCardClient client;
+
+        /* connect must reach the same card each time it is called, a
+           resumed job reconnects to it */
+        public Job(final Callable<? extends Transport> connect, final byte[] aid) {
+            this.connect = connect;
+            this.aid = aid.clone();
+        }
+
+        public final Stage stage() {
+            return stage;
+        }
+
+        public final byte[] publicKeyDo() {
+            return publicKeyDo;
+        }
+
+        public final byte[] certificate() {
+            return certificate;
+        }
+
+        /* Cause of the last failure, null once the job is done */
+        public final Exception failure() {
+            return failure;
+        }
+    }
+
+    /* Counters of one stage, updated from many threads */
+    public static final class StageMetrics {
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+
+        public final long completed() {
+            return latencies.count();
+        }
+
+        public final long retries() {
+            return retries.get();
+        }
+
+        public final long failures() {
+            return failures.get();
+        }
+
+        public final LatencyHistogram latencies() {
+            return latencies;
+        }
+
+        /* Time spent in the stage summed over all jobs */
+        public final long busyNanos() {
+            return busyNanos.get();
+        }
+    }
+
+    private interface Step {
+        void run(final Job job) throws Exception;
+    }
+
+    private final CertificateAuthority ca;
+    private final Algorithm algorithm;
+    private final boolean compressed;
+    private final CertificateDictionary dictionary;
+    private final int parallel;
+    private final int retries;
+    private final CardSessions sessions = new CardSessions();
+    private final ExecutorService caExecutor;
+    private final StageMetrics[] metrics = new StageMetrics[Stage.DONE.ordinal()];
+
+    public Personalizer(final CertificateAuthority ca, final Algorithm algorithm,
+                        final boolean compressed, final CertificateDictionary dictionary,
+                        final int parallel, final int caThreads, final int retries) {
+        this.ca = ca;
+        this.algorithm = algorithm;
+        this.compressed = compressed;
+        this.dictionary = dictionary;
+        this.parallel = parallel;
+        this.retries = retries;
+        this.caExecutor = Executors.newFixedThreadPool(caThreads);
+        for(int i = 0; i < metrics.length; ++i) {
+            metrics[i] = new StageMetrics();
+        }
+    }
+
+    public Personalizer(final CertificateAuthority ca, final Algorithm algorithm,
+                        final int parallel, final int caThreads, final int retries) {
+        this(ca, algorithm, false, null, parallel, caThreads, retries);
+    }
+
+    public final StageMetrics metrics(final Stage stage) {
+        return metrics[stage.ordinal()];
+    }
+
+    /* Runs the jobs from the stage they reached and returns the ones that
+       failed, which can be given to run() again */
+    public final List<Job> run(final List<Job> jobs) throws InterruptedException {
+        final Semaphore readers = new Semaphore(parallel);
+        final List<CompletableFuture<Void>> pending = new ArrayList<CompletableFuture<Void>>(jobs.size());
+        final ExecutorService cards = sessions.executor();
+        for(final Job job : jobs) {
+            if(job.stage == Stage.DONE) {
+                continue;
+            }
+            readers.acquire();
+            job.failure = null;
+            pending.add(CompletableFuture
+                        .runAsync(() -> stage(job, Stage.GENERATE, this::generate), cards)
+                        .thenRunAsync(() -> stage(job, Stage.CERTIFY, this::certify), caExecutor)
+                        .thenRunAsync(() -> stage(job, Stage.WRITE, this::write), cards)
+                        .whenComplete((v, e) -> {
+                                if(e != null) {
+                                    job.failure = unwrap(e);
+                                } else {
+                                    job.stage = Stage.DONE;
+                                }
+                                disconnect(job);
+                                readers.release();
+                            }));
+        }
+        final List<Job> failed = new ArrayList<Job>();
+        for(final CompletableFuture<Void> f : pending) {
+            try {
+                f.join();
+            } catch(final RuntimeException ignored) {
+                /* Recorded in the job */
+            }
+        }
+        for(final Job job : jobs) {
+            if(job.stage != Stage.DONE) {
+                failed.add(job);
+            }
+        }
+        return failed;
+    }
+
+    private void stage(final Job job, final Stage stage, final Step step) {
+        if(job.stage.ordinal() > stage.ordinal()) {
+            return;
+        }
+        final StageMetrics m = metrics(stage);
+        final long start = System.nanoTime();
+        try {
+            for(int attempt = 0; ; ++attempt) {
+                try {
+                    step.run(job);
+                    break;
+                } catch(final StatusWordException e) {
+                    if((attempt >= retries) || !retryable(e.sw())) {
+                        throw e;
+                    }
+                    m.retries.incrementAndGet();
+                    if(job.client != null) {
+                        job.client.select();
+                    }
+                }
+            }
+        } catch(final Exception e) {
+            m.failures.incrementAndGet();
+            throw new StageException(e);
+        } finally {
+            m.busyNanos.addAndGet(System.nanoTime() - start);
+        }
+        m.latencies.record((System.nanoTime() - start) / 1000);
+        job.stage = Stage.values()[stage.ordinal() + 1];
+    }
+
+    private static boolean retryable(final int sw) {
+        return (sw == TravelCardClient.SW_CHAINING_ERROR) || (sw == SW_MEMORY_FAILURE) ||
+            (sw == SW_FILE_FULL);
+    }
+
+    private TravelCardClient client(final Job job) throws Exception {
+        if(job.client == null) {
+            job.transport = job.connect.call();
+            job.client = new TravelCardClient(job.transport, job.aid);
+            job.client.select();
+        }
+        return job.client;
+    }
+
+    private void generate(final Job job) throws Exception {
+        job.publicKeyDo = client(job).generateKey(algorithm, compressed);
+    }
+
+    private void certify(final Job job) throws Exception {
+        job.certificate = ca.issue(job.aid, algorithm, job.publicKeyDo);
+        if(dictionary != null) {
+            job.certificate = CertificateCompressor.compress(job.certificate, dictionary);
+        }
+    }
+
+    private void write(final Job job) throws Exception {
+        client(job).writeCertificate(job.certificate);
+    }
+
+    private static void disconnect(final Job job) {
+        if(job.transport instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable)job.transport).close();
+            } catch(final Exception ignored) {
+                /* The card is done with or will be connected again */
+            }
+        }
+        job.transport = null;
+        job.client = null;
+    }
+
+    private static Exception unwrap(final Throwable e) {
+        Throwable t = e;
+        while(((t instanceof java.util.concurrent.CompletionException) ||
+               (t instanceof StageException)) && (t.getCause() != null)) {
+            t = t.getCause();
+        }
+        return (t instanceof Exception) ? (Exception)t : new RuntimeException(t);
+    }
+
+    private static final class StageException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StageException(final Exception cause) {
+            super(cause);
+        }
+    }
+
+    public final void report(final PrintStream out, final double elapsedSeconds) {
+        for(final Stage s : Stage.values()) {
+            if(s == Stage.DONE) {
+                continue;
+            }
+            final StageMetrics m = metrics(s);
+            final LatencyHistogram h = m.latencies;
+            out.printf("%-8s %6d done %4d retries %4d failed  %8.1f/s  busy %6.1f s"
+                       + "  us p50 %d p99 %d max %d%n",
+                       s, m.completed(), m.retries(), m.failures(), m.completed() / elapsedSeconds,
+                       m.busyNanos() / 1e9, h.percentile(0.5), h.percentile(0.99), h.max());
+        }
+    }
+
+    @Override
+    public final void close() {
+        sessions.close();
+        caExecutor.shutdown();
+        try {
+            caExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+        } catch(final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* Dictionary of two certificates issued by the CA for a key of a
+       simulated card, standing in for the dictionary of an issuer */
+    private static CertificateDictionary sampleDictionary(final CertificateAuthority ca,
+                                                          final Algorithm algorithm,
+                                                          final boolean compressed) throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        final byte[] publicKeyDo = client.generateKey(algorithm, compressed);
+        final List<byte[]> samples = new ArrayList<byte[]>();
+        samples.add(ca.issue(card.aid(), algorithm, publicKeyDo));
+        samples.add(ca.issue(card.aid(), algorithm, publicKeyDo));
+        return CertificateDictionary.build(1, samples);
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int cards = 100;
+        int parallel = 16;
+        int caThreads = 2;
+        long caLatency = 0;
+        Algorithm algorithm = Algorithm.P_256;
+        boolean compressed = false;
+        boolean compressCertificates = false;
+        for(int i = 0; i < args.length; i += 2) {
+            if((i + 1) >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            final String v = args[i + 1];
+            switch(args[i]) {
+            case "--cards":
+                cards = Integer.parseInt(v);
+                break;
+            case "--parallel":
+                parallel = Integer.parseInt(v);
+                break;
+            case "--ca-threads":
+                caThreads = Integer.parseInt(v);
+                break;
+            case "--ca-latency":
+                caLatency = Long.parseLong(v);
+                break;
+            case "--algorithm":
+                algorithm = Algorithm.forId(v);
+                break;
+            case "--point":
+                if(!v.equals("compressed") && !v.equals("uncompressed")) {
+                    throw new IllegalArgumentException("bad point format " + v);
+                }
+                compressed = v.equals("compressed");
+                break;
+            case "--certificate":
+                if(!v.equals("compressed") && !v.equals("der")) {
+                    throw new IllegalArgumentException("bad certificate format " + v);
+                }
+                compressCertificates = v.equals("compressed");
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        final CertificateAuthority ca = new LocalCertificateAuthority("Travel Card Test CA", 365, caLatency);
+        final List<Job> jobs = new ArrayList<Job>(cards);
+        for(int i = 0; i < cards; ++i) {
+            jobs.add(new Job(SimulatedCard::new, Apdus.unhex(SimulatedCard.DEFAULT_AID)));
+        }
+        final CertificateDictionary dictionary = compressCertificates ?
+            sampleDictionary(ca, algorithm, compressed) : null;
+        try (Personalizer p = new Personalizer(ca, algorithm, compressed, dictionary,
+                                               parallel, caThreads, 2)) {
+            final long start = System.nanoTime();
+            final List<Job> failed = p.run(jobs);
+            final double elapsed = (System.nanoTime() - start) / 1e9;
+            System.out.printf("personalized %d of %d cards (%s) in %.1f s: %.1f cards/s%n",
+                              cards - failed.size(), cards, algorithm.id(), elapsed,
+                              (cards - failed.size()) / elapsed);
+            p.report(System.out, elapsed);
+            for(final Job j : failed) {
+                System.out.println("failed at " + j.stage() + ": " + j.failure());
+            }
+        }
+    }
+}
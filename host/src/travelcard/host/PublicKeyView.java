@@ -0,0 +1,141 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+
+/*
+  Flyweight view of a public key DO (7F49) as written by
+  CardKey.writePublicKeyDo: modulus (81) and exponent (82) for RSA, the
+  uncompressed or compressed point (86) for EC. CardPublicKey builds JCA
+  keys from it.
+*/
+public final class PublicKeyView {
+
+    private final TlvView t = new TlvView();
+
+    private ByteBuffer buf;
+    private boolean rsa;
+    private int modulusOffset;
+    private int modulusLength;
+    private int exponentOffset;
+    private int exponentLength;
+    private int pointOffset;
+    private int pointLength;
+    private boolean compressed;
+
+    public final PublicKeyView wrap(final ByteBuffer buf, final int off, final int len) {
+        this.buf = buf;
+        rsa = false;
+        modulusLength = 0;
+        exponentLength = 0;
+        pointLength = 0;
+        compressed = false;
+
+        t.wrap(buf, off, len);
+        if(!t.next() || (t.tag() != 0x7f49)) {
+            throw new IllegalArgumentException("not a public key DO");
+        }
+        t.enter();
+        while(t.next()) {
+            switch(t.tag()) {
+            case 0x81:
+                rsa = true;
+                modulusOffset = t.valueOffset();
+                modulusLength = t.length();
+                break;
+            case 0x82:
+                exponentOffset = t.valueOffset();
+                exponentLength = t.length();
+                break;
+            case 0x86:
+                pointOffset = t.valueOffset();
+                pointLength = t.length();
+                break;
+            default:
+                break;
+            }
+        }
+        if(rsa ? (exponentLength == 0) : (pointLength == 0)) {
+            throw new IllegalArgumentException("incomplete public key DO");
+        }
+        if(!rsa) {
+            final byte format = buf.get(pointOffset);
+            compressed = (format == 0x02) || (format == 0x03);
+            if((pointLength < 2) || (!compressed && (((pointLength & 1) == 0) || (format != 0x04)))) {
+                throw new IllegalArgumentException("unsupported EC point encoding");
+            }
+        }
+        return this;
+    }
+
+    public final boolean isRsa() {
+        return rsa;
+    }
+
+    public final int modulusOffset() {
+        return modulusOffset;
+    }
+
+    public final int modulusLength() {
+        return modulusLength;
+    }
+
+    public final int exponentOffset() {
+        return exponentOffset;
+    }
+
+    public final int exponentLength() {
+        return exponentLength;
+    }
+
+    public final boolean isCompressed() {
+        return compressed;
+    }
+
+    /* Size of one coordinate of the EC point */
+    public final int coordinateLength() {
+        return compressed ? (pointLength - 1) : ((pointLength - 1) / 2);
+    }
+
+    public final int xOffset() {
+        return pointOffset + 1;
+    }
+
+    /* Only for uncompressed points, the parity of y is yOdd() otherwise */
+    public final int yOffset() {
+        if(compressed) {
+            throw new IllegalStateException("compressed EC point");
+        }
+        return pointOffset + 1 + coordinateLength();
+    }
+
+    public final boolean yOdd() {
+        return compressed ? (buf.get(pointOffset) == 0x03)
+            : ((buf.get(pointOffset + pointLength - 1) & 1) != 0);
+    }
+
+    public final int copyPoint(final byte[] dst, final int off) {
+        return TlvView.copy(buf, pointOffset, pointLength, dst, off);
+    }
+
+    public final int copyModulus(final byte[] dst, final int off) {
+        return TlvView.copy(buf, modulusOffset, modulusLength, dst, off);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+
+/*
+  Flyweight view of an INTERNAL AUTHENTICATE response: r || s with both
+  halves of the same length for ECDSA, the signature block for RSA. The
+  ECDSA form is converted to the DER the JCA expects into a buffer owned
+  by the caller.
+*/
+public final class SignatureView {
+
+    private ByteBuffer buf;
+    private int offset;
+    private int length;
+    private boolean rsa;
+
+    public final SignatureView wrap(final ByteBuffer buf, final int off, final int len,
+                                    final boolean rsa) {
+        if(!rsa && ((len == 0) || ((len & 1) != 0))) {
+            throw new IllegalArgumentException("ECDSA signature of odd length");
+        }
+        this.buf = buf;
+        this.offset = off;
+        this.length = len;
+        this.rsa = rsa;
+        return this;
+    }
+
+    public final int length() {
+        return length;
+    }
+
+    public final int rOffset() {
+        return offset;
+    }
+
+    public final int sOffset() {
+        return offset + length / 2;
+    }
+
+    public final int halfLength() {
+        return length / 2;
+    }
+
+    public final int copy(final byte[] dst, final int off) {
+        return TlvView.copy(buf, offset, length, dst, off);
+    }
+
+    /* Largest DER encoding of an ECDSA signature of this length */
+    public final int maxDerLength() {
+        return 3 + 2 * (3 + length / 2);
+    }
+
+    /* Writes the ECDSA signature as a DER SEQUENCE of two INTEGERs and
+       returns the offset after it */
+    public final int toDer(final byte[] dst, final int off) {
+        if(rsa) {
+            throw new IllegalStateException("not an ECDSA signature");
+        }
+        final int half = length / 2;
+        final int rlen = integerLength(offset, half);
+        final int slen = integerLength(offset + half, half);
+        final int seq = 2 + rlen + 2 + slen;
+        int p = off;
+        dst[p++] = 0x30;
+        if(seq > 0x7f) {
+            dst[p++] = (byte)0x81;
+        }
+        dst[p++] = (byte)seq;
+        p = integer(offset, half, rlen, dst, p);
+        return integer(offset + half, half, slen, dst, p);
+    }
+
+    /* Length of the INTEGER content: leading zeros dropped, a zero byte
+       added in front of a high bit */
+    private int integerLength(final int off, final int len) {
+        int i = 0;
+        while((i < (len - 1)) && (buf.get(off + i) == 0)) {
+            ++i;
+        }
+        return (len - i) + (((buf.get(off + i) & 0x80) != 0) ? 1 : 0);
+    }
+
+    private int integer(final int off, final int len, final int ilen, final byte[] dst, int p) {
+        dst[p++] = 0x02;
+        dst[p++] = (byte)ilen;
+        int i = 0;
+        while((i < (len - 1)) && (buf.get(off + i) == 0)) {
+            ++i;
+        }
+        if(((buf.get(off + i) & 0x80) != 0)) {
+            dst[p++] = 0;
+        }
+        return TlvView.copy(buf, off + i, len - i, dst, p);
+    }
+}
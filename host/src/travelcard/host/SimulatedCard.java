@@ -0,0 +1,65 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import com.licel.jcardsim.smartcardio.CardSimulator;
+import com.licel.jcardsim.utils.AIDUtil;
+
+import javacard.framework.AID;
+
+import travelcard.TravelCardApplet;
+
+/* TravelCardApplet installed in an in-process jCardSim simulator. The
+   simulator is not thread safe, so one instance serves one thread. */
+public final class SimulatedCard implements Transport {
+
+    public static final String DEFAULT_AID = "A0000007810101002A01020304050607";
+
+    private final CardSimulator simulator;
+    private final AID aid;
+
+    public SimulatedCard() {
+        this(DEFAULT_AID, new byte[0]);
+    }
+
+    public SimulatedCard(final String aid, final byte[] installParameters) {
+        this.simulator = new CardSimulator();
+        this.aid = AIDUtil.create(aid);
+        simulator.installApplet(this.aid, TravelCardApplet.class,
+                                installParameters, (short)0, (byte)installParameters.length);
+    }
+
+    public final byte[] aid() {
+        final byte[] buf = new byte[16];
+        final byte len = aid.getBytes(buf, (short)0);
+        final byte[] res = new byte[len];
+        System.arraycopy(buf, 0, res, 0, len);
+        return res;
+    }
+
+    public final byte[] transmit(final byte[] command) {
+        return simulator.transmitCommand(command);
+    }
+
+    /* Power cycle: transient memory is cleared and no applet is selected */
+    public final void reset() {
+        simulator.reset();
+    }
+
+}
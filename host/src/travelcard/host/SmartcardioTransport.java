@@ -0,0 +1,92 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.TerminalFactory;
+
+/* Card in a PC/SC reader. The JDK provider may already answer 61xx with
+   GET RESPONSE (sun.security.smartcardio.t1GetResponse), which the
+   client handles transparently. */
+public final class SmartcardioTransport implements Transport, AutoCloseable {
+
+    private final Card card;
+    private final CardChannel channel;
+
+    private byte[] commandArray;
+    private ByteBuffer commandBuffer;
+    private byte[] responseArray;
+    private ByteBuffer responseBuffer;
+
+    private SmartcardioTransport(final Card card) {
+        this.card = card;
+        this.channel = card.getBasicChannel();
+    }
+
+    public static SmartcardioTransport connect(final CardTerminal terminal) throws CardException {
+        return new SmartcardioTransport(terminal.connect("*"));
+    }
+
+    public static List<CardTerminal> terminalsWithCard() throws CardException {
+        final List<CardTerminal> res = new ArrayList<CardTerminal>();
+        for(final CardTerminal t : TerminalFactory.getDefault().terminals().list()) {
+            if(t.isCardPresent()) {
+                res.add(t);
+            }
+        }
+        return res;
+    }
+
+    public final byte[] transmit(final byte[] command) {
+        final byte[] response = new byte[0x10000 + 2];
+        final int len = transmit(command, command.length, response);
+        final byte[] res = new byte[len];
+        System.arraycopy(response, 0, res, 0, len);
+        return res;
+    }
+
+    public final int transmit(final byte[] command, final int length, final byte[] response) {
+        if(command != commandArray) {
+            commandArray = command;
+            commandBuffer = ByteBuffer.wrap(command);
+        }
+        if(response != responseArray) {
+            responseArray = response;
+            responseBuffer = ByteBuffer.wrap(response);
+        }
+        commandBuffer.clear().limit(length);
+        responseBuffer.clear();
+        try {
+            return channel.transmit(commandBuffer, responseBuffer);
+        } catch(final CardException e) {
+            throw new IllegalStateException("transmit failed", e);
+        }
+    }
+
+    public final void close() throws CardException {
+        card.disconnect(false);
+    }
+}
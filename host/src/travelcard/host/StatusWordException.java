@@ -0,0 +1,36 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* The card answered with an unexpected status word */
+public class StatusWordException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int sw;
+
+    public StatusWordException(final String operation, final int sw) {
+        super(String.format("%s failed with status %04X", operation, sw));
+        this.sw = sw;
+    }
+
+    public final int sw() {
+        return sw;
+    }
+}
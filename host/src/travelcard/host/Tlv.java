@@ -0,0 +1,115 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* BER-TLV reader over a byte array, moving from one data object to the
+   next without copying. */
+public final class Tlv {
+
+    private final byte[] buf;
+    private int pos;
+    private int end;
+
+    private int tag;
+    private int valueOffset;
+    private int length;
+
+    public Tlv(final byte[] buf, final int off, final int len) {
+        this.buf = buf;
+        this.pos = off;
+        this.end = off + len;
+    }
+
+    /* Moves to the next data object at the current level */
+    public final boolean next() {
+        if(pos >= end) {
+            return false;
+        }
+        int p = pos;
+        tag = buf[p++] & 0xff;
+        if((tag & 0x1f) == 0x1f) {
+            do {
+                tag = (tag << 8) | (buf[p] & 0xff);
+            } while((buf[p++] & 0x80) != 0);
+        } else if(tag == 0x01) {
+            /* Proprietary 01xx data objects of the applet */
+            tag = (tag << 8) | (buf[p++] & 0xff);
+        }
+        int l = buf[p++] & 0xff;
+        if(l > 0x80) {
+            final int n = l & 0x7f;
+            l = 0;
+            for(int i = 0; i < n; ++i) {
+                l = (l << 8) | (buf[p++] & 0xff);
+            }
+        }
+        if((p + l) > end) {
+            throw new IllegalArgumentException("truncated data object " + Integer.toHexString(tag));
+        }
+        valueOffset = p;
+        length = l;
+        pos = p + l;
+        return true;
+    }
+
+    /* Continues with the data objects inside the current one */
+    public final void enter() {
+        pos = valueOffset;
+        end = valueOffset + length;
+    }
+
+    public final Tlv children() {
+        return new Tlv(buf, valueOffset, length);
+    }
+
+    public final int tag() {
+        return tag;
+    }
+
+    public final int valueOffset() {
+        return valueOffset;
+    }
+
+    public final int length() {
+        return length;
+    }
+
+    public final byte[] value() {
+        final byte[] res = new byte[length];
+        System.arraycopy(buf, valueOffset, res, 0, length);
+        return res;
+    }
+
+    public final int intValue() {
+        int v = 0;
+        for(int i = 0; i < length; ++i) {
+            v = (v << 8) | (buf[valueOffset + i] & 0xff);
+        }
+        return v;
+    }
+
+    public static final boolean find(final Tlv t, final int tag) {
+        while(t.next()) {
+            if(t.tag() == tag) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.ByteBuffer;
+
+/*
+  BER-TLV reader over a ByteBuffer, reusable from one buffer to the next
+  and free of allocation: values are read with absolute gets, so the
+  position of the buffer is left alone and several views can share it.
+
+  Lengths are the forms the applet writes (Common.writeLength): one byte
+  under 0x80, 81 xx from 0x80 and 82 xxxx above 0xff, which are also the
+  DER forms for data objects up to 64 kB. Other forms are rejected.
+*/
+public final class TlvView {
+
+    private ByteBuffer buf;
+    private int pos;
+    private int end;
+
+    private int tag;
+    private int offset;
+    private int valueOffset;
+    private int length;
+
+    public final TlvView wrap(final ByteBuffer buf, final int off, final int len) {
+        if((off < 0) || (len < 0) || ((off + len) > buf.limit())) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buf = buf;
+        this.pos = off;
+        this.end = off + len;
+        this.tag = 0;
+        this.offset = off;
+        this.valueOffset = off;
+        this.length = 0;
+        return this;
+    }
+
+    /* Same buffer and range as the other view, at its current data object */
+    public final TlvView wrapValue(final TlvView other) {
+        return wrap(other.buf, other.valueOffset, other.length);
+    }
+
+    public final boolean next() {
+        if(pos >= end) {
+            return false;
+        }
+        int p = pos;
+        int t = get(p++);
+        if((t & 0x1f) == 0x1f) {
+            int b;
+            do {
+                b = get(p++);
+                t = (t << 8) | b;
+            } while((b & 0x80) != 0);
+        } else if(t == 0x01) {
+            /* Proprietary 01xx data objects of the applet */
+            t = (t << 8) | get(p++);
+        }
+        int l = get(p++);
+        if(l == 0x81) {
+            l = get(p++);
+            if(l < 0x80) {
+                throw new IllegalArgumentException("non minimal length");
+            }
+        } else if(l == 0x82) {
+            l = (get(p) << 8) | get(p + 1);
+            p += 2;
+            if(l <= 0xff) {
+                throw new IllegalArgumentException("non minimal length");
+            }
+        } else if(l >= 0x80) {
+            throw new IllegalArgumentException("unsupported length form");
+        }
+        if((p + l) > end) {
+            throw new IllegalArgumentException("truncated data object");
+        }
+        tag = t;
+        offset = pos;
+        valueOffset = p;
+        length = l;
+        pos = p + l;
+        return true;
+    }
+
+    /* Continues with the data objects inside the current one */
+    public final void enter() {
+        pos = valueOffset;
+        end = valueOffset + length;
+    }
+
+    /* Moves to the next data object with the tag at the current level */
+    public final boolean find(final int wanted) {
+        while(next()) {
+            if(tag == wanted) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public final ByteBuffer buffer() {
+        return buf;
+    }
+
+    public final int tag() {
+        return tag;
+    }
+
+    /* Offset of the tag of the current data object */
+    public final int offset() {
+        return offset;
+    }
+
+    public final int valueOffset() {
+        return valueOffset;
+    }
+
+    public final int length() {
+        return length;
+    }
+
+    /* Offset of the first byte after the current data object */
+    public final int valueEnd() {
+        return valueOffset + length;
+    }
+
+    /* Unsigned big endian value, on up to 8 bytes */
+    public final long longValue() {
+        if(length > 8) {
+            throw new IllegalArgumentException("value too long");
+        }
+        long v = 0;
+        for(int i = 0; i < length; ++i) {
+            v = (v << 8) | get(valueOffset + i);
+        }
+        return v;
+    }
+
+    public final int intValue() {
+        if(length > 4) {
+            throw new IllegalArgumentException("value too long");
+        }
+        return (int)longValue();
+    }
+
+    public final boolean valueEquals(final byte[] b) {
+        return equals(buf, valueOffset, length, b);
+    }
+
+    public final int copyValue(final byte[] dst, final int off) {
+        return copy(buf, valueOffset, length, dst, off);
+    }
+
+    private int get(final int i) {
+        if(i >= end) {
+            throw new IllegalArgumentException("truncated data object");
+        }
+        return buf.get(i) & 0xff;
+    }
+
+    static boolean equals(final ByteBuffer buf, final int off, final int len, final byte[] b) {
+        if(len != b.length) {
+            return false;
+        }
+        for(int i = 0; i < len; ++i) {
+            if(buf.get(off + i) != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int copy(final ByteBuffer buf, final int off, final int len, final byte[] dst, final int dstOff) {
+        for(int i = 0; i < len; ++i) {
+            dst[dstOff + i] = buf.get(off + i);
+        }
+        return dstOff + len;
+    }
+}
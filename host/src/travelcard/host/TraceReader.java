@@ -0,0 +1,199 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+  Reads a trace written by TraceRecorder from a memory-mapped file, one
+  record at a time: next() moves to the following record, whose fields
+  are then available from the accessors. Commands and responses are
+  views on the mapping, nothing is copied unless asked for.
+*/
+public final class TraceReader implements Closeable {
+
+    public static final int EXCHANGE = TraceRecorder.RECORD_EXCHANGE;
+    public static final int RESET = TraceRecorder.RECORD_RESET;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final long startMillis;
+
+    private int type;
+    private long time;
+    private long duration;
+    private int commandOffset;
+    private int commandLength;
+    private int responseOffset;
+    private int responseLength;
+
+    private TraceReader(final FileChannel channel, final MappedByteBuffer map) throws IOException {
+        this.channel = channel;
+        this.map = map;
+        if((map.limit() < TraceRecorder.HEADER_LENGTH) || (map.getInt(0) != TraceRecorder.MAGIC)) {
+            throw new IOException("not an APDU trace");
+        }
+        if(map.getShort(4) != TraceRecorder.VERSION) {
+            throw new IOException("unsupported APDU trace version " + map.getShort(4));
+        }
+        this.startMillis = map.getLong(6);
+        rewind();
+    }
+
+    public static TraceReader open(final Path file) throws IOException {
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("APDU trace larger than 2 GB: " + file);
+            }
+            return new TraceReader(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch(final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /* Wall clock time the trace was started at, in ms */
+    public final long startMillis() {
+        return startMillis;
+    }
+
+    public final void rewind() {
+        map.position(TraceRecorder.HEADER_LENGTH);
+        time = 0;
+        type = 0;
+    }
+
+    /* A record cut short, as left by a recorder that was not closed,
+       ends the trace */
+    public final boolean next() {
+        if(!map.hasRemaining()) {
+            return false;
+        }
+        final int mark = map.position();
+        try {
+            type = map.get() & 0xff;
+            time += readVarint();
+            if(type == RESET) {
+                duration = 0;
+                commandLength = 0;
+                responseLength = 0;
+                return true;
+            }
+            if(type != EXCHANGE) {
+                throw new IllegalStateException("bad record type " + type + " at " + mark);
+            }
+            duration = readVarint();
+            commandLength = (int)readVarint();
+            commandOffset = map.position();
+            map.position(commandOffset + commandLength);
+            responseLength = (int)readVarint();
+            responseOffset = map.position();
+            map.position(responseOffset + responseLength);
+            return true;
+        } catch(final RuntimeException e) {
+            if((e instanceof java.nio.BufferUnderflowException) ||
+               (e instanceof IllegalArgumentException)) {
+                map.position(map.limit());
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    public final int type() {
+        return type;
+    }
+
+    /* Start of the exchange since the start of the trace, in us */
+    public final long timeMicros() {
+        return time;
+    }
+
+    public final long durationMicros() {
+        return duration;
+    }
+
+    public final int commandLength() {
+        return commandLength;
+    }
+
+    public final int responseLength() {
+        return responseLength;
+    }
+
+    public final byte ins() {
+        return map.get(commandOffset + 1);
+    }
+
+    public final boolean chained() {
+        return (map.get(commandOffset) & Apdus.CLA_CHAINING) != 0;
+    }
+
+    public final int sw() {
+        if(responseLength < 2) {
+            return 0;
+        }
+        return ((map.get(responseOffset + responseLength - 2) & 0xff) << 8) |
+            (map.get(responseOffset + responseLength - 1) & 0xff);
+    }
+
+    public final ByteBuffer command() {
+        return slice(commandOffset, commandLength);
+    }
+
+    public final ByteBuffer response() {
+        return slice(responseOffset, responseLength);
+    }
+
+    public final byte[] commandBytes() {
+        final byte[] b = new byte[commandLength];
+        command().get(b);
+        return b;
+    }
+
+    private ByteBuffer slice(final int off, final int len) {
+        final ByteBuffer b = map.duplicate();
+        b.limit(off + len).position(off);
+        return b.slice().asReadOnlyBuffer();
+    }
+
+    private long readVarint() {
+        long v = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            final int b = map.get() & 0xff;
+            v |= (long)(b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IllegalStateException("bad varint at " + map.position());
+    }
+
+    @Override
+    public final void close() throws IOException {
+        channel.close();
+    }
+}
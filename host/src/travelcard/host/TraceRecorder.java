@@ -0,0 +1,142 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+  Transport recording every APDU exchange in a trace, to be given to a
+  TravelCardClient in place of the transport it wraps. As it sits under
+  the client, the trace holds the APDUs as sent: chaining segments, Le
+  values and GET RESPONSE commands included.
+
+  Trace format, integers being unsigned LEB128 varints unless noted:
+
+    header    magic "TCT1" (4), version (2), start time in ms (8)
+    exchange  0x01, time since the previous record in us, duration in
+              us, command length, command, response length, response
+    reset     0x02, time since the previous record in us
+
+  Times are taken with System.nanoTime(), the start time only dates the
+  trace. Read traces with TraceReader.
+*/
+public final class TraceRecorder implements Transport, Closeable {
+
+    static final int MAGIC = 0x54435431;
+    static final int VERSION = 1;
+    static final int HEADER_LENGTH = 14;
+
+    static final int RECORD_EXCHANGE = 0x01;
+    static final int RECORD_RESET = 0x02;
+
+    private final Transport transport;
+    private final OutputStream out;
+    private long last;
+
+    public TraceRecorder(final Transport transport, final OutputStream out) throws IOException {
+        this.transport = transport;
+        this.out = new BufferedOutputStream(out, 0x10000);
+        this.last = System.nanoTime();
+
+        final long start = System.currentTimeMillis();
+        writeFixed(MAGIC, 4);
+        writeFixed(VERSION, 2);
+        writeFixed(start, 8);
+    }
+
+    public TraceRecorder(final Transport transport, final Path file) throws IOException {
+        this(transport, Files.newOutputStream(file));
+    }
+
+    @Override
+    public final byte[] transmit(final byte[] command) {
+        final long start = System.nanoTime();
+        final byte[] response = transport.transmit(command);
+        record(start, System.nanoTime(), command, command.length, response, response.length);
+        return response;
+    }
+
+    @Override
+    public final int transmit(final byte[] command, final int length, final byte[] response) {
+        final long start = System.nanoTime();
+        final int rlen = transport.transmit(command, length, response);
+        record(start, System.nanoTime(), command, length, response, rlen);
+        return rlen;
+    }
+
+    /* Marks a reset of the card, done by the caller, so that a replay
+       resets the simulated card at the same point */
+    public final synchronized void reset() {
+        try {
+            final long now = System.nanoTime();
+            out.write(RECORD_RESET);
+            writeVarint((now - last) / 1000);
+            last = now;
+        } catch(final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void record(final long start, final long end,
+                                     final byte[] command, final int clen,
+                                     final byte[] response, final int rlen) {
+        try {
+            out.write(RECORD_EXCHANGE);
+            writeVarint(Math.max(0, start - last) / 1000);
+            writeVarint((end - start) / 1000);
+            writeVarint(clen);
+            out.write(command, 0, clen);
+            writeVarint(rlen);
+            out.write(response, 0, rlen);
+            last = start;
+        } catch(final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeVarint(final long value) throws IOException {
+        long v = value;
+        while((v & ~0x7fL) != 0) {
+            out.write((int)((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int)v);
+    }
+
+    private void writeFixed(final long value, final int length) throws IOException {
+        for(int i = length - 1; i >= 0; --i) {
+            out.write((int)(value >>> (8 * i)));
+        }
+    }
+
+    public final synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public final synchronized void close() throws IOException {
+        out.close();
+    }
+}
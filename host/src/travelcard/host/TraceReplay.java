@@ -0,0 +1,227 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+  Replays an APDU trace into TravelCardApplet in the simulator and
+  compares the status words and the time of each command with a
+  baseline: the trace itself by default, or a trace recorded by an
+  earlier replay (--record) to compare two versions of the applet.
+
+  Commands are sent as recorded, so a replay follows the same chaining
+  splits and GET RESPONSE sequence. The trace is replayed --warmup times
+  first on fresh cards to let the JIT settle. Times are compared per
+  INS on their medians; commands whose baseline median is under
+  --min-micros are not checked for timing. Exits with status 1 on a
+  status word mismatch or a timing regression.
+
+  usage: TraceReplay --trace file [--baseline file] [--record file]
+                     [--aid hex] [--warmup n] [--tolerance ratio]
+                     [--min-micros us]
+*/
+public final class TraceReplay {
+
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    private Path trace;
+    private Path baseline;
+    private Path record;
+    private String aid = SimulatedCard.DEFAULT_AID;
+    private int warmup = 3;
+    private double tolerance = 1.5;
+    private long minMicros = 100;
+
+    private final List<Long> durations = new ArrayList<Long>();
+    private final List<Integer> statusWords = new ArrayList<Integer>();
+
+    private TraceReplay() {
+    }
+
+    private void parse(final String[] args) {
+        for(int i = 0; i < args.length; i += 2) {
+            if((i + 1) >= args.length) {
+                throw new IllegalArgumentException("missing value for " + args[i]);
+            }
+            final String v = args[i + 1];
+            switch(args[i]) {
+            case "--trace":
+                trace = Paths.get(v);
+                break;
+            case "--baseline":
+                baseline = Paths.get(v);
+                break;
+            case "--record":
+                record = Paths.get(v);
+                break;
+            case "--aid":
+                aid = v;
+                break;
+            case "--warmup":
+                warmup = Integer.parseInt(v);
+                break;
+            case "--tolerance":
+                tolerance = Double.parseDouble(v);
+                break;
+            case "--min-micros":
+                minMicros = Long.parseLong(v);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        if(trace == null) {
+            throw new IllegalArgumentException("--trace is required");
+        }
+        if(baseline == null) {
+            baseline = trace;
+        }
+    }
+
+    /* Replays the whole trace on a fresh card, measuring each command
+       when measure is set */
+    private void replay(final TraceReader reader, final boolean measure) throws IOException {
+        final SimulatedCard card = new SimulatedCard(aid, new byte[0]);
+        final TraceRecorder recorder = (measure && (record != null)) ? new TraceRecorder(card, record) : null;
+        final Transport transport = (recorder != null) ? recorder : card;
+        try {
+            reader.rewind();
+            while(reader.next()) {
+                if(reader.type() == TraceReader.RESET) {
+                    card.reset();
+                    if(recorder != null) {
+                        recorder.reset();
+                    }
+                    continue;
+                }
+                final byte[] command = reader.commandBytes();
+                final long start = System.nanoTime();
+                final byte[] response = transport.transmit(command);
+                final long micros = (System.nanoTime() - start) / 1000;
+                if(measure) {
+                    durations.add(micros);
+                    statusWords.add(Apdus.sw(response));
+                }
+            }
+        } finally {
+            if(recorder != null) {
+                recorder.close();
+            }
+        }
+    }
+
+    /* The number of bytes left in 61xx follows the length of responses
+       that may change from one run to the next, ECDSA signatures */
+    private static boolean sameStatus(final int expected, final int actual) {
+        if(((expected & 0xff00) == Apdus.SW_BYTES_REMAINING) &&
+           ((actual & 0xff00) == Apdus.SW_BYTES_REMAINING)) {
+            return true;
+        }
+        return expected == actual;
+    }
+
+    private boolean compare(final TraceReader base) {
+        final Map<Integer, LatencyHistogram[]> byIns = new TreeMap<Integer, LatencyHistogram[]>();
+        int mismatches = 0;
+        int i = 0;
+        base.rewind();
+        while(base.next()) {
+            if(base.type() != TraceReader.EXCHANGE) {
+                continue;
+            }
+            if(i >= statusWords.size()) {
+                System.out.printf("baseline has more commands than the replay (%d)%n", i);
+                return false;
+            }
+            final int ins = base.ins() & 0xff;
+            if(!sameStatus(base.sw(), statusWords.get(i))) {
+                if(mismatches < MAX_REPORTED_MISMATCHES) {
+                    System.out.printf("command %d INS %02X: status %04X, baseline %04X%n",
+                                      i, ins, statusWords.get(i), base.sw());
+                }
+                ++mismatches;
+            }
+            LatencyHistogram[] h = byIns.get(ins);
+            if(h == null) {
+                h = new LatencyHistogram[] { new LatencyHistogram(), new LatencyHistogram() };
+                byIns.put(ins, h);
+            }
+            h[0].record(base.durationMicros());
+            h[1].record(durations.get(i));
+            ++i;
+        }
+        if(i != statusWords.size()) {
+            System.out.printf("replay has more commands (%d) than the baseline (%d)%n", statusWords.size(), i);
+            return false;
+        }
+
+        boolean regression = false;
+        System.out.println("INS  count  baseline p50/p90 us  replay p50/p90 us  ratio");
+        for(final Map.Entry<Integer, LatencyHistogram[]> e : byIns.entrySet()) {
+            final LatencyHistogram b = e.getValue()[0];
+            final LatencyHistogram r = e.getValue()[1];
+            final long bp50 = b.percentile(0.5);
+            final double ratio = (double)Math.max(1, r.percentile(0.5)) / Math.max(1, bp50);
+            final boolean slow = (bp50 >= minMicros) && (ratio > tolerance);
+            regression |= slow;
+            System.out.printf(" %02X %6d  %9d %9d  %8d %8d  %5.2f%s%n",
+                              e.getKey(), b.count(), bp50, b.percentile(0.9),
+                              r.percentile(0.5), r.percentile(0.9), ratio, slow ? "  REGRESSION" : "");
+        }
+        System.out.printf("%d commands, %d status word mismatches%s%n", i, mismatches,
+                          regression ? ", timing regression" : "");
+        return (mismatches == 0) && !regression;
+    }
+
+    private boolean run() throws IOException {
+        try (TraceReader reader = TraceReader.open(trace)) {
+            for(int i = 0; i < warmup; ++i) {
+                replay(reader, false);
+            }
+            replay(reader, true);
+            if(baseline.equals(trace)) {
+                return compare(reader);
+            }
+        }
+        try (TraceReader base = TraceReader.open(baseline)) {
+            return compare(base);
+        }
+    }
+
+    /* Replays with the options of the command line, false on a status
+       word mismatch or a timing regression */
+    static boolean replay(final String... args) throws IOException {
+        final TraceReplay r = new TraceReplay();
+        r.parse(args);
+        return r.run();
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if(!replay(args)) {
+            System.exit(1);
+        }
+    }
+}
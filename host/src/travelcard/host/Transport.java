@@ -0,0 +1,42 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* Sends one command APDU and returns the response data followed by
+   the status word. */
+public interface Transport {
+
+    byte[] transmit(final byte[] command);
+
+    /* Same as above, writing the response in a buffer owned by the
+       caller and returning its length. */
+    default int transmit(final byte[] command, final int length, final byte[] response) {
+        final byte[] cmd;
+        if(length == command.length) {
+            cmd = command;
+        } else {
+            cmd = new byte[length];
+            System.arraycopy(command, 0, cmd, 0, length);
+        }
+        final byte[] res = transmit(cmd);
+        System.arraycopy(res, 0, response, 0, res.length);
+        return res.length;
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/*
+  Typed access to one card. Commands larger than the card accepts are
+  sent with command chaining, responses are collected with GET RESPONSE,
+  and a command interrupted by a chaining error (6883, the card lost the
+  chaining state) is sent again once from its first segment.
+
+  Extended length APDUs are used when the card reports in 7F66 that it
+  accepts more than a short APDU and extendedLength is allowed (the
+  reader must support them too).
+
+  The command, response and data buffers are reused from one call to
+  the next, so a client must be used by one thread at a time.
+*/
+public final class TravelCardClient {
+
+    public static final int SW_CHAINING_ERROR = 0x6883;
+
+    private static final int TAG_APPLICATION_RELATED_DATA = 0x006e;
+    private static final int TAG_CARDHOLDER_CERTIFICATE = 0x7f21;
+    private static final int TAG_ALGORITHM_ATTRIBUTES_AUT = 0x00c3;
+    private static final byte[] CRT_AUTHENTICATION_KEY = { (byte)0xa4, (byte)0x00 };
+    private static final byte[] CRT_ATTESTATION_KEY = { (byte)0xb6, (byte)0x00 };
+    private static final int P2_COMPRESSED = 0x01;
+
+    private static final int EXTENDED_HEADER = 7;
+    private static final int MAX_RESPONSE = 0x10000 + 2;
+
+    private final Transport transport;
+    private final byte[] aid;
+    private final boolean extendedLengthAllowed;
+
+    private byte[] command = new byte[5 + Apdus.SHORT_LC_MAX + 1];
+    private byte[] response = new byte[Apdus.SHORT_LC_MAX + 1 + 2];
+    private byte[] data = new byte[0x800];
+    private int dataLength;
+    private int sw;
+
+    private int maxCommandLength = Apdus.SHORT_LC_MAX;
+    private int maxResponseLength = Apdus.SHORT_LC_MAX + 1;
+    private boolean extendedLength;
+
+    private ApplicationData applicationData;
+    private Algorithm algorithm;
+
+    public TravelCardClient(final Transport transport, final byte[] aid,
+                            final boolean extendedLengthAllowed) {
+        this.transport = transport;
+        this.aid = aid.clone();
+        this.extendedLengthAllowed = extendedLengthAllowed;
+    }
+
+    public TravelCardClient(final Transport transport, final byte[] aid) {
+        this(transport, aid, false);
+    }
+
+    public final ApplicationData select() {
+        extendedLength = false;
+        maxCommandLength = Apdus.SHORT_LC_MAX;
+        maxResponseLength = Apdus.SHORT_LC_MAX + 1;
+
+        check("SELECT", exchange(Apdus.CLA, Apdus.INS_SELECT, 0x04, 0x00, aid, 0, aid.length));
+        applicationData = ApplicationData.parse(data, 0, dataLength);
+
+        /* The applet reports 256 for both lengths when it only handles
+           short APDUs */
+        if(extendedLengthAllowed &&
+           ((applicationData.maxCommandLength() > (Apdus.SHORT_LC_MAX + 1)) ||
+            (applicationData.maxResponseLength() > (Apdus.SHORT_LC_MAX + 1)))) {
+            extendedLength = true;
+            maxCommandLength = applicationData.maxCommandLength();
+            maxResponseLength = applicationData.maxResponseLength();
+            ensureCommand(EXTENDED_HEADER + maxCommandLength + 2);
+            ensureResponse(Math.min(maxResponseLength, MAX_RESPONSE - 2) + 2);
+        }
+        return applicationData;
+    }
+
+    /* TERMINATE DF: wipes the keys, the certificate and the signature
+       counter, and the card answers 6285 to everything but ACTIVATE FILE
+       until it is activated again. */
+    public final void terminate() {
+        check("TERMINATE DF", exchange(Apdus.CLA, Apdus.INS_TERMINATE_DF, 0x00, 0x00, null, 0, 0));
+        applicationData = null;
+        algorithm = null;
+    }
+
+    /* ACTIVATE FILE on a card that may be terminated, SELECT answering
+       6285 then, and selects the activated applet. */
+    public final ApplicationData activate() {
+        final int status = exchange(Apdus.CLA, Apdus.INS_SELECT, 0x04, 0x00, aid, 0, aid.length);
+        if(status != Apdus.SW_TERMINATED) {
+            check("SELECT", status);
+        }
+        check("ACTIVATE FILE", exchange(Apdus.CLA, Apdus.INS_ACTIVATE_FILE, 0x00, 0x00, null, 0, 0));
+        return select();
+    }
+
+    public final ApplicationData applicationData() {
+        return applicationData;
+    }
+
+    public final boolean extendedLength() {
+        return extendedLength;
+    }
+
+    public final byte[] getData(final int tag) {
+        check("GET DATA", exchange(Apdus.CLA, Apdus.INS_GET_DATA, tag >> 8, tag & 0xff, null, 0, 0));
+        return result();
+    }
+
+    public final void putData(final int tag, final byte[] value) {
+        check("PUT DATA", exchange(Apdus.CLA, Apdus.INS_PUT_DATA, tag >> 8, tag & 0xff,
+                                   value, 0, value.length));
+    }
+
+    public final byte[] readCertificate() {
+        return getData(TAG_CARDHOLDER_CERTIFICATE);
+    }
+
+    public final void writeCertificate(final byte[] certificate) {
+        putData(TAG_CARDHOLDER_CERTIFICATE, certificate);
+    }
+
+    /* Selects the certificate slot after the current one and returns
+       its certificate, readCertificate and writeCertificate addressing
+       that slot until SELECT or another tag */
+    public final byte[] readNextCertificate() {
+        check("GET NEXT DATA", exchange(Apdus.CLA, Apdus.INS_GET_NEXT_DATA,
+                                        TAG_CARDHOLDER_CERTIFICATE >> 8, TAG_CARDHOLDER_CERTIFICATE & 0xff,
+                                        null, 0, 0));
+        return result();
+    }
+
+    /* Sets the key algorithm when it differs from the last one set by
+       this client, generates a key pair and returns the public key DO
+       (7F49). */
+    public final byte[] generateKey(final Algorithm alg) {
+        return generateKey(alg, false);
+    }
+
+    /* With compressed, an EC point comes as x and the parity of y. When
+       the card has an attestation key the DO is followed by its
+       attestation (see KeyAttestation). */
+    public final byte[] generateKey(final Algorithm alg, final boolean compressed) {
+        if(alg != algorithm) {
+            putData(TAG_ALGORITHM_ATTRIBUTES_AUT, alg.attributes());
+            algorithm = alg;
+        }
+        check("GENERATE ASYMMETRIC KEY PAIR",
+              exchange(Apdus.CLA, Apdus.INS_GENERATE_ASYMMETRIC_KEY_PAIR, 0x80,
+                       compressed ? P2_COMPRESSED : 0x00,
+                       CRT_AUTHENTICATION_KEY, 0, CRT_AUTHENTICATION_KEY.length));
+        return result();
+    }
+
+    public final byte[] readPublicKey() {
+        return readPublicKey(false);
+    }
+
+    public final byte[] readPublicKey(final boolean compressed) {
+        check("GENERATE ASYMMETRIC KEY PAIR",
+              exchange(Apdus.CLA, Apdus.INS_GENERATE_ASYMMETRIC_KEY_PAIR, 0x81,
+                       compressed ? P2_COMPRESSED : 0x00,
+                       CRT_AUTHENTICATION_KEY, 0, CRT_AUTHENTICATION_KEY.length));
+        return result();
+    }
+
+    /* Sets the key algorithm as generateKey does and imports a private
+       key from its extended header list (see ExtendedHeaderList), with
+       command chaining when it does not fit one command */
+    public final void importKey(final Algorithm alg, final byte[] extendedHeaderList) {
+        if(alg != algorithm) {
+            putData(TAG_ALGORITHM_ATTRIBUTES_AUT, alg.attributes());
+            algorithm = alg;
+        }
+        check("PUT DATA", exchange(Apdus.CLA, Apdus.INS_PUT_DATA_ODD, 0x3f, 0xff,
+                                   extendedHeaderList, 0, extendedHeaderList.length));
+    }
+
+    /* Generates the attestation key of the card, which only works once,
+       and returns its public key DO */
+    public final byte[] generateAttestationKey() {
+        check("GENERATE ASYMMETRIC KEY PAIR",
+              exchange(Apdus.CLA, Apdus.INS_GENERATE_ASYMMETRIC_KEY_PAIR, 0x80, 0x00,
+                       CRT_ATTESTATION_KEY, 0, CRT_ATTESTATION_KEY.length));
+        return result();
+    }
+
+    public final byte[] readAttestationKey() {
+        check("GENERATE ASYMMETRIC KEY PAIR",
+              exchange(Apdus.CLA, Apdus.INS_GENERATE_ASYMMETRIC_KEY_PAIR, 0x81, 0x00,
+                       CRT_ATTESTATION_KEY, 0, CRT_ATTESTATION_KEY.length));
+        return result();
+    }
+
+    /* Signature of the hash by the authentication key, its length
+       selects the digest algorithm. ECDSA signatures are r || s. */
+    public final byte[] authenticate(final byte[] hash) {
+        return authenticate(hash, false);
+    }
+
+    /* Same as above, ECDSA signatures being DER encoded when der is set */
+    public final byte[] authenticate(final byte[] hash, final boolean der) {
+        check("INTERNAL AUTHENTICATE", exchange(Apdus.CLA, Apdus.INS_INTERNAL_AUTHENTICATE, der ? 0x01 : 0x00, 0x00,
+                                                hash, 0, hash.length));
+        return result();
+    }
+
+    /* Random bytes from the pool of the card, at most CHALLENGE_MAX_LENGTH */
+    public final byte[] challenge(final int length) {
+        if((length <= 0) || (length > Apdus.CHALLENGE_MAX_LENGTH) || (length > maxResponseLength)) {
+            throw new IllegalArgumentException("challenge length " + length);
+        }
+        check("GET CHALLENGE", exchange(Apdus.CLA, Apdus.INS_GET_CHALLENGE, 0x00, 0x00, null, 0, 0, length));
+        if(dataLength < length) {
+            throw new IllegalStateException("short challenge");
+        }
+        dataLength = length;
+        return result();
+    }
+
+    /* Raw access: sends the command and returns the status word, the
+       response data being available with responseData() until the next
+       call. */
+    public final int exchange(final byte cla, final byte ins, final int p1, final int p2,
+                              final byte[] in, final int off, final int len) {
+        return exchange(cla, ins, p1, p2, in, off, len, 0);
+    }
+
+    /* Same as above with an expected response length, 0 asking for as
+       much as the card sends */
+    public final int exchange(final byte cla, final byte ins, final int p1, final int p2,
+                              final byte[] in, final int off, final int len, final int le) {
+        int res = send(cla, ins, p1, p2, in, off, len, le);
+        if(res == SW_CHAINING_ERROR) {
+            res = send(cla, ins, p1, p2, in, off, len, le);
+        }
+        return res;
+    }
+
+    public final byte[] responseData() {
+        return result();
+    }
+
+    public final int responseLength() {
+        return dataLength;
+    }
+
+    private final int send(final byte cla, final byte ins, final int p1, final int p2,
+                           final byte[] in, final int off, final int len, final int le) {
+        dataLength = 0;
+
+        int done = 0;
+        do {
+            final int chunk = Math.min(len - done, maxCommandLength);
+            final boolean last = (done + chunk) >= len;
+            final int clen = encode(last ? cla : (byte)(cla | Apdus.CLA_CHAINING),
+                                    ins, p1, p2, in, off + done, chunk, last ? le : -1);
+            receive(transport.transmit(command, clen, response));
+            done += chunk;
+            if(!last && (sw != Apdus.SW_OK)) {
+                return sw;
+            }
+        } while(done < len);
+
+        while((sw & 0xff00) == Apdus.SW_BYTES_REMAINING) {
+            final int clen = encode(Apdus.CLA, Apdus.INS_GET_RESPONSE, 0, 0, null, 0, 0, 0);
+            receive(transport.transmit(command, clen, response));
+        }
+        return sw;
+    }
+
+    /* le < 0 leaves Le out, 0 asks for the maximum */
+    private final int encode(final byte cla, final byte ins, final int p1, final int p2,
+                             final byte[] in, final int off, final int len, final int le) {
+        final boolean withLe = le >= 0;
+        command[0] = cla;
+        command[1] = ins;
+        command[2] = (byte)p1;
+        command[3] = (byte)p2;
+        int p = 4;
+        if(extendedLength) {
+            if((len > 0) || withLe) {
+                command[p++] = 0;
+            }
+            if(len > 0) {
+                command[p++] = (byte)(len >> 8);
+                command[p++] = (byte)len;
+                System.arraycopy(in, off, command, p, len);
+                p += len;
+            }
+            if(withLe) {
+                final int ne = (le > 0) ? le : ((maxResponseLength >= 0x10000) ? 0 : maxResponseLength);
+                command[p++] = (byte)(ne >> 8);
+                command[p++] = (byte)ne;
+            }
+        } else {
+            if(len > 0) {
+                command[p++] = (byte)len;
+                System.arraycopy(in, off, command, p, len);
+                p += len;
+            }
+            if(withLe) {
+                command[p++] = (byte)le;
+            }
+        }
+        return p;
+    }
+
+    private final void receive(final int rlen) {
+        if(rlen < 2) {
+            throw new IllegalStateException("response without status word");
+        }
+        sw = ((response[rlen - 2] & 0xff) << 8) | (response[rlen - 1] & 0xff);
+        final int n = rlen - 2;
+        if((dataLength + n) > data.length) {
+            final byte[] grown = new byte[Math.max(data.length * 2, dataLength + n)];
+            System.arraycopy(data, 0, grown, 0, dataLength);
+            data = grown;
+        }
+        System.arraycopy(response, 0, data, dataLength, n);
+        dataLength += n;
+    }
+
+    private final void ensureCommand(final int len) {
+        if(command.length < len) {
+            command = new byte[len];
+        }
+    }
+
+    private final void ensureResponse(final int len) {
+        if(response.length < len) {
+            response = new byte[len];
+        }
+    }
+
+    private final byte[] result() {
+        final byte[] res = new byte[dataLength];
+        System.arraycopy(data, 0, res, 0, dataLength);
+        return res;
+    }
+
+    private final void check(final String operation, final int status) {
+        if(status != Apdus.SW_OK) {
+            throw new StatusWordException(operation, status);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* Runs the host tests, exiting with status 1 when a check failed */
+public final class AllTests {
+
+    private AllTests() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        BatchVerifierTest.run();
+        CertificateCacheTest.run();
+        CertificateSlotsTest.run();
+        CompressedPointTest.run();
+        EcdsaSignatureTest.run();
+        KeyAttestationTest.run();
+        KeyImportTest.run();
+        PersistentDataTest.run();
+        RecyclingTest.run();
+        RsaSignatureTest.run();
+        TraceReplayTest.run();
+        ViewsTest.run();
+
+        System.out.printf("%d checks, %d failed%n", Check.checks(), Check.failures());
+        if(Check.failures() > 0) {
+            System.exit(1);
+        }
+    }
+}
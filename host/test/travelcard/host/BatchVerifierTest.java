@@ -0,0 +1,145 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/* Signatures of simulated cards through BatchVerifier: valid ones,
+   tampered signatures and keys, and replayed signature counters */
+final class BatchVerifierTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 200;
+
+    private BatchVerifierTest() {
+    }
+
+    /* Signature of a hash by a fresh card, with the counter read before */
+    private static BatchVerifier.Item sign(final TravelCardClient client, final Algorithm alg,
+                                           final byte[] publicKeyDo, final int hashLength) {
+        final byte[] hash = new byte[hashLength];
+        Arrays.fill(hash, (byte)hashLength);
+        final long counter = client.select().signatureCounter();
+        return new BatchVerifier.Item(alg, publicKeyDo, hash, client.authenticate(hash), counter);
+    }
+
+    static void run() throws Exception {
+        final List<BatchVerifier.Item> valid = new ArrayList<BatchVerifier.Item>();
+        final List<BatchVerifier.Item> invalid = new ArrayList<BatchVerifier.Item>();
+        for(final Algorithm alg : new Algorithm[] { Algorithm.RSA_2048, Algorithm.P_256,
+                                                    Algorithm.BRAINPOOL_P256R1 }) {
+            final SimulatedCard card = new SimulatedCard();
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            client.select();
+            final byte[] publicKeyDo = client.generateKey(alg);
+            for(final int len : new int[] { 20, 32, 64 }) {
+                valid.add(sign(client, alg, publicKeyDo, len));
+            }
+
+            final BatchVerifier.Item tampered = sign(client, alg, publicKeyDo, 32);
+            tampered.signature[tampered.signature.length - 1] ^= 1;
+            invalid.add(tampered);
+
+            final byte[] badKey = publicKeyDo.clone();
+            badKey[badKey.length - 1] ^= 1;
+            final BatchVerifier.Item other = sign(client, alg, publicKeyDo, 32);
+            invalid.add(new BatchVerifier.Item(alg, badKey, other.hash, other.signature, other.counter));
+        }
+
+        final BatchVerifier verifier = new BatchVerifier();
+        for(final BatchVerifier.Status s : verifier.verify(valid)) {
+            Check.equal("valid signature", BatchVerifier.Status.VALID, s);
+        }
+        final BatchVerifier.Status[] res = verifier.verify(invalid);
+        for(int i = 0; i < res.length; i += 2) {
+            Check.equal("tampered signature " + invalid.get(i).algorithm,
+                        BatchVerifier.Status.BAD_SIGNATURE, res[i]);
+            /* a changed RSA exponent still parses, a changed EC point
+               may not */
+            Check.isTrue("tampered key " + invalid.get(i + 1).algorithm + ": " + res[i + 1],
+                         res[i + 1] != BatchVerifier.Status.VALID);
+        }
+
+        /* Replays, alone and within a batch */
+        for(final BatchVerifier.Item item : valid) {
+            Check.equal("replayed " + item.algorithm, BatchVerifier.Status.COUNTER_NOT_INCREASING,
+                        verifier.verify(item));
+        }
+        final BatchVerifier fresh = new BatchVerifier();
+        final List<BatchVerifier.Item> twice = new ArrayList<BatchVerifier.Item>();
+        twice.add(valid.get(0));
+        twice.add(valid.get(0));
+        twice.add(valid.get(1));
+        final BatchVerifier.Status[] r = fresh.verify(twice);
+        Check.equal("first of a batch", BatchVerifier.Status.VALID, r[0]);
+        Check.equal("replay in a batch", BatchVerifier.Status.COUNTER_NOT_INCREASING, r[1]);
+        Check.equal("next counter in a batch", BatchVerifier.Status.VALID, r[2]);
+
+        /* New cards evict the least recently seen one, not the table */
+        final BatchVerifier small = new BatchVerifier(ForkJoinPool.commonPool(), 2);
+        Check.equal("first card", BatchVerifier.Status.VALID, small.verify(valid.get(0)));
+        Check.equal("second card", BatchVerifier.Status.VALID, small.verify(valid.get(3)));
+        Check.equal("first card again", BatchVerifier.Status.VALID, small.verify(valid.get(1)));
+        Check.equal("third card", BatchVerifier.Status.VALID, small.verify(valid.get(6)));
+        Check.equal("replay of the recently seen card", BatchVerifier.Status.COUNTER_NOT_INCREASING,
+                    small.verify(valid.get(1)));
+        Check.equal("evicted card", BatchVerifier.Status.VALID, small.verify(valid.get(3)));
+
+        /* Concurrent batches accept a counter once */
+        final BatchVerifier.Item item = valid.get(0);
+        final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            int rounds = 0;
+            for(int round = 0; round < ROUNDS; ++round) {
+                final BatchVerifier shared = new BatchVerifier(ForkJoinPool.commonPool(), 16);
+                final CyclicBarrier start = new CyclicBarrier(THREADS);
+                final List<Future<BatchVerifier.Status>> results = new ArrayList<Future<BatchVerifier.Status>>();
+                for(int i = 0; i < THREADS; ++i) {
+                    results.add(executor.submit(new Callable<BatchVerifier.Status>() {
+                            @Override
+                            public BatchVerifier.Status call() throws Exception {
+                                start.await();
+                                return shared.verify(item);
+                            }
+                        }));
+                }
+                int accepted = 0;
+                for(final Future<BatchVerifier.Status> f : results) {
+                    if(f.get() == BatchVerifier.Status.VALID) {
+                        ++accepted;
+                    }
+                }
+                if(accepted == 1) {
+                    ++rounds;
+                }
+            }
+            Check.equal("rounds of concurrent replays accepting one", ROUNDS, rounds);
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/* CertificateCache lookups, least recently used eviction, removal,
+   reopening of the log and resolution of a simulated card */
+final class CertificateCacheTest {
+
+    private static final byte[] AID_A = Apdus.unhex("A0000007810101002A0000000000000A");
+    private static final byte[] AID_B = Apdus.unhex("A0000007810101002A0000000000000B");
+    private static final byte[] AID_C = Apdus.unhex("A0000007810101002A0000000000000C");
+    private static final byte[] PUBLIC_KEY_DO = Apdus.unhex("7F4903860100");
+
+    private CertificateCacheTest() {
+    }
+
+    private static byte[] certificate(final int seed) {
+        final byte[] c = new byte[300 + seed];
+        Arrays.fill(c, (byte)seed);
+        return c;
+    }
+
+    private static byte[] digest(final byte[] certificate) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(certificate);
+    }
+
+    static void run() throws Exception {
+        final Path path = Files.createTempFile("certificate-cache", ".log");
+        try {
+            final byte[] a = certificate(1);
+            final byte[] b = certificate(2);
+            final byte[] c = certificate(3);
+
+            try (CertificateCache cache = CertificateCache.open(path, 2)) {
+                cache.put(AID_A, Algorithm.P_256, PUBLIC_KEY_DO, a);
+                final CertificateCache.Entry e = cache.get(AID_A, digest(a));
+                Check.isTrue("lookup of a stored entry", e != null);
+                Check.equal("stored certificate", a, e.certificate());
+                Check.equal("stored public key DO", PUBLIC_KEY_DO, e.publicKeyDo());
+                Check.equal("stored algorithm", Algorithm.P_256, e.algorithm());
+                Check.isTrue("unknown validity", e.validAt(System.currentTimeMillis()));
+                Check.isTrue("lookup of another certificate", cache.get(AID_A, digest(b)) == null);
+                Check.isTrue("lookup of another AID", cache.get(AID_B, digest(a)) == null);
+                Check.equal("hits", 1L, cache.hits());
+                Check.equal("misses", 2L, cache.misses());
+
+                /* A was used after B, so C evicts B */
+                cache.put(AID_B, Algorithm.P_256, PUBLIC_KEY_DO, b);
+                cache.get(AID_A, digest(a));
+                cache.put(AID_C, Algorithm.P_256, PUBLIC_KEY_DO, c);
+                Check.equal("size after eviction", 2, cache.size());
+                Check.isTrue("least recently used evicted", cache.get(AID_B, digest(b)) == null);
+                Check.isTrue("recently used kept", cache.get(AID_A, digest(a)) != null);
+                Check.isTrue("new entry kept", cache.get(AID_C, digest(c)) != null);
+
+                cache.put(AID_A, Algorithm.P_256, PUBLIC_KEY_DO, a);
+                Check.equal("size after replacing an entry", 2, cache.size());
+
+                Check.isTrue("removal", cache.remove(AID_C, digest(c)));
+                Check.isTrue("second removal", !cache.remove(AID_C, digest(c)));
+            }
+
+            try (CertificateCache cache = CertificateCache.open(path, 2)) {
+                Check.equal("size after reopening", 1, cache.size());
+                final CertificateCache.Entry e = cache.get(AID_A, digest(a));
+                Check.isTrue("entry after reopening", e != null);
+                Check.equal("certificate after reopening", a, e.certificate());
+                Check.isTrue("removed entry after reopening", cache.get(AID_C, digest(c)) == null);
+                Check.isTrue("evicted entry after reopening", cache.get(AID_B, digest(b)) == null);
+
+                resolve(cache);
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /* A card is read on its first tap and served from the cache after */
+    private static void resolve(final CertificateCache cache) throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        final LocalCertificateAuthority ca = new LocalCertificateAuthority();
+        client.writeCertificate(ca.issue(card.aid(), Algorithm.P_256, client.generateKey(Algorithm.P_256)));
+
+        client.select();
+        final long misses = cache.misses();
+        final CertificateCache.Entry first = cache.resolve(client);
+        Check.equal("first tap misses", misses + 1, cache.misses());
+        Check.equal("resolved certificate", client.readCertificate(), first.certificate());
+        Check.isTrue("validity of the resolved certificate",
+                     (first.notAfter() != CertificateCache.NOT_AFTER_UNKNOWN) &&
+                     first.validAt(System.currentTimeMillis()));
+
+        client.select();
+        final long hits = cache.hits();
+        Check.isTrue("second tap served from the cache", cache.resolve(client) == first);
+        Check.equal("second tap hits", hits + 1, cache.hits());
+        Check.equal("public key of the resolved entry", "EC", first.publicKey().key().getAlgorithm());
+    }
+}
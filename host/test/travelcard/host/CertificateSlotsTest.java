@@ -0,0 +1,81 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.MessageDigest;
+
+/* Certificates of several key slots, addressed with GET NEXT DATA */
+final class CertificateSlotsTest {
+
+    private static final int TAG_CERTIFICATE_DIGEST = 0x0102;
+
+    private CertificateSlotsTest() {
+    }
+
+    private static byte[] certificate(final int slot) {
+        final byte[] c = new byte[0x40 + slot];
+        for(int i = 0; i < c.length; ++i) {
+            c[i] = (byte)(slot + i);
+        }
+        return c;
+    }
+
+    private static int nextStatus(final TravelCardClient client) {
+        try {
+            client.readNextCertificate();
+            return Apdus.SW_OK;
+        } catch(final StatusWordException e) {
+            return e.sw();
+        }
+    }
+
+    static void run() throws Exception {
+        final SimulatedCard card = new SimulatedCard(SimulatedCard.DEFAULT_AID, Apdus.unhex("830103"));
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+
+        client.writeCertificate(certificate(0));
+        Check.equal("second slot empty", 0, client.readNextCertificate().length);
+        client.writeCertificate(certificate(1));
+        Check.equal("third slot empty", 0, client.readNextCertificate().length);
+        client.writeCertificate(certificate(2));
+        Check.equal("PUT DATA kept the slot", certificate(2), client.readCertificate());
+        Check.equal("digest of the current slot",
+                    MessageDigest.getInstance("SHA-256").digest(certificate(2)),
+                    client.getData(TAG_CERTIFICATE_DIGEST));
+        Check.equal("past the last slot", 0x6a88, nextStatus(client));
+
+        client.select();
+        Check.equal("SELECT goes back to the first slot", certificate(0), client.readCertificate());
+        Check.equal("GET NEXT DATA returns the next slot", certificate(1), client.readNextCertificate());
+        Check.equal("GET DATA stays on it", certificate(1), client.readCertificate());
+        Check.equal("then the one after", certificate(2), client.readNextCertificate());
+
+        client.getData(0x006e);
+        Check.equal("another tag goes back to the first slot", certificate(0), client.readCertificate());
+
+        client.select();
+        Check.equal("GET NEXT DATA right after SELECT", certificate(1), client.readNextCertificate());
+
+        client.terminate();
+        client.activate();
+        client.select();
+        Check.equal("reset slot", 0, client.readNextCertificate().length);
+    }
+}
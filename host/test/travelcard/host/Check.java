@@ -0,0 +1,60 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.util.Arrays;
+
+/*
+  Checks of the host tests, which run without a test framework: a
+  failed check is reported and counted, and AllTests exits with status 1
+  when any failed.
+*/
+final class Check {
+
+    private static int checks;
+    private static int failures;
+
+    private Check() {
+    }
+
+    static void isTrue(final String what, final boolean ok) {
+        ++checks;
+        if(!ok) {
+            ++failures;
+            System.out.println("FAILED " + what);
+        }
+    }
+
+    static void equal(final String what, final Object expected, final Object actual) {
+        final boolean ok = Arrays.deepEquals(new Object[] { expected }, new Object[] { actual });
+        isTrue(what + ": expected " + show(expected) + ", got " + show(actual), ok);
+    }
+
+    private static String show(final Object o) {
+        return (o instanceof byte[]) ? Apdus.hex((byte[])o) : String.valueOf(o);
+    }
+
+    static int checks() {
+        return checks;
+    }
+
+    static int failures() {
+        return failures;
+    }
+}
@@ -0,0 +1,76 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/* Public key DOs with a compressed point (GENERATE with P2 01) compared
+   with the uncompressed point of the same key */
+final class CompressedPointTest {
+
+    /* Generations per curve, enough to see both parities of y */
+    private static final int MAX_GENERATIONS = 32;
+
+    private CompressedPointTest() {
+    }
+
+    /* Value of the point (86) of a public key DO */
+    private static byte[] point(final byte[] publicKeyDo) {
+        final Tlv t = new Tlv(publicKeyDo, 0, publicKeyDo.length);
+        t.next();
+        t.enter();
+        Tlv.find(t, 0x86);
+        return t.value();
+    }
+
+    static void run() throws Exception {
+        for(final Algorithm alg : Algorithm.values()) {
+            if(alg.isRsa()) {
+                continue;
+            }
+            final SimulatedCard card = new SimulatedCard();
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            client.select();
+
+            final boolean[] seen = new boolean[2];
+            for(int i = 0; (i < MAX_GENERATIONS) && !(seen[0] && seen[1]); ++i) {
+                final byte[] compressedDo = client.generateKey(alg, true);
+                final byte[] compressed = point(compressedDo);
+                final byte[] uncompressed = point(client.readPublicKey(false));
+                final int size = (uncompressed.length - 1) / 2;
+
+                Check.equal(alg + " compressed point length", 1 + size, compressed.length);
+                Check.equal(alg + " x", Arrays.copyOfRange(uncompressed, 1, 1 + size),
+                            Arrays.copyOfRange(compressed, 1, compressed.length));
+
+                final boolean odd = new BigInteger(1, Arrays.copyOfRange(uncompressed, 1 + size, uncompressed.length))
+                    .testBit(0);
+                Check.equal(alg + " parity byte", (byte)(odd ? 0x03 : 0x02), compressed[0]);
+                seen[odd ? 1 : 0] = true;
+
+                Check.equal(alg + " decompressed point",
+                            CardPublicKey.parse(alg, client.readPublicKey(false)).point(),
+                            CardPublicKey.parse(alg, compressedDo).point());
+                Check.equal(alg + " compressed read back", compressedDo, client.readPublicKey(true));
+            }
+            Check.isTrue(alg + " both parities", seen[0] && seen[1]);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+
+/* INTERNAL AUTHENTICATE with EC keys, as r || s (P1 00) and as DER
+   (P1 01), verified with the JCA over the message that was hashed */
+final class EcdsaSignatureTest {
+
+    private static final int SIGNATURES = 32;
+
+    private static final String[] DIGESTS = { "SHA-1", "SHA-256", "SHA-384", "SHA-512" };
+
+    private EcdsaSignatureTest() {
+    }
+
+    private static String jcaName(final String digest) {
+        return digest.replace("-", "") + "withECDSA";
+    }
+
+    private static boolean verify(final PublicKey key, final String digest,
+                                  final byte[] message, final byte[] der) throws Exception {
+        final Signature s = Signature.getInstance(jcaName(digest));
+        s.initVerify(key);
+        s.update(message);
+        return s.verify(der);
+    }
+
+    static void run() throws Exception {
+        for(final Algorithm alg : new Algorithm[] { Algorithm.P_256, Algorithm.P_384, Algorithm.P_521 }) {
+            final SimulatedCard card = new SimulatedCard();
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            client.select();
+            final CardPublicKey key = CardPublicKey.parse(alg, client.generateKey(alg));
+            final int size = (key.curve().getCurve().getField().getFieldSize() + 7) / 8;
+
+            int plain = 0;
+            int der = 0;
+            int leadingZero = 0;
+            for(int i = 0; i < SIGNATURES; ++i) {
+                final String digest = DIGESTS[i % DIGESTS.length];
+                final byte[] message = (alg + " message " + i).getBytes("UTF-8");
+                final byte[] hash = MessageDigest.getInstance(digest).digest(message);
+
+                final byte[] rs = client.authenticate(hash, false);
+                if(rs.length == (2 * size)) {
+                    final BigInteger r = new BigInteger(1, Arrays.copyOfRange(rs, 0, size));
+                    final BigInteger s = new BigInteger(1, Arrays.copyOfRange(rs, size, rs.length));
+                    if((rs[0] == 0) || (rs[size] == 0)) {
+                        ++leadingZero;
+                    }
+                    if(verify(key.key(), digest, message, Der.sequence(Der.integer(r), Der.integer(s)))) {
+                        ++plain;
+                    }
+                }
+
+                if(verify(key.key(), digest, message, client.authenticate(hash, true))) {
+                    ++der;
+                }
+            }
+            Check.equal(alg + " r || s signatures verified", SIGNATURES, plain);
+            Check.equal(alg + " DER signatures verified", SIGNATURES, der);
+            /* P-521 values take 66 bytes for 521 bits: about half of
+               them start with a zero byte, which r || s must keep */
+            if(alg == Algorithm.P_521) {
+                Check.isTrue(alg + " r || s signatures with a leading zero", leadingZero > 0);
+            }
+        }
+    }
+}
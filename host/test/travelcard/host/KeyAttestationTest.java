@@ -0,0 +1,84 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.PublicKey;
+
+/* GENERATE ASYMMETRIC KEY PAIR with an attestation (5F37), verified with
+   the attestation key of the card */
+final class KeyAttestationTest {
+
+    private KeyAttestationTest() {
+    }
+
+    private static int generateAttestationKeyStatus(final TravelCardClient client) {
+        try {
+            client.generateAttestationKey();
+            return Apdus.SW_OK;
+        } catch(final StatusWordException e) {
+            return e.sw();
+        }
+    }
+
+    private static void checkAttested(final String what, final PublicKey attestationKey,
+                                      final byte[] aid, final byte[] response) throws Exception {
+        Check.isTrue(what + " attested", KeyAttestation.isAttested(response));
+        Check.isTrue(what + " attestation verified", KeyAttestation.verify(attestationKey, aid, response));
+
+        final byte[] otherAid = aid.clone();
+        otherAid[otherAid.length - 1] ^= 1;
+        Check.isTrue(what + " attestation of another AID",
+                     !KeyAttestation.verify(attestationKey, otherAid, response));
+
+        final byte[] tampered = response.clone();
+        tampered[KeyAttestation.publicKeyDo(response).length - 1] ^= 1;
+        Check.isTrue(what + " attestation of another key",
+                     !KeyAttestation.verify(attestationKey, aid, tampered));
+    }
+
+    static void run() throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+
+        Check.isTrue("no attestation before the attestation key",
+                     !KeyAttestation.isAttested(client.generateKey(Algorithm.P_256)));
+
+        final byte[] attestationDo = client.generateAttestationKey();
+        Check.equal("attestation key read back", attestationDo, client.readAttestationKey());
+        Check.equal("attestation key generated once", 0x6985, generateAttestationKeyStatus(client));
+        final PublicKey attestationKey = CardPublicKey.parse(KeyAttestation.ALGORITHM, attestationDo).key();
+
+        for(final Algorithm alg : new Algorithm[] { Algorithm.P_256, Algorithm.P_384, Algorithm.RSA_2048 }) {
+            final byte[] response = client.generateKey(alg);
+            checkAttested(alg.toString(), attestationKey, card.aid(), response);
+            Check.equal(alg + " attested key is the card key",
+                        client.readPublicKey(), KeyAttestation.publicKeyDo(response));
+            Check.isTrue(alg + " no attestation when reading the key",
+                         !KeyAttestation.isAttested(client.readPublicKey()));
+        }
+        checkAttested("compressed P-256", attestationKey, card.aid(), client.generateKey(Algorithm.P_256, true));
+
+        /* The attestation key is kept across recycling */
+        client.terminate();
+        client.activate();
+        Check.equal("attestation key kept", attestationDo, client.readAttestationKey());
+        checkAttested("P-256 after recycling", attestationKey, card.aid(), client.generateKey(Algorithm.P_256));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+/* Private keys made with the JCA, imported from an extended header list
+   (chained when it does not fit one command), then used to sign */
+final class KeyImportTest {
+
+    private KeyImportTest() {
+    }
+
+    private static KeyPair keyPair(final Algorithm alg) throws Exception {
+        if(alg.isRsa()) {
+            final KeyPairGenerator g = KeyPairGenerator.getInstance("RSA");
+            g.initialize(2048);
+            return g.generateKeyPair();
+        }
+        final KeyPairGenerator g = KeyPairGenerator.getInstance("EC");
+        g.initialize(new ECGenParameterSpec(alg.curve()));
+        return g.generateKeyPair();
+    }
+
+    private static int status(final Runnable command) {
+        try {
+            command.run();
+            return Apdus.SW_OK;
+        } catch(final StatusWordException e) {
+            return e.sw();
+        }
+    }
+
+    static void run() throws Exception {
+        for(final Algorithm alg : new Algorithm[] { Algorithm.RSA_2048, Algorithm.P_256,
+                                                    Algorithm.P_384, Algorithm.P_521 }) {
+            final SimulatedCard card = new SimulatedCard();
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            client.select();
+            client.generateKey(alg);
+            client.writeCertificate(new byte[] { 0x30, 0x00 });
+
+            final KeyPair keys = keyPair(alg);
+            client.importKey(alg, ExtendedHeaderList.encode(keys));
+
+            Check.equal(alg + " certificate of the previous key dropped", 0, client.readCertificate().length);
+            Check.equal(alg + " imported public key", keys.getPublic().getEncoded(),
+                        CardPublicKey.parse(alg, client.readPublicKey()).key().getEncoded());
+
+            final byte[] message = (alg + " imported").getBytes("UTF-8");
+            final byte[] hash = MessageDigest.getInstance("SHA-256").digest(message);
+            final Signature s = Signature.getInstance(alg.isRsa() ? "SHA256withRSA" : "SHA256withECDSA");
+            s.initVerify(keys.getPublic());
+            s.update(message);
+            Check.isTrue(alg + " signature of the imported key", s.verify(client.authenticate(hash, true)));
+
+            /* A list cut short leaves no key */
+            final byte[] list = ExtendedHeaderList.encode(keyPair(alg));
+            final byte[] cut = Arrays.copyOf(list, list.length - 1);
+            Check.isTrue(alg + " truncated list refused",
+                         status(() -> client.importKey(alg, cut)) != Apdus.SW_OK);
+            Check.equal(alg + " no key after a failed import", 0x6a88,
+                        status(() -> client.readPublicKey()));
+            Check.isTrue(alg + " no signature after a failed import",
+                         status(() -> client.authenticate(hash)) != Apdus.SW_OK);
+        }
+    }
+}
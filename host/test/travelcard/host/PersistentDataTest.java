@@ -0,0 +1,108 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.MessageDigest;
+
+/* Data packed in the persistent array of the card: the signature
+   counter, the metadata of each key slot and the metrics snapshot,
+   read back after power cycles and recycling */
+final class PersistentDataTest {
+
+    private static final int TAG_ALGORITHM_ATTRIBUTES_AUT = 0x00c3;
+    private static final int TAG_CERTIFICATE_DIGEST = 0x0102;
+    private static final int TAG_METRICS = 0x0103;
+
+    /* Past 0xFF, so that the counter carries into its second byte */
+    private static final int SIGNATURES = 260;
+
+    private static final int SLOTS = 3;
+
+    private PersistentDataTest() {
+    }
+
+    private static byte[] certificate(final int slot) {
+        final byte[] c = new byte[0x80 + slot];
+        for(int i = 0; i < c.length; ++i) {
+            c[i] = (byte)(0x30 + slot + i);
+        }
+        return c;
+    }
+
+    /* Value of the first metric, SELECT commands, in the metrics DO */
+    private static long selects(final TravelCardClient client) {
+        final byte[] m = client.getData(TAG_METRICS);
+        long v = 0;
+        for(int i = 1; i < 5; ++i) {
+            v = (v << 8) | (m[i] & 0xff);
+        }
+        return v;
+    }
+
+    private static void checkSlots(final String what, final TravelCardClient client) throws Exception {
+        client.select();
+        for(int slot = 0; slot < SLOTS; ++slot) {
+            final byte[] c = (slot == 0) ? client.readCertificate() : client.readNextCertificate();
+            Check.equal(what + " certificate " + slot, certificate(slot), c);
+            Check.equal(what + " digest " + slot, MessageDigest.getInstance("SHA-256").digest(certificate(slot)),
+                        client.getData(TAG_CERTIFICATE_DIGEST));
+        }
+    }
+
+    static void run() throws Exception {
+        final SimulatedCard card = new SimulatedCard(SimulatedCard.DEFAULT_AID, Apdus.unhex("83010" + SLOTS));
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        final byte[] attestationKey = client.generateAttestationKey();
+        final byte[] publicKeyDo = KeyAttestation.publicKeyDo(client.generateKey(Algorithm.P_256));
+        for(int slot = 0; slot < SLOTS; ++slot) {
+            if(slot > 0) {
+                client.readNextCertificate();
+            }
+            client.writeCertificate(certificate(slot));
+        }
+
+        for(int i = 0; i < SIGNATURES; ++i) {
+            client.authenticate(new byte[32]);
+        }
+        Check.equal("counter", SIGNATURES, client.select().signatureCounter());
+
+        card.reset();
+        Check.equal("counter after a power cycle", SIGNATURES, client.select().signatureCounter());
+        Check.equal("attributes after a power cycle", Algorithm.P_256.attributes(),
+                    client.getData(TAG_ALGORITHM_ATTRIBUTES_AUT));
+        Check.equal("public key after a power cycle", publicKeyDo, client.readPublicKey());
+        Check.equal("attestation key after a power cycle", attestationKey, client.readAttestationKey());
+        checkSlots("after a power cycle", client);
+
+        /* Recycling wipes the slots and the counter, not the metrics
+           snapshot nor the attestation key */
+        final long selects = selects(client);
+        client.terminate();
+        card.reset();
+        client.activate();
+        Check.equal("counter after recycling", 0, client.select().signatureCounter());
+        Check.isTrue("metrics after recycling", selects(client) > selects);
+        Check.equal("attestation key after recycling", attestationKey, client.readAttestationKey());
+        for(int slot = 0; slot < SLOTS; ++slot) {
+            final byte[] c = (slot == 0) ? client.readCertificate() : client.readNextCertificate();
+            Check.equal("certificate " + slot + " after recycling", 0, c.length);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+/* TERMINATE DF then ACTIVATE FILE: the card answers 6285 in between,
+   power cycles included, and is wiped once activated again */
+final class RecyclingTest {
+
+    private static final int TAG_ALGORITHM_ATTRIBUTES_AUT = 0x00c3;
+    private static final int TAG_CARDHOLDER_CERTIFICATE = 0x7f21;
+
+    private RecyclingTest() {
+    }
+
+    private static int status(final Runnable command) {
+        try {
+            command.run();
+            return Apdus.SW_OK;
+        } catch(final StatusWordException e) {
+            return e.sw();
+        }
+    }
+
+    private static void checkTerminated(final String what, final TravelCardClient client, final byte[] aid) {
+        Check.equal(what + " SELECT", Apdus.SW_TERMINATED,
+                    client.exchange(Apdus.CLA, Apdus.INS_SELECT, 0x04, 0x00, aid, 0, aid.length));
+        Check.equal(what + " INTERNAL AUTHENTICATE", Apdus.SW_TERMINATED,
+                    client.exchange(Apdus.CLA, Apdus.INS_INTERNAL_AUTHENTICATE, 0x00, 0x00, new byte[32], 0, 32));
+        Check.equal(what + " GET DATA", Apdus.SW_TERMINATED,
+                    client.exchange(Apdus.CLA, Apdus.INS_GET_DATA,
+                                    TAG_CARDHOLDER_CERTIFICATE >> 8, TAG_CARDHOLDER_CERTIFICATE & 0xff, null, 0, 0));
+    }
+
+    static void run() throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        client.generateKey(Algorithm.P_384);
+        client.writeCertificate(new byte[] { 0x30, 0x03, 0x02, 0x01, 0x00 });
+        client.authenticate(new byte[32]);
+        client.authenticate(new byte[32]);
+        Check.equal("counter before", 2, client.select().signatureCounter());
+
+        client.terminate();
+        checkTerminated("terminated", client, card.aid());
+        card.reset();
+        checkTerminated("terminated after a power cycle", client, card.aid());
+
+        final ApplicationData activated = client.activate();
+        Check.equal("counter wiped", 0, activated.signatureCounter());
+        Check.equal("no certificate digest", null, activated.certificateDigest());
+        Check.equal("certificate wiped", 0, client.readCertificate().length);
+        Check.equal("key wiped", 0x6a88, status(() -> client.readPublicKey()));
+        Check.isTrue("no signature", status(() -> client.authenticate(new byte[32])) != Apdus.SW_OK);
+        Check.equal("default attributes", Algorithm.RSA_2048.attributes(),
+                    client.getData(TAG_ALGORITHM_ATTRIBUTES_AUT));
+
+        /* The card is issued again */
+        final CardPublicKey key = CardPublicKey.parse(Algorithm.P_256, client.generateKey(Algorithm.P_256));
+        Check.isTrue("new key", key.key() != null);
+        client.authenticate(new byte[32]);
+        /* The counter is incremented before signing: the command refused
+           above for want of a key is counted too */
+        Check.equal("counter after", 2, client.select().signatureCounter());
+        card.reset();
+        Check.equal("active after a power cycle", 2, client.select().signatureCounter());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.security.MessageDigest;
+import java.security.Signature;
+
+/* INTERNAL AUTHENTICATE with an RSA key, the card prepending the
+   DigestInfo of the hash, verified with the JCA over the message that
+   was hashed */
+final class RsaSignatureTest {
+
+    private static final String[] DIGESTS = { "SHA-1", "SHA-224", "SHA-256", "SHA-384", "SHA-512" };
+
+    /* Identifiers of the memory usage DO (0101), see CryptoRegistry */
+    private static final int TAG_MEMORY_USAGE = 0x0101;
+    private static final int USAGE_SIGNATURE_RSA_SHA = 0x00;
+    private static final int USAGE_CIPHER_RSA_PKCS1 = 0x0a;
+    private static final int USAGE_ENTRY_LENGTH = 5;
+
+    private RsaSignatureTest() {
+    }
+
+    /* Persistent and transient bytes of an object of the card */
+    private static int usage(final byte[] usage, final int id) {
+        for(int off = 0; off < usage.length; off += USAGE_ENTRY_LENGTH) {
+            if(usage[off] == id) {
+                return ((usage[off + 1] & 0xff) << 8) + (usage[off + 2] & 0xff) +
+                    ((usage[off + 3] & 0xff) << 8) + (usage[off + 4] & 0xff);
+            }
+        }
+        return -1;
+    }
+
+    static void run() throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        final TravelCardClient client = new TravelCardClient(card, card.aid());
+        client.select();
+        final CardPublicKey key = CardPublicKey.parse(Algorithm.RSA_2048, client.generateKey(Algorithm.RSA_2048));
+
+        for(final String digest : DIGESTS) {
+            final byte[] message = ("RSA message " + digest).getBytes("UTF-8");
+            final byte[] signature = client.authenticate(MessageDigest.getInstance(digest).digest(message));
+            Check.equal(digest + " signature length", 256, signature.length);
+
+            final Signature s = Signature.getInstance(digest.replace("-", "") + "withRSA");
+            s.initVerify(key.key());
+            s.update(message);
+            Check.isTrue(digest + " signature verified", s.verify(signature));
+        }
+
+        /* The simulator has the cipher, so no RSA Signature is allocated */
+        final byte[] usage = client.getData(TAG_MEMORY_USAGE);
+        Check.isTrue("PKCS#1 cipher allocated", usage(usage, USAGE_CIPHER_RSA_PKCS1) > 0);
+        for(int i = 0; i < DIGESTS.length; ++i) {
+            Check.equal(DIGESTS[i] + " RSA Signature memory", 0, usage(usage, USAGE_SIGNATURE_RSA_SHA + i));
+        }
+
+        int status;
+        try {
+            client.authenticate(new byte[31]);
+            status = Apdus.SW_OK;
+        } catch(final StatusWordException e) {
+            status = e.sw();
+        }
+        Check.equal("hash of no SHA length", 0x6985, status);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/* Traces recorded from a simulated card, read back and replayed against
+   baselines that match and that differ */
+final class TraceReplayTest {
+
+    /* Timing is only checked where a test asks for it */
+    private static final String[] NO_TIMING = { "--warmup", "0", "--min-micros", "1000000000" };
+
+    private TraceReplayTest() {
+    }
+
+    /* SELECT, GENERATE, INTERNAL AUTHENTICATE and GET CHALLENGE, the
+       last one with the given P1 */
+    private static void record(final Path file, final int challengeP1, final boolean extra) throws Exception {
+        final SimulatedCard card = new SimulatedCard();
+        try (TraceRecorder recorder = new TraceRecorder(card, file)) {
+            final TravelCardClient client = new TravelCardClient(recorder, card.aid());
+            client.select();
+            client.generateKey(Algorithm.P_256);
+            client.authenticate(new byte[32]);
+            recorder.reset();
+            client.select();
+            client.exchange(Apdus.CLA, Apdus.INS_GET_CHALLENGE, challengeP1, 0x00, null, 0, 0, 8);
+            if(extra) {
+                client.challenge(8);
+            }
+        }
+    }
+
+    private static boolean replay(final String... args) throws Exception {
+        final String[] all = new String[args.length + NO_TIMING.length];
+        System.arraycopy(args, 0, all, 0, args.length);
+        System.arraycopy(NO_TIMING, 0, all, args.length, NO_TIMING.length);
+        return TraceReplay.replay(all);
+    }
+
+    static void run() throws Exception {
+        final Path trace = Files.createTempFile("trace", ".bin");
+        final Path wrongStatus = Files.createTempFile("trace-status", ".bin");
+        final Path longer = Files.createTempFile("trace-longer", ".bin");
+        final Path recorded = Files.createTempFile("trace-recorded", ".bin");
+        try {
+            record(trace, 0x00, false);
+            record(wrongStatus, 0x01, false);
+            record(longer, 0x00, true);
+
+            try (TraceReader reader = TraceReader.open(trace)) {
+                int exchanges = 0;
+                int resets = 0;
+                int last = 0;
+                while(reader.next()) {
+                    if(reader.type() == TraceReader.RESET) {
+                        ++resets;
+                        continue;
+                    }
+                    ++exchanges;
+                    last = reader.sw();
+                    Check.equal("command read back", reader.commandLength(), reader.commandBytes().length);
+                }
+                Check.equal("exchanges read back", 6, exchanges);
+                Check.equal("resets read back", 1, resets);
+                Check.equal("status word read back", Apdus.SW_OK, last);
+            }
+
+            Check.isTrue("replay against its own trace", replay("--trace", trace.toString()));
+            Check.isTrue("status word mismatch",
+                         !replay("--trace", trace.toString(), "--baseline", wrongStatus.toString()));
+            Check.isTrue("longer baseline",
+                         !replay("--trace", trace.toString(), "--baseline", longer.toString()));
+            Check.isTrue("longer replay",
+                         !replay("--trace", longer.toString(), "--baseline", trace.toString()));
+
+            Check.isTrue("replay recording a baseline",
+                         replay("--trace", trace.toString(), "--record", recorded.toString()));
+            Check.isTrue("replay against the recorded baseline",
+                         replay("--trace", trace.toString(), "--baseline", recorded.toString()));
+
+            Check.isTrue("timing regression",
+                         !TraceReplay.replay("--trace", trace.toString(), "--warmup", "0",
+                                             "--min-micros", "0", "--tolerance", "0"));
+        } finally {
+            Files.deleteIfExists(trace);
+            Files.deleteIfExists(wrongStatus);
+            Files.deleteIfExists(longer);
+            Files.deleteIfExists(recorded);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard.host;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Arrays;
+
+/* The ByteBuffer views compared with the allocating parsers, over data
+   objects of simulated cards placed at an offset in a larger buffer */
+final class ViewsTest {
+
+    private static final int PADDING = 5;
+
+    private ViewsTest() {
+    }
+
+    private static ByteBuffer padded(final byte[] b) {
+        final byte[] p = new byte[PADDING + b.length + PADDING];
+        Arrays.fill(p, (byte)0xee);
+        System.arraycopy(b, 0, p, PADDING, b.length);
+        return ByteBuffer.wrap(p);
+    }
+
+    private static byte[] slice(final ByteBuffer b, final int off, final int len) {
+        return Arrays.copyOfRange(b.array(), off, off + len);
+    }
+
+    private static byte[] unsigned(final BigInteger v, final int len) {
+        final byte[] b = v.toByteArray();
+        final byte[] res = new byte[len];
+        final int n = Math.min(b.length, len);
+        System.arraycopy(b, b.length - n, res, len - n, n);
+        return res;
+    }
+
+    private static byte[] selectResponse(final TravelCardClient client, final byte[] aid) {
+        client.exchange(Apdus.CLA, Apdus.INS_SELECT, 0x04, 0x00, aid, 0, aid.length);
+        return client.responseData();
+    }
+
+    static void run() throws Exception {
+        final LocalCertificateAuthority ca = new LocalCertificateAuthority();
+        final ApplicationDataView applicationData = new ApplicationDataView();
+        final PublicKeyView publicKey = new PublicKeyView();
+        final CertificateView certificate = new CertificateView();
+        final SignatureView signature = new SignatureView();
+
+        for(final String install : new String[] { "", "810209008202080084020600" }) {
+            final SimulatedCard card = new SimulatedCard(SimulatedCard.DEFAULT_AID, Apdus.unhex(install));
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            client.select();
+            final byte[] response = client.generateKey(Algorithm.P_256);
+            client.writeCertificate(ca.issue(card.aid(), Algorithm.P_256, response));
+            client.authenticate(new byte[32]);
+            compare(applicationData, selectResponse(client, card.aid()), "6E " + install);
+        }
+
+        for(final Algorithm alg : Algorithm.values()) {
+            final SimulatedCard card = new SimulatedCard();
+            final TravelCardClient client = new TravelCardClient(card, card.aid());
+            compare(applicationData, selectResponse(client, card.aid()), "6E without certificate");
+            client.select();
+
+            final byte[] uncompressed = client.generateKey(alg);
+            compare(publicKey, alg, uncompressed, false);
+            if(!alg.isRsa()) {
+                compare(publicKey, alg, client.readPublicKey(true), true);
+            }
+
+            final byte[] der = ca.issue(card.aid(), alg, uncompressed);
+            compare(certificate, der, alg);
+
+            final byte[] hash = new byte[32];
+            Arrays.fill(hash, (byte)0x5a);
+            compare(signature, alg, client.authenticate(hash));
+        }
+    }
+
+    private static void compare(final ApplicationDataView view, final byte[] response, final String what) {
+        final ApplicationData data = ApplicationData.parse(response, 0, response.length);
+        final ByteBuffer b = padded(response);
+        view.wrap(b, PADDING, response.length);
+
+        final byte[] aid = new byte[view.aidLength()];
+        view.copyAid(aid, 0);
+        Check.equal(what + " AID", data.aid(), aid);
+        Check.isTrue(what + " AID equality", view.aidEquals(data.aid()));
+        Check.equal(what + " signature counter", (long)data.signatureCounter(), view.signatureCounter());
+        Check.equal(what + " maximal command", data.maxCommandLength(), view.maxCommandLength());
+        Check.equal(what + " maximal response", data.maxResponseLength(), view.maxResponseLength());
+        Check.equal(what + " certificate digest present", data.certificateDigest() != null,
+                    view.hasCertificateDigest());
+        if(data.certificateDigest() != null) {
+            final byte[] digest = new byte[32];
+            view.copyCertificateDigest(digest, 0);
+            Check.equal(what + " certificate digest", data.certificateDigest(), digest);
+            Check.isTrue(what + " certificate digest equality",
+                         view.certificateDigestEquals(data.certificateDigest()));
+        }
+    }
+
+    private static void compare(final PublicKeyView view, final Algorithm alg,
+                                final byte[] publicKeyDo, final boolean compressed) throws Exception {
+        final String what = "7F49 " + alg + (compressed ? " compressed" : "");
+        final CardPublicKey key = CardPublicKey.parse(alg, publicKeyDo);
+        final ByteBuffer b = padded(publicKeyDo);
+        view.wrap(b, PADDING, publicKeyDo.length);
+
+        Check.equal(what + " RSA", alg.isRsa(), view.isRsa());
+        if(alg.isRsa()) {
+            final RSAPublicKey rsa = (RSAPublicKey)key.key();
+            Check.equal(what + " modulus", rsa.getModulus(),
+                        new BigInteger(1, slice(b, view.modulusOffset(), view.modulusLength())));
+            Check.equal(what + " exponent", rsa.getPublicExponent(),
+                        new BigInteger(1, slice(b, view.exponentOffset(), view.exponentLength())));
+            return;
+        }
+
+        final int n = view.coordinateLength();
+        Check.equal(what + " compressed", compressed, view.isCompressed());
+        Check.equal(what + " x", unsigned(key.point().getAffineX(), n), slice(b, view.xOffset(), n));
+        if(compressed) {
+            Check.equal(what + " parity of y", key.point().getAffineY().testBit(0), view.yOdd());
+        } else {
+            Check.equal(what + " y", unsigned(key.point().getAffineY(), n), slice(b, view.yOffset(), n));
+        }
+    }
+
+    private static void compare(final CertificateView view, final byte[] der, final Algorithm alg)
+        throws Exception {
+        final String what = "certificate " + alg;
+        final X509Certificate x509 = (X509Certificate)CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(der));
+        final ByteBuffer b = padded(der);
+        view.wrap(b, PADDING, der.length);
+
+        Check.equal(what + " TBS", x509.getTBSCertificate(), slice(b, view.tbsOffset(), view.tbsLength()));
+        Check.equal(what + " serial", x509.getSerialNumber(),
+                    new BigInteger(slice(b, view.serialOffset(), view.serialLength())));
+        Check.equal(what + " issuer", x509.getIssuerX500Principal().getEncoded(),
+                    slice(b, view.issuerOffset(), view.issuerLength()));
+        Check.equal(what + " subject", x509.getSubjectX500Principal().getEncoded(),
+                    slice(b, view.subjectOffset(), view.subjectLength()));
+        Check.equal(what + " public key", x509.getPublicKey().getEncoded(),
+                    slice(b, view.publicKeyInfoOffset(), view.publicKeyInfoLength()));
+        Check.equal(what + " not before", x509.getNotBefore().getTime(), view.notBefore());
+        Check.equal(what + " not after", x509.getNotAfter().getTime(), view.notAfter());
+        Check.equal(what + " signature", x509.getSignature(),
+                    slice(b, view.signatureOffset(), view.signatureLength()));
+    }
+
+    private static void compare(final SignatureView view, final Algorithm alg, final byte[] sig) {
+        final String what = "signature " + alg;
+        final ByteBuffer b = padded(sig);
+        view.wrap(b, PADDING, sig.length, alg.isRsa());
+
+        final byte[] copy = new byte[view.length()];
+        view.copy(copy, 0);
+        Check.equal(what + " copy", sig, copy);
+        if(alg.isRsa()) {
+            return;
+        }
+
+        final int half = sig.length / 2;
+        final byte[] expected = Der.sequence(Der.integer(new BigInteger(1, Arrays.copyOfRange(sig, 0, half))),
+                                             Der.integer(new BigInteger(1, Arrays.copyOfRange(sig, half, sig.length))));
+        final byte[] der = new byte[view.maxDerLength()];
+        final int len = view.toDer(der, 0);
+        Check.equal(what + " DER", expected, Arrays.copyOf(der, len));
+    }
+}
@@ -25,81 +25,245 @@ import javacardx.crypto.*;
 
 public final class CardKey {
 
-    protected final byte[] certificate;
-    protected short certificate_length;
-
-    protected final byte[] attributes;
-    protected byte attributes_length;
+    private byte[] certificate;
+
+    /* Metadata of the key, in a record of the persistent array shared
+       by all keys (see Persistent). The certificate lengths and digest
+       are contiguous so that they are updated with one copy. */
+    private final byte[] record;
+    private final short record_offset;
+    private static final short RECORD_OFFSET_CERTIFICATE_LENGTH = 0;
+    private static final short RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH = RECORD_OFFSET_CERTIFICATE_LENGTH + 2;
+    private static final short RECORD_OFFSET_CERTIFICATE_DIGEST = RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH + 1;
+    private static final short RECORD_OFFSET_ATTRIBUTES_LENGTH = RECORD_OFFSET_CERTIFICATE_DIGEST + MessageDigest.LENGTH_SHA_256;
+    private static final short RECORD_OFFSET_ATTRIBUTES = RECORD_OFFSET_ATTRIBUTES_LENGTH + 1;
+    private static final short RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH = RECORD_OFFSET_ATTRIBUTES + Constants.ALGORITHM_ATTRIBUTES_MAX_LENGTH;
+    private static final short RECORD_OFFSET_PUBLIC_KEY_DO = RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH + 2;
+    protected static final short RECORD_LENGTH = RECORD_OFFSET_PUBLIC_KEY_DO + Constants.PUBLIC_KEY_DO_MAX_LENGTH;
+    /* Slots without default attributes only hold a certificate: their
+       record stops before the attributes */
+    protected static final short CERTIFICATE_RECORD_LENGTH = RECORD_OFFSET_ATTRIBUTES_LENGTH;
+
+    private static final short CERTIFICATE_HEADER_LENGTH = RECORD_OFFSET_CERTIFICATE_DIGEST - RECORD_OFFSET_CERTIFICATE_LENGTH;
 
     private KeyPair keys;
+    /* Curve whose domain parameters the key containers hold, null once
+       a half is cleared: some cards drop them with clearKey() */
+    private ECParams keys_params;
+
+    private final byte[] default_attributes;
+    private final short certificate_max_length;
+
+    protected CardKey(final byte[] record, final short record_offset,
+                      final byte[] default_attributes, final short certificate_max_length) {
 
-    private final Cipher cipher_rsa_pkcs1;
+        this.record = record;
+        this.record_offset = record_offset;
+        this.default_attributes = default_attributes;
+        this.certificate_max_length = certificate_max_length;
 
-    protected CardKey() {
+        certificate = null;
 
-        cipher_rsa_pkcs1 = Cipher.getInstance(Cipher.CIPHER_RSA, Cipher.PAD_PKCS1, false);
+        reset();
+    }
+
+    private final short offset(final short field) {
+        return (short)(record_offset + field);
+    }
 
-        certificate = new byte[Constants.cardholderCertificateMaxLength()];
-        certificate_length = 0;
+    protected final short certificateLength() {
+        return Util.getShort(record, offset(RECORD_OFFSET_CERTIFICATE_LENGTH));
+    }
 
-        attributes = new byte[Constants.ALGORITHM_ATTRIBUTES_MAX_LENGTH];
-        attributes_length = 0;
+    private final short publicKeyDoLength() {
+        return Util.getShort(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH));
+    }
 
-        reset(true);
+    protected final byte attributesLength() {
+        return record[offset(RECORD_OFFSET_ATTRIBUTES_LENGTH)];
     }
 
-    private final void resetKeys(final boolean isRegistering) {
+    private final void resetKeys() {
+        /* The public key is kept so that its public exponent can be
+           reused by the next generation. */
         if(keys != null) {
             keys.getPrivate().clearKey();
-            keys.getPublic().clearKey();
-            keys = null;
+            keys_params = null;
         }
 
+        resetCertificate();
+    }
+
+    /* The certificate and the public key DO belong to the key pair
+       being replaced */
+    private final void resetCertificate() {
+        invalidateKeyData();
+        dropCertificate();
+    }
+
+    /* The cached public key DO and the certificate digest describe the
+       key pair in the containers, they go before the pair changes */
+    private final void invalidateKeyData() {
+        Util.setShort(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH), (short)0);
+        record[offset(RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH)] = (byte)0;
+    }
+
+    private final void dropCertificate() {
+        final short certificate_length = certificateLength();
         if(certificate_length > 0) {
-            certificate_length = (short)0;
             Util.arrayFillNonAtomic(certificate, (short)0, certificate_length, (byte)0);
+            Util.setShort(record, offset(RECORD_OFFSET_CERTIFICATE_LENGTH), (short)0);
         }
+    }
 
+    private final void dropKeys() {
+        if(keys != null) {
+            keys = null;
+            keys_params = null;
+            if(JCSystem.isObjectDeletionSupported()) {
+                JCSystem.requestObjectDeletion();
+            }
+        }
     }
 
-    protected final void reset(final boolean isRegistering) {
-        resetKeys(isRegistering);
+    /* Runs within the transaction of the caller (see Persistent): the
+       lengths are journaled, the bytes they cover are zeroed before */
+    protected final void reset() {
+        Util.arrayFillNonAtomic(record, offset(RECORD_OFFSET_CERTIFICATE_DIGEST),
+                                record[offset(RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH)], (byte)0);
 
-        Common.beginTransaction(isRegistering);
-        if(attributes_length > 0) {
-            Util.arrayFillNonAtomic(attributes, (short)0, attributes_length, (byte)0);
-            attributes_length = (byte)0;
+        if(default_attributes == null) {
+            record[offset(RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH)] = (byte)0;
+            dropCertificate();
+            return;
         }
 
-            Util.arrayCopyNonAtomic(Constants.ALGORITHM_ATTRIBUTES_DEFAULT, (short)0,
-                                    attributes, (short)0,
-                                    (short)Constants.ALGORITHM_ATTRIBUTES_DEFAULT.length);
-            attributes_length = (byte)Constants.ALGORITHM_ATTRIBUTES_DEFAULT.length;
+        Util.arrayFillNonAtomic(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO), publicKeyDoLength(), (byte)0);
 
-        Common.commitTransaction(isRegistering);
+        resetKeys();
+
+        final byte attributes_length = attributesLength();
+        if(attributes_length > 0) {
+            Util.arrayFillNonAtomic(record, offset(RECORD_OFFSET_ATTRIBUTES), attributes_length, (byte)0);
+            record[offset(RECORD_OFFSET_ATTRIBUTES_LENGTH)] = (byte)0;
+        }
+
+        Util.arrayCopyNonAtomic(default_attributes, (short)0,
+                                record, offset(RECORD_OFFSET_ATTRIBUTES),
+                                (short)default_attributes.length);
+        record[offset(RECORD_OFFSET_ATTRIBUTES_LENGTH)] = (byte)default_attributes.length;
     }
 
     protected final boolean isInitialized() {
         return (keys != null) && keys.getPrivate().isInitialized() && keys.getPublic().isInitialized();
     }
 
-    protected final void setCertificate(final byte[] buf, final short off, final short len) {
+    protected final void setCertificate(final CryptoRegistry crypto,
+                                        final Transients transients,
+                                        final byte[] buf, final short off, final short len) {
         if((len < 0) ||
-           (len > Constants.cardholderCertificateMaxLength())) {
+           (len > certificate_max_length)) {
             ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
             return;
         }
 
+        /* A compressed certificate is stored and served as is, in its
+           envelope (dictionary, DER length and deflated DER), which must
+           cover the whole data field */
+        if((len >= 3) &&
+           (Util.getShort(buf, off) == Constants.TAG_COMPRESSED_CERTIFICATE)) {
+            final short value_off = Common.skipLength(buf, (short)(off + 2), (short)(len - 2));
+            final short value_len = Common.readLength(buf, (short)(off + 2), (short)(len - 2));
+            if((value_len < 5) || ((short)(value_off + value_len) != (short)(off + len))) {
+                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                return;
+            }
+        }
+
+        if(certificate == null) {
+            if(len == 0) {
+                return;
+            }
+            certificate = crypto.makeCertificate(certificate_max_length);
+        }
+
+        final MessageDigest digest = crypto.optionalDigest(CryptoRegistry.DIGEST_SHA_256);
+
+        /* The digest of the new certificate is computed in the buffer,
+           after it, before anything is written: the certificate the card
+           already holds (a personalization retried after a lost
+           response) is recognized by its digest and costs neither
+           EEPROM writes nor a transaction. The lengths and digest are
+           laid out as in the record, to be compared and stored at once. */
+        final short header_off = (short)(off + len);
+        final short digest_off = (short)(header_off + CERTIFICATE_HEADER_LENGTH);
+        byte digest_length = (byte)0;
+        if((digest != null) && (len > 0) &&
+           ((short)(digest_off + MessageDigest.LENGTH_SHA_256) <= (short)buf.length)) {
+            digest_length = (byte)digest.doFinal(buf, off, len, buf, digest_off);
+            Util.setShort(buf, header_off, len);
+            buf[(short)(header_off + 2)] = digest_length;
+            if(Util.arrayCompare(buf, header_off,
+                                 record, offset(RECORD_OFFSET_CERTIFICATE_LENGTH),
+                                 (short)(CERTIFICATE_HEADER_LENGTH + digest_length)) == 0) {
+                return;
+            }
+        }
+
+        final short certificate_length = certificateLength();
+
         JCSystem.beginTransaction();
         if(certificate_length > 0) {
             Util.arrayFillNonAtomic(certificate, (short)0, certificate_length, (byte)0);
         }
         Util.arrayCopyNonAtomic(buf, off, certificate, (short)0, len);
-        certificate_length = len;
-        JCSystem.commitTransaction();
+        if(digest_length > 0) {
+            Util.arrayCopy(buf, header_off,
+                           record, offset(RECORD_OFFSET_CERTIFICATE_LENGTH),
+                           (short)(CERTIFICATE_HEADER_LENGTH + digest_length));
+        } else {
+            if((digest != null) && (len > 0)) {
+                digest_length = (byte)digest.doFinal(certificate, (short)0, len,
+                                                     record, offset(RECORD_OFFSET_CERTIFICATE_DIGEST));
+            }
+            Util.setShort(record, offset(RECORD_OFFSET_CERTIFICATE_LENGTH), len);
+            record[offset(RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH)] = digest_length;
+        }
+        Common.commitTransaction(transients);
+    }
+
+    protected final short writeCertificate(final byte[] buf, final short off) {
+        final short certificate_length = certificateLength();
+        if(certificate_length <= 0) {
+            return off;
+        }
+        return Util.arrayCopyNonAtomic(certificate, (short)0,
+                                       buf, off,
+                                       certificate_length);
+    }
+
+    protected final short certificateDigestLength() {
+        return record[offset(RECORD_OFFSET_CERTIFICATE_DIGEST_LENGTH)];
+    }
+
+    protected final short writeCertificateDigest(final byte[] buf, final short off) {
+        final short certificate_digest_length = certificateDigestLength();
+        if(certificate_digest_length <= 0) {
+            return off;
+        }
+        return Util.arrayCopyNonAtomic(record, offset(RECORD_OFFSET_CERTIFICATE_DIGEST),
+                                       buf, off,
+                                       certificate_digest_length);
+    }
+
+    protected final short writeAttributes(final byte[] buf, final short off) {
+        return Util.arrayCopyNonAtomic(record, offset(RECORD_OFFSET_ATTRIBUTES),
+                                       buf, off,
+                                       attributesLength());
     }
 
     protected final void setAttributes(final ECCurves ec,
+                                       final Transients transients,
                                        final byte[] buf, final short off, final short len) {
         if((len < Constants.ALGORITHM_ATTRIBUTES_MIN_LENGTH) ||
            (len > Constants.ALGORITHM_ATTRIBUTES_MAX_LENGTH)) {
@@ -136,81 +300,133 @@ public final class CardKey {
             return;
         }
 
-        resetKeys(false);
+        resetKeys();
+        dropKeys();
+
+        final byte attributes_length = attributesLength();
 
         JCSystem.beginTransaction();
         if(attributes_length > 0) {
-            Util.arrayFillNonAtomic(attributes, (short)0, attributes_length, (byte)0);
+            Util.arrayFillNonAtomic(record, offset(RECORD_OFFSET_ATTRIBUTES), attributes_length, (byte)0);
         }
-        Util.arrayCopyNonAtomic(buf, off, attributes, (short)0, len);
-        attributes_length = (byte)len;
-        JCSystem.commitTransaction();
+        Util.arrayCopyNonAtomic(buf, off, record, offset(RECORD_OFFSET_ATTRIBUTES), len);
+        record[offset(RECORD_OFFSET_ATTRIBUTES_LENGTH)] = (byte)len;
+        Common.commitTransaction(transients);
     }
 
 
     protected final boolean isRsa() {
-        return (attributes[0] == 1);
+        return (record[offset(RECORD_OFFSET_ATTRIBUTES)] == 1);
     }
 
     protected final short rsaModulusBitSize() {
-        return Util.getShort(attributes, (short)1);
+        return Util.getShort(record, offset((short)(RECORD_OFFSET_ATTRIBUTES + 1)));
     }
 
     protected final short rsaExponentBitSize() {
-        return Util.getShort(attributes, (short)3);
+        return Util.getShort(record, offset((short)(RECORD_OFFSET_ATTRIBUTES + 3)));
     }
 
     protected final boolean isEc() {
-        return ((attributes[0] == (byte)0x12) ||
-                (attributes[0] == (byte)0x13));
+        final byte algorithm = record[offset(RECORD_OFFSET_ATTRIBUTES)];
+        return ((algorithm == (byte)0x12) ||
+                (algorithm == (byte)0x13));
     }
 
     protected final ECParams ecParams(final ECCurves ec) {
-        final byte delta = (attributes[(short)(attributes_length - 1)] == (byte)0xff) ? (byte)1 : (byte)0;
-        return ec.findByOid(attributes, (short)1, (byte)(attributes_length - 1 - delta));
+        final byte attributes_length = attributesLength();
+        final short attributes = offset(RECORD_OFFSET_ATTRIBUTES);
+        final byte delta = (record[(short)(attributes + attributes_length - 1)] == (byte)0xff) ? (byte)1 : (byte)0;
+        return ec.findByOid(record, (short)(attributes + 1), (byte)(attributes_length - 1 - delta));
     }
 
 
-    private final KeyPair generateRSA() {
-        final PrivateKey priv = (PrivateKey)KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_CRT_PRIVATE, rsaModulusBitSize(), false);
-        final RSAPublicKey pub = (RSAPublicKey)KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, rsaModulusBitSize(), false);
+    private final boolean keysMatch(final byte type, final short size) {
+        return (keys != null) &&
+            (keys.getPublic().getType() == type) &&
+            (keys.getPublic().getSize() == size);
+    }
+
+    private final KeyPair buildKeys(final CryptoRegistry crypto,
+                                    final byte pub_type, final byte priv_type,
+                                    final short size) {
+        if(keysMatch(pub_type, size)) {
+            return keys;
+        }
+
+        dropKeys();
+
+        final PrivateKey priv = (PrivateKey)crypto.buildKey(priv_type, size);
+        final PublicKey pub = (PublicKey)crypto.buildKey(pub_type, size);
 
         if((priv == null) || (pub == null)) {
             return null;
         }
 
-        pub.setExponent(Constants.RSA_EXPONENT, (short)0, (byte)Constants.RSA_EXPONENT.length);
+        keys = new KeyPair(pub, priv);
+        return keys;
+    }
+
+    private final KeyPair prepareRSA(final CryptoRegistry crypto) {
+        final KeyPair nkeys = buildKeys(crypto,
+                                        KeyBuilder.TYPE_RSA_PUBLIC, KeyBuilder.TYPE_RSA_CRT_PRIVATE,
+                                        rsaModulusBitSize());
+
+        if(nkeys == null) {
+            return null;
+        }
+
+        if(!nkeys.getPublic().isInitialized()) {
+            ((RSAPublicKey)nkeys.getPublic()).setExponent(Constants.RSA_EXPONENT, (short)0, (byte)Constants.RSA_EXPONENT.length);
+        }
 
-        return new KeyPair(pub, priv);
+        return nkeys;
     }
 
 
-    private final KeyPair generateEC(final ECCurves ec) {
+    private final KeyPair prepareEC(final CryptoRegistry crypto, final ECCurves ec) {
 
         final ECParams params = ecParams(ec);
 
-        final ECPrivateKey priv = (ECPrivateKey)KeyBuilder.buildKey(KeyBuilder.TYPE_EC_FP_PRIVATE, params.nb_bits, false);
-        final ECPublicKey pub = (ECPublicKey)KeyBuilder.buildKey(KeyBuilder.TYPE_EC_FP_PUBLIC, params.nb_bits, false);
+        if(params == null) {
+            return null;
+        }
 
-        if((priv == null) || (pub == null)) {
+        final KeyPair nkeys = buildKeys(crypto,
+                                        KeyBuilder.TYPE_EC_FP_PUBLIC, KeyBuilder.TYPE_EC_FP_PRIVATE,
+                                        params.nb_bits);
+
+        if(nkeys == null) {
             return null;
         }
 
-        params.setParams(priv);
-        params.setParams(pub);
+        /* Domain parameters are loaded on both halves when the curve
+           changes or a half was cleared, otherwise genKeyPair() reuses
+           those of the previous pair */
+        if(keys_params != params) {
+            params.setParams((ECPrivateKey)nkeys.getPrivate());
+            params.setParams((ECPublicKey)nkeys.getPublic());
+            keys_params = params;
+        }
 
-        return new KeyPair(pub, priv);
+        return nkeys;
     }
 
 
-    protected final void generate(final ECCurves ec) {
+    /* Key containers are allocated once and regenerated in place as
+       long as the algorithm attributes do not change. The cached public
+       key DO and the certificate digest are invalidated before the
+       containers are overwritten, so that a tear never serves them
+       with the new pair; the certificate is only dropped once the new
+       pair is there. */
+    protected final void generate(final CryptoRegistry crypto, final ECCurves ec) {
 
         KeyPair nkeys = null;
 
         if(isRsa()) {
-            nkeys = generateRSA();
+            nkeys = prepareRSA(crypto);
         } else if(isEc()) {
-            nkeys = generateEC(ec);
+            nkeys = prepareEC(crypto, ec);
         }
 
         if(nkeys == null) {
@@ -218,6 +434,8 @@ public final class CardKey {
             return;
         }
 
+        invalidateKeyData();
+
         nkeys.genKeyPair();
 
         if(!nkeys.getPublic().isInitialized() || !nkeys.getPrivate().isInitialized()) {
@@ -225,18 +443,189 @@ public final class CardKey {
             return;
         }
 
-        resetKeys(false);
+        dropCertificate();
+    }
+
+    /* External import of a key pair for the current attributes: the
+       containers are prepared as for a generation and the private key
+       is cleared, then the components are set one by one as they
+       arrive. */
+    protected final void startImport(final CryptoRegistry crypto, final ECCurves ec) {
+
+        resetKeys();
+
+        KeyPair nkeys = null;
+
+        if(isRsa()) {
+            nkeys = prepareRSA(crypto);
+        } else if(isEc()) {
+            nkeys = prepareEC(crypto, ec);
+        }
+
+        if(nkeys == null) {
+            ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
+            return;
+        }
 
-        keys = nkeys;
+        /* Nothing of the previous key may remain, so both halves are
+           cleared and the domain parameters (or the default public
+           exponent) loaded again */
+        nkeys.getPrivate().clearKey();
+        nkeys.getPublic().clearKey();
+
+        if(isEc()) {
+            final ECParams params = ecParams(ec);
+            params.setParams((ECPrivateKey)nkeys.getPrivate());
+            params.setParams((ECPublicKey)nkeys.getPublic());
+            keys_params = params;
+        } else {
+            ((RSAPublicKey)nkeys.getPublic()).setExponent(Constants.RSA_EXPONENT, (short)0,
+                                                          (short)Constants.RSA_EXPONENT.length);
+        }
     }
 
-    protected final short writePublicKeyDo(final byte[] buf, short off) {
+    /* Components as tagged in the OpenPGP extended header list: 91 e,
+       92 p, 93 q, 94 1/q mod p, 95 d mod (p-1), 96 d mod (q-1), 97 n
+       for RSA; 92 the private scalar and 99 the public point for EC. */
+    protected final void importComponent(final byte tag,
+                                         final byte[] buf, final short off, final short len) {
+
+        if(keys == null) {
+            ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
+            return;
+        }
+
+        try {
+
+            if(isRsa()) {
+                final RSAPrivateCrtKey priv = (RSAPrivateCrtKey)keys.getPrivate();
+                final RSAPublicKey pub = (RSAPublicKey)keys.getPublic();
+
+                switch(tag) {
+                case (byte)0x91:
+                    pub.setExponent(buf, off, len);
+                    return;
+                case (byte)0x92:
+                    priv.setP(buf, off, len);
+                    return;
+                case (byte)0x93:
+                    priv.setQ(buf, off, len);
+                    return;
+                case (byte)0x94:
+                    priv.setPQ(buf, off, len);
+                    return;
+                case (byte)0x95:
+                    priv.setDP1(buf, off, len);
+                    return;
+                case (byte)0x96:
+                    priv.setDQ1(buf, off, len);
+                    return;
+                case (byte)0x97:
+                    pub.setModulus(buf, off, len);
+                    return;
+                default:
+                    break;
+                }
+
+            } else {
+
+                switch(tag) {
+                case (byte)0x92:
+                    ((ECPrivateKey)keys.getPrivate()).setS(buf, off, len);
+                    return;
+                case (byte)0x99:
+                    ((ECPublicKey)keys.getPublic()).setW(buf, off, len);
+                    return;
+                default:
+                    break;
+                }
+            }
+
+        } catch(final CryptoException e) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+
+        ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+    }
+
+    protected final void finishImport() {
+        if(!isInitialized()) {
+            abortImport();
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+        }
+    }
+
+    protected final void abortImport() {
+        Util.setShort(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH), (short)0);
+        if(keys != null) {
+            keys.getPrivate().clearKey();
+            keys.getPublic().clearKey();
+            keys_params = null;
+        }
+    }
+
+    protected final short writePublicKeyDo(final byte[] buf, final short off) {
 
         if(!isInitialized()) {
             ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
             return 0;
         }
 
+        final short cached = publicKeyDoLength();
+        if(cached > 0) {
+            return Util.arrayCopyNonAtomic(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO),
+                                           buf, off,
+                                           cached);
+        }
+
+        /* The first encoding after generation (i.e. the GENERATE
+           response) fills the cache, the length being written last so
+           that an interrupted copy leaves the cache invalid. */
+        final short end = encodePublicKeyDo(buf, off);
+        final short len = (short)(end - off);
+
+        if(len <= Constants.PUBLIC_KEY_DO_MAX_LENGTH) {
+            Util.arrayCopyNonAtomic(buf, off,
+                                    record, offset(RECORD_OFFSET_PUBLIC_KEY_DO),
+                                    len);
+            Util.setShort(record, offset(RECORD_OFFSET_PUBLIC_KEY_DO_LENGTH), len);
+        }
+
+        return end;
+    }
+
+    /* With compressed, an EC point is written in the SEC1 compressed
+       form (02 or 03 for the parity of y, then x). It is derived in
+       place from the uncompressed DO, which alone is cached. */
+    protected final short writePublicKeyDo(final byte[] buf, final short off,
+                                           final boolean compressed) {
+
+        final short end = writePublicKeyDo(buf, off);
+
+        if(!compressed || !isEc()) {
+            return end;
+        }
+
+        final short q_tag = Common.skipLength(buf, (short)(off + 2), (short)(end - off - 2));
+        final short q_len = Common.readLength(buf, (short)(q_tag + 1), (short)(end - q_tag - 1));
+        final short q = Common.skipLength(buf, (short)(q_tag + 1), (short)(end - q_tag - 1));
+        final short size = (short)((short)(q_len - 1) / 2);
+        final byte parity = (byte)(buf[(short)(q + q_len - 1)] & 0x01);
+
+        short res = Common.writeLength(buf, (short)(off + 2), (short)(3 + size));
+
+        buf[res++] = (byte)0x86;
+
+        res = Common.writeLength(buf, res, (short)(1 + size));
+
+        buf[res++] = (byte)(0x02 | parity);
+
+        return Util.arrayCopyNonAtomic(buf, (short)(q + 1), buf, res, size);
+    }
+
+    private final short encodePublicKeyDo(final byte[] buf, short off) {
+
         final PublicKey pub = keys.getPublic();
 
         off = Util.setShort(buf, off, (short)0x7f49);
@@ -296,8 +685,11 @@ public final class CardKey {
 
 
 
-    protected final short sign(final byte[] buf, final short lc,
-                               final boolean forAuth) {
+    protected final short sign(final CryptoRegistry crypto,
+                               final Transients transients, final short lc,
+                               final boolean forAuth, final boolean der) {
+
+        final byte[] buf = transients.buffer;
 
         if(!isInitialized()) {
             ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
@@ -308,8 +700,6 @@ public final class CardKey {
 
         short off = 0;
 
-        byte[] sha_header = null;
-
         if(isRsa()) {
 
             if(lc > (short)(((short)(Common.bitsToBytes(rsaModulusBitSize()) * 2)) / 5)) { 
@@ -320,116 +710,173 @@ public final class CardKey {
             byte alg;
 
             if(lc == MessageDigest.LENGTH_SHA) {
-                alg = MessageDigest.ALG_SHA;
+                alg = CryptoRegistry.SIGNATURE_RSA_SHA;
             } else if(lc == MessageDigest.LENGTH_SHA_224) {
-                alg = MessageDigest.ALG_SHA_224;
+                alg = CryptoRegistry.SIGNATURE_RSA_SHA_224;
             } else if(lc == MessageDigest.LENGTH_SHA_256) {
-                alg = MessageDigest.ALG_SHA_256;
+                alg = CryptoRegistry.SIGNATURE_RSA_SHA_256;
             } else if(lc == MessageDigest.LENGTH_SHA_384) {
-                alg = MessageDigest.ALG_SHA_384;
+                alg = CryptoRegistry.SIGNATURE_RSA_SHA_384;
             } else if(lc == MessageDigest.LENGTH_SHA_512) {
-                alg = MessageDigest.ALG_SHA_512;
+                alg = CryptoRegistry.SIGNATURE_RSA_SHA_512;
             } else {
                 ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
                 return 0;
             }
-						
-						final Signature sig = Signature.getInstance(alg, Signature.SIG_CIPHER_RSA, Cipher.PAD_PKCS1, false);
-						sig.init(priv, Signature.MODE_SIGN);
-						
+
+            transients.countSignature(alg);
+
+            if(crypto.rsaSignatureWithCipher()) {
+                final short prefix = CryptoRegistry.digestInfoLength(alg);
+                final short block = (short)(prefix + lc);
+                Util.arrayCopyNonAtomic(buf, (short)0,
+                                        buf, prefix,
+                                        lc);
+                CryptoRegistry.writeDigestInfo(alg, buf, (short)0);
+
+                final Cipher cipher = crypto.cipher(CryptoRegistry.CIPHER_RSA_PKCS1);
+                cipher.init(priv, Cipher.MODE_ENCRYPT);
+                off = cipher.doFinal(buf, (short)0, block,
+                                     buf, block);
+                return Util.arrayCopyNonAtomic(buf, block,
+                                               buf, (short)0,
+                                               off);
+            }
+
+            final Signature sig = crypto.signature(alg);
+            sig.init(priv, Signature.MODE_SIGN);
+
             off = sig.signPreComputedHash(buf, (short)0, lc,
                                           buf, lc);
 
-	          return Util.arrayCopyNonAtomic(buf, (short)lc,
-	                                         buf, (short)0,
-	                                         off);
+            return Util.arrayCopyNonAtomic(buf, lc,
+                                           buf, (short)0,
+                                           off);
 
         } else if(isEc()) {
 
             byte alg;
 
             if(lc == MessageDigest.LENGTH_SHA) {
-                alg = Signature.ALG_ECDSA_SHA;
+                alg = CryptoRegistry.SIGNATURE_ECDSA_SHA;
             } else if(lc == MessageDigest.LENGTH_SHA_224) {
-                alg = Signature.ALG_ECDSA_SHA_224;
+                alg = CryptoRegistry.SIGNATURE_ECDSA_SHA_224;
             } else if(lc == MessageDigest.LENGTH_SHA_256) {
-                alg = Signature.ALG_ECDSA_SHA_256;
+                alg = CryptoRegistry.SIGNATURE_ECDSA_SHA_256;
             } else if(lc == MessageDigest.LENGTH_SHA_384) {
-                alg = Signature.ALG_ECDSA_SHA_384;
+                alg = CryptoRegistry.SIGNATURE_ECDSA_SHA_384;
             } else if(lc == MessageDigest.LENGTH_SHA_512) {
-                alg = Signature.ALG_ECDSA_SHA_512;
+                alg = CryptoRegistry.SIGNATURE_ECDSA_SHA_512;
             } else {
                 ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
                 return 0;
             }
 
-            final Signature sig = Signature.getInstance(alg, false);
-            sig.init(priv, Signature.MODE_SIGN);
-
-            final short sig_size = sig.signPreComputedHash(buf, (short)0, lc,
-                                                           buf, lc);
-
-            off = (short)(lc + 1);
-            if((buf[off] & (byte)0x80) != (byte)0) {
-                ++off;
+            transients.countSignature(alg);
+
+            if(!der) {
+                final Signature plain = crypto.plainEcdsa(alg);
+                if(plain != null) {
+                    plain.init(priv, Signature.MODE_SIGN);
+                    off = plain.signPreComputedHash(buf, (short)0, lc,
+                                                    buf, lc);
+                    return Util.arrayCopyNonAtomic(buf, lc,
+                                                   buf, (short)0,
+                                                   off);
+                }
             }
-            ++off;
 
-            if((buf[off++] != (byte)0x02)) {
-                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
-                return 0;
-            }
+            final Signature sig = crypto.signature(alg);
+            sig.init(priv, Signature.MODE_SIGN);
 
-            if((buf[off] & (byte)0x80) != (byte)0) {
-                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
-                return 0;
+            if(der) {
+                off = sig.signPreComputedHash(buf, (short)0, lc,
+                                              buf, lc);
+                return Util.arrayCopyNonAtomic(buf, lc,
+                                               buf, (short)0,
+                                               off);
             }
 
-            final short r_size = Util.makeShort((byte)0, buf[off++]);
-            final short r_off = off;
-
-            off += r_size;
-
-            if((buf[off++] != (byte)0x02)) {
+            /* The DER signature is put after room for r || s, so that
+               both integers are transcoded in a single pass without
+               overlapping their source */
+            final short size = Common.bitsToBytes(priv.getSize());
+            final short der_off = (lc > (short)(2 * size)) ? lc : (short)(2 * size);
+            final short der_end = (short)(der_off +
+                                          sig.signPreComputedHash(buf, (short)0, lc,
+                                                                  buf, der_off));
+
+            off = der_off;
+            if(buf[off++] != (byte)0x30) {
                 ISOException.throwIt(ISO7816.SW_WRONG_DATA);
                 return 0;
             }
+            off = Common.skipLength(buf, off, (short)(der_end - off));
 
-            if((buf[off] & (byte)0x80) != (byte)0) {
-                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
-                return 0;
-            }
+            short out = transcodeInteger(buf, off, der_end, (short)0, size);
+            off = (short)(off + 2 + buf[(short)(off + 1)]);
+            out = transcodeInteger(buf, off, der_end, out, size);
 
-            final short s_size = Util.makeShort((byte)0, buf[off++]);
-            final short s_off = off;
+            Util.arrayFillNonAtomic(buf, out, (short)(der_end - out), (byte)0);
 
-            off = (short)(lc + sig_size);
+            return out;
+        }
 
-            if(r_size < s_size) {
-                off = Util.arrayFillNonAtomic(buf, off, (short)(s_size - r_size), (byte)0);
-            }
+        ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
+        return 0;
+    }
 
-            off = Util.arrayCopyNonAtomic(buf, r_off,
-                                          buf, off, r_size);
+    /* Signature with SHA-256 of len bytes at off, DER for ECDSA, written
+       at out which must not overlap them */
+    protected final short signMessage(final CryptoRegistry crypto, final Transients transients,
+                                      final byte[] buf, final short off, final short len,
+                                      final short out) {
 
-            if(s_size < r_size) {
-                off = Util.arrayFillNonAtomic(buf, off, (short)(r_size - s_size), (byte)0);
-            }
+        if(!isInitialized()) {
+            ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
+            return 0;
+        }
 
-            off = Util.arrayCopyNonAtomic(buf, s_off,
-                                          buf, off, s_size);
+        final byte alg = isRsa() ? CryptoRegistry.SIGNATURE_RSA_SHA_256 : CryptoRegistry.SIGNATURE_ECDSA_SHA_256;
 
-            off = Util.arrayCopyNonAtomic(buf, (short)(lc + sig_size),
-                                          buf, (short)0,
-                                          (short)(off - lc - sig_size));
+        transients.countSignature(alg);
 
-            Util.arrayFillNonAtomic(buf, off, (short)(lc + sig_size - off), (byte)0);
+        final Signature sig = crypto.signature(alg);
+        sig.init(keys.getPrivate(), Signature.MODE_SIGN);
 
-            return off;
-        }
+        return sig.sign(buf, off, len, buf, out);
+    }
 
-        ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
-        return 0;
+    /* Writes the DER INTEGER at off as an unsigned big endian number of
+       size bytes at out: leading zero bytes are dropped and it is padded
+       with zeros on the left. */
+    private static final short transcodeInteger(final byte[] buf, short off, final short end,
+                                                final short out, final short size) {
+        if((short)(off + 2) > end) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return 0;
+        }
+        if(buf[off++] != (byte)0x02) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return 0;
+        }
+        short len = buf[off++];
+        if((len <= 0) || ((short)(off + len) > end)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return 0;
+        }
+        while((len > size) && (buf[off] == (byte)0)) {
+            ++off;
+            --len;
+        }
+        if(len > size) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return 0;
+        }
+        Util.arrayFillNonAtomic(buf, out, (short)(size - len), (byte)0);
+        return Util.arrayCopyNonAtomic(buf, off,
+                                       buf, (short)(out + size - len),
+                                       len);
     }
 
 }
@@ -31,9 +31,17 @@ public final class Common {
         }
     }
 
-    protected static final void commitTransaction(final boolean isRegistering) {
+    /* Every transaction is committed here, once the commit capacity
+       it used is sampled for the metrics (see Transients) */
+    protected static final void commitTransaction(final Transients transients) {
+        transients.updateCommitHighWater();
+        JCSystem.commitTransaction();
+    }
+
+    protected static final void commitTransaction(final Transients transients,
+                                                  final boolean isRegistering) {
         if(!isRegistering) {
-            JCSystem.commitTransaction();
+            commitTransaction(transients);
         }
     }
 
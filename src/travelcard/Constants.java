@@ -25,11 +25,25 @@ import javacardx.crypto.*;
 
 public final class Constants {
 
-    protected static final short INTERNAL_BUFFER_MAX_LENGTH =
-        (short)((short)0x500);
+    /* Defaults of the install parameters (see InstallParameters) */
+    protected static final short INTERNAL_BUFFER_MAX_LENGTH = (short)0x500;
 
     protected static final short APDU_MAX_LENGTH = (short)0x100;
 
+    protected static final byte KEY_SLOTS = 1;
+    protected static final byte KEY_SLOTS_MAX = 4;
+
+    /* Install parameters, one byte tags and lengths */
+    protected static final byte INSTALL_TAG_BUFFER_LENGTH = (byte)0x81;
+    protected static final byte INSTALL_TAG_CERTIFICATE_MAX_LENGTH = (byte)0x82;
+    protected static final byte INSTALL_TAG_KEY_SLOTS = (byte)0x83;
+    protected static final byte INSTALL_TAG_APDU_MAX_LENGTH = (byte)0x84;
+
+    protected static final short RANDOM_POOL_LENGTH = (short)0x40;
+
+    /* Number of commands between two saves of the performance metrics */
+    protected static final short METRICS_SNAPSHOT_PERIOD = (short)0x40;
+
     protected static final short TAG_AID = (short)0x004f;
     protected static final short TAG_LIFE_CYCLE_STATUS = (short)0x008a;
     protected static final short TAG_CARDHOLDER_RELATED_DATA = (short)0x0065;
@@ -38,19 +52,44 @@ public final class Constants {
     protected static final short TAG_CARDHOLDER_CERTIFICATE = (short)0x7f21;
     protected static final short TAG_ALGORITHM_ATTRIBUTES_AUT = (short)0x00c3;
     protected static final short TAG_EXTENDED_LENGTH_INFORMATION = (short)0x7f66;
+    protected static final short TAG_MEMORY_USAGE = (short)0x0101;
+    protected static final short TAG_CERTIFICATE_DIGEST = (short)0x0102;
+    protected static final short TAG_METRICS = (short)0x0103;
+    protected static final short TAG_COMPRESSED_CERTIFICATE = (short)0x0104;
+    protected static final short TAG_TAG_LIST = (short)0x005c;
+    protected static final short TAG_SIGNATURE = (short)0x5f37;
+    protected static final byte TAG_EXTENDED_HEADER_LIST = (byte)0x4d;
+    protected static final short TAG_CARDHOLDER_PRIVATE_KEY_TEMPLATE = (short)0x7f48;
+    protected static final short TAG_CONCATENATED_KEY_DATA = (short)0x5f48;
+
+    /* P1P2 of the odd GET DATA, the data objects are those of the current application */
+    protected static final short FILE_CURRENT_DF = (short)0x3fff;
 
     protected static final short CRT_AUTHENTICATION_KEY = (short)0xa400;
+    protected static final short CRT_ATTESTATION_KEY = (short)0xb600;
+
+    /* P1 of INTERNAL AUTHENTICATE */
+    protected static final byte SIGNATURE_FORMAT_PLAIN = (byte)0x00;
+    protected static final byte SIGNATURE_FORMAT_DER = (byte)0x01;
+
+    /* P2 of GENERATE ASYMMETRIC KEY PAIR */
+    protected static final byte PUBLIC_KEY_FORMAT_COMPRESSED = (byte)0x01;
 
     protected static final byte CLA_MASK_CHAINING = (byte)0x10;
 
     protected static final byte INS_GET_DATA = (byte)0xCA;
+    protected static final byte INS_GET_DATA_ODD = (byte)0xCB;
     protected static final byte INS_GET_NEXT_DATA = (byte)0xCC;
     protected static final byte INS_PUT_DATA_DA = (byte)0xDA;
     protected static final byte INS_PUT_DATA_DB = (byte)0xDB;
     protected static final byte INS_GENERATE_ASYMMETRIC_KEY_PAIR = (byte)0x47;
     protected static final byte INS_INTERNAL_AUTHENTICATE = (byte)0x88;
+    protected static final byte INS_GET_CHALLENGE = (byte)0x84;
     protected static final byte INS_GET_RESPONSE = (byte)0xC0;
+    protected static final byte INS_TERMINATE_DF = (byte)0xE6;
+    protected static final byte INS_ACTIVATE_FILE = (byte)0x44;
 
+    protected static final short SW_TERMINATED = (short)0x6285;
     protected static final short SW_MEMORY_FAILURE = (short)0x6581;
     protected static final short SW_CHAINING_ERROR = (short)0x6883;
     protected static final short SW_REFERENCE_DATA_NOT_FOUND = (short)0x6A88;
@@ -62,6 +101,9 @@ public final class Constants {
         return (short)0x0480;
     }
 
+    /* 7F49 of a 2048 bits RSA key, also large enough for EC keys up to 521 bits */
+    protected static final short PUBLIC_KEY_DO_MAX_LENGTH = (short)0x0110;
+
     protected static final byte ALGORITHM_ATTRIBUTES_MIN_LENGTH = 6;
     protected static final byte ALGORITHM_ATTRIBUTES_MAX_LENGTH = 13;
 
@@ -0,0 +1,279 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard;
+
+import javacard.framework.*;
+import javacard.security.*;
+import javacardx.apdu.*;
+import javacardx.crypto.*;
+
+public final class CryptoRegistry {
+
+    protected static final byte SIGNATURE_RSA_SHA = 0;
+    protected static final byte SIGNATURE_RSA_SHA_224 = SIGNATURE_RSA_SHA + 1;
+    protected static final byte SIGNATURE_RSA_SHA_256 = SIGNATURE_RSA_SHA_224 + 1;
+    protected static final byte SIGNATURE_RSA_SHA_384 = SIGNATURE_RSA_SHA_256 + 1;
+    protected static final byte SIGNATURE_RSA_SHA_512 = SIGNATURE_RSA_SHA_384 + 1;
+    protected static final byte SIGNATURE_ECDSA_SHA = SIGNATURE_RSA_SHA_512 + 1;
+    protected static final byte SIGNATURE_ECDSA_SHA_224 = SIGNATURE_ECDSA_SHA + 1;
+    protected static final byte SIGNATURE_ECDSA_SHA_256 = SIGNATURE_ECDSA_SHA_224 + 1;
+    protected static final byte SIGNATURE_ECDSA_SHA_384 = SIGNATURE_ECDSA_SHA_256 + 1;
+    protected static final byte SIGNATURE_ECDSA_SHA_512 = SIGNATURE_ECDSA_SHA_384 + 1;
+    protected static final byte SIGNATURES_SIZE = SIGNATURE_ECDSA_SHA_512 + 1;
+    protected static final byte CIPHER_RSA_PKCS1 = SIGNATURES_SIZE;
+    protected static final byte DIGEST_SHA_256 = CIPHER_RSA_PKCS1 + 1;
+    private static final byte SIGNATURE_ECDSA_PLAIN_SHA = DIGEST_SHA_256 + 1;
+    private static final byte SIGNATURE_ECDSA_PLAIN_SHA_224 = SIGNATURE_ECDSA_PLAIN_SHA + 1;
+    private static final byte SIGNATURE_ECDSA_PLAIN_SHA_256 = SIGNATURE_ECDSA_PLAIN_SHA_224 + 1;
+    private static final byte SIGNATURE_ECDSA_PLAIN_SHA_384 = SIGNATURE_ECDSA_PLAIN_SHA_256 + 1;
+    private static final byte SIGNATURE_ECDSA_PLAIN_SHA_512 = SIGNATURE_ECDSA_PLAIN_SHA_384 + 1;
+    private static final byte OBJECTS_SIZE = SIGNATURE_ECDSA_PLAIN_SHA_512 + 1;
+
+    /* Signature.SIG_CIPHER_ECDSA_PLAIN of JavaCard 3.0.5, absent from
+       the 3.0.4 API the applet is built against */
+    private static final byte SIG_CIPHER_ECDSA_PLAIN = (byte)9;
+
+    /* Memory of objects owned by the card keys is accounted by category */
+    protected static final byte USAGE_KEYS = OBJECTS_SIZE;
+    protected static final byte USAGE_CERTIFICATES = USAGE_KEYS + 1;
+    private static final byte USAGE_SIZE = USAGE_CERTIFICATES + 1;
+
+    /* DigestInfo prefixes of PKCS#1 v1.5 signatures, SHA-1 then SHA-224,
+       SHA-256, SHA-384 and SHA-512 */
+    private static final short DIGEST_INFO_SHA_LENGTH = (short)15;
+    private static final short DIGEST_INFO_SHA2_LENGTH = (short)19;
+    private static final byte[] DIGEST_INFO = {
+        (byte)0x30, (byte)0x21, (byte)0x30, (byte)0x09, (byte)0x06, (byte)0x05, (byte)0x2b, (byte)0x0e,
+        (byte)0x03, (byte)0x02, (byte)0x1a, (byte)0x05, (byte)0x00, (byte)0x04, (byte)0x14,
+        (byte)0x30, (byte)0x2d, (byte)0x30, (byte)0x0d, (byte)0x06, (byte)0x09, (byte)0x60, (byte)0x86,
+        (byte)0x48, (byte)0x01, (byte)0x65, (byte)0x03, (byte)0x04, (byte)0x02, (byte)0x04, (byte)0x05,
+        (byte)0x00, (byte)0x04, (byte)0x1c,
+        (byte)0x30, (byte)0x31, (byte)0x30, (byte)0x0d, (byte)0x06, (byte)0x09, (byte)0x60, (byte)0x86,
+        (byte)0x48, (byte)0x01, (byte)0x65, (byte)0x03, (byte)0x04, (byte)0x02, (byte)0x01, (byte)0x05,
+        (byte)0x00, (byte)0x04, (byte)0x20,
+        (byte)0x30, (byte)0x41, (byte)0x30, (byte)0x0d, (byte)0x06, (byte)0x09, (byte)0x60, (byte)0x86,
+        (byte)0x48, (byte)0x01, (byte)0x65, (byte)0x03, (byte)0x04, (byte)0x02, (byte)0x02, (byte)0x05,
+        (byte)0x00, (byte)0x04, (byte)0x30,
+        (byte)0x30, (byte)0x51, (byte)0x30, (byte)0x0d, (byte)0x06, (byte)0x09, (byte)0x60, (byte)0x86,
+        (byte)0x48, (byte)0x01, (byte)0x65, (byte)0x03, (byte)0x04, (byte)0x02, (byte)0x03, (byte)0x05,
+        (byte)0x00, (byte)0x04, (byte)0x40
+    };
+
+    private final Object[] objects;
+    private final boolean[] missing;
+
+    /* RSA signing engine, chosen at installation */
+    private final boolean rsa_with_cipher;
+
+    private final short[] persistent_usage;
+    private final short[] transient_usage;
+
+    private short mark_persistent;
+    private short mark_transient_reset;
+    private short mark_transient_deselect;
+
+    protected CryptoRegistry() {
+        objects = new Object[OBJECTS_SIZE];
+        missing = new boolean[OBJECTS_SIZE];
+        persistent_usage = new short[USAGE_SIZE];
+        transient_usage = new short[USAGE_SIZE];
+
+        /* The PKCS#1 cipher over a DigestInfo is found on more platforms
+           than RSA signatures of precomputed hashes, and is often faster */
+        rsa_with_cipher = (find(CIPHER_RSA_PKCS1) != null);
+    }
+
+    /* Available memory is reported by the platform as a short, so the
+       accounting is only exact while less than 32 kB are free. */
+    private final void mark() {
+        mark_persistent = JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_PERSISTENT);
+        mark_transient_reset = JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_TRANSIENT_RESET);
+        mark_transient_deselect = JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_TRANSIENT_DESELECT);
+    }
+
+    private final void account(final byte usage) {
+        persistent_usage[usage] += (short)(mark_persistent -
+                                           JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_PERSISTENT));
+        transient_usage[usage] += (short)((short)(mark_transient_reset -
+                                                  JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_TRANSIENT_RESET)) +
+                                          (short)(mark_transient_deselect -
+                                                  JCSystem.getAvailableMemory(JCSystem.MEMORY_TYPE_TRANSIENT_DESELECT)));
+    }
+
+    private static final byte digestAlgorithm(final byte id) {
+        switch(id) {
+        case SIGNATURE_RSA_SHA:
+        case SIGNATURE_ECDSA_SHA:
+        case SIGNATURE_ECDSA_PLAIN_SHA:
+            return MessageDigest.ALG_SHA;
+        case SIGNATURE_RSA_SHA_224:
+        case SIGNATURE_ECDSA_SHA_224:
+        case SIGNATURE_ECDSA_PLAIN_SHA_224:
+            return MessageDigest.ALG_SHA_224;
+        case SIGNATURE_RSA_SHA_256:
+        case SIGNATURE_ECDSA_SHA_256:
+        case SIGNATURE_ECDSA_PLAIN_SHA_256:
+        case DIGEST_SHA_256:
+            return MessageDigest.ALG_SHA_256;
+        case SIGNATURE_RSA_SHA_384:
+        case SIGNATURE_ECDSA_SHA_384:
+        case SIGNATURE_ECDSA_PLAIN_SHA_384:
+            return MessageDigest.ALG_SHA_384;
+        default:
+            return MessageDigest.ALG_SHA_512;
+        }
+    }
+
+    private final Object create(final byte id) {
+        switch(id) {
+        case SIGNATURE_RSA_SHA:
+        case SIGNATURE_RSA_SHA_224:
+        case SIGNATURE_RSA_SHA_256:
+        case SIGNATURE_RSA_SHA_384:
+        case SIGNATURE_RSA_SHA_512:
+            return Signature.getInstance(digestAlgorithm(id), Signature.SIG_CIPHER_RSA, Cipher.PAD_PKCS1, false);
+
+        case SIGNATURE_ECDSA_SHA:
+            return Signature.getInstance(Signature.ALG_ECDSA_SHA, false);
+        case SIGNATURE_ECDSA_SHA_224:
+            return Signature.getInstance(Signature.ALG_ECDSA_SHA_224, false);
+        case SIGNATURE_ECDSA_SHA_256:
+            return Signature.getInstance(Signature.ALG_ECDSA_SHA_256, false);
+        case SIGNATURE_ECDSA_SHA_384:
+            return Signature.getInstance(Signature.ALG_ECDSA_SHA_384, false);
+        case SIGNATURE_ECDSA_SHA_512:
+            return Signature.getInstance(Signature.ALG_ECDSA_SHA_512, false);
+
+        case SIGNATURE_ECDSA_PLAIN_SHA:
+        case SIGNATURE_ECDSA_PLAIN_SHA_224:
+        case SIGNATURE_ECDSA_PLAIN_SHA_256:
+        case SIGNATURE_ECDSA_PLAIN_SHA_384:
+        case SIGNATURE_ECDSA_PLAIN_SHA_512:
+            return Signature.getInstance(digestAlgorithm(id), SIG_CIPHER_ECDSA_PLAIN, Cipher.PAD_NULL, false);
+
+        case CIPHER_RSA_PKCS1:
+            return Cipher.getInstance(Cipher.CIPHER_RSA, Cipher.PAD_PKCS1, false);
+
+        case DIGEST_SHA_256:
+            return MessageDigest.getInstance(digestAlgorithm(id), false);
+
+        default:
+            return null;
+        }
+    }
+
+    /* An algorithm the platform lacks is only asked for once */
+    private final Object find(final byte id) {
+        if(objects[id] == null) {
+            if(missing[id]) {
+                return null;
+            }
+            mark();
+            try {
+                objects[id] = create(id);
+            } catch(final CryptoException e) {
+                missing[id] = true;
+                return null;
+            }
+            account(id);
+        }
+        return objects[id];
+    }
+
+    private final Object get(final byte id) {
+        final Object o = find(id);
+        if(o == null) {
+            ISOException.throwIt(ISO7816.SW_FUNC_NOT_SUPPORTED);
+            return null;
+        }
+        return o;
+    }
+
+    protected final Signature signature(final byte id) {
+        return (Signature)get(id);
+    }
+
+    /* Plain (r || s) counterpart of an ECDSA signature, null when the
+       platform predates JavaCard 3.0.5 */
+    protected final Signature plainEcdsa(final byte id) {
+        return (Signature)find((byte)(id - SIGNATURE_ECDSA_SHA + SIGNATURE_ECDSA_PLAIN_SHA));
+    }
+
+    protected final boolean rsaSignatureWithCipher() {
+        return rsa_with_cipher;
+    }
+
+    protected static final short digestInfoLength(final byte id) {
+        return (id == SIGNATURE_RSA_SHA) ? DIGEST_INFO_SHA_LENGTH : DIGEST_INFO_SHA2_LENGTH;
+    }
+
+    /* Writes the DigestInfo prefix of the RSA signature id */
+    protected static final short writeDigestInfo(final byte id, final byte[] buf, final short off) {
+        final short from = (id == SIGNATURE_RSA_SHA) ? (short)0 :
+            (short)(DIGEST_INFO_SHA_LENGTH + (short)((short)(id - SIGNATURE_RSA_SHA_224) * DIGEST_INFO_SHA2_LENGTH));
+        return Util.arrayCopyNonAtomic(DIGEST_INFO, from,
+                                       buf, off,
+                                       digestInfoLength(id));
+    }
+
+    protected final Cipher cipher(final byte id) {
+        return (Cipher)get(id);
+    }
+
+    protected final MessageDigest digest(final byte id) {
+        return (MessageDigest)get(id);
+    }
+
+    /* Returns null when the platform lacks the algorithm */
+    protected final MessageDigest optionalDigest(final byte id) {
+        return (MessageDigest)find(id);
+    }
+
+    protected final Key buildKey(final byte type, final short size) {
+        mark();
+        final Key key;
+        try {
+            key = KeyBuilder.buildKey(type, size, false);
+        } catch(final CryptoException e) {
+            return null;
+        }
+        account(USAGE_KEYS);
+        return key;
+    }
+
+    protected final byte[] makeCertificate(final short len) {
+        mark();
+        final byte[] buf = new byte[len];
+        account(USAGE_CERTIFICATES);
+        return buf;
+    }
+
+    protected final short usageLength() {
+        return (short)(USAGE_SIZE * 5);
+    }
+
+    protected final short writeUsage(final byte[] buf, short off) {
+        for(byte i = 0; i < USAGE_SIZE; ++i) {
+            buf[off++] = i;
+            off = Util.setShort(buf, off, persistent_usage[i]);
+            off = Util.setShort(buf, off, transient_usage[i]);
+        }
+        return off;
+    }
+}
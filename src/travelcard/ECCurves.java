@@ -27,6 +27,10 @@ public final class ECCurves {
 
     protected final ECParams[] curves;
 
+    /* Lookup index: OID length and last OID byte of each curve, so that
+       findByOid only compares a full OID on a likely match. */
+    private final short[] oid_index;
+
     protected ECCurves() {
         final ECParams ansix9p256r1 =
             new ECParams((short)256,
@@ -38,18 +42,76 @@ public final class ECCurves {
                          ECConstants.ansix9p256r1_r,
                          (short)1);
 
+        final ECParams ansix9p384r1 =
+            new ECParams((short)384,
+                         ECConstants.ansix9p384r1_oid,
+                         ECConstants.ansix9p384r1_field,
+                         ECConstants.ansix9p384r1_a,
+                         ECConstants.ansix9p384r1_b,
+                         ECConstants.ansix9p384r1_g,
+                         ECConstants.ansix9p384r1_r,
+                         (short)1);
+
+        final ECParams ansix9p521r1 =
+            new ECParams((short)521,
+                         ECConstants.ansix9p521r1_oid,
+                         ECConstants.ansix9p521r1_field,
+                         ECConstants.ansix9p521r1_a,
+                         ECConstants.ansix9p521r1_b,
+                         ECConstants.ansix9p521r1_g,
+                         ECConstants.ansix9p521r1_r,
+                         (short)1);
+
+        final ECParams brainpoolp256r1 =
+            new ECParams((short)256,
+                         ECConstants.brainpoolp256r1_oid,
+                         ECConstants.brainpoolp256r1_field,
+                         ECConstants.brainpoolp256r1_a,
+                         ECConstants.brainpoolp256r1_b,
+                         ECConstants.brainpoolp256r1_g,
+                         ECConstants.brainpoolp256r1_r,
+                         (short)1);
+
+        final ECParams brainpoolp384r1 =
+            new ECParams((short)384,
+                         ECConstants.brainpoolp384r1_oid,
+                         ECConstants.brainpoolp384r1_field,
+                         ECConstants.brainpoolp384r1_a,
+                         ECConstants.brainpoolp384r1_b,
+                         ECConstants.brainpoolp384r1_g,
+                         ECConstants.brainpoolp384r1_r,
+                         (short)1);
 
         curves = new ECParams[]{
-            ansix9p256r1
+            ansix9p256r1,
+            ansix9p384r1,
+            ansix9p521r1,
+            brainpoolp256r1,
+            brainpoolp384r1
         };
+
+        oid_index = new short[curves.length];
+        for(byte i = 0; i < curves.length; ++i) {
+            oid_index[i] = indexKey(curves[i].oid, (short)0, (byte)curves[i].oid.length);
+        }
+    }
+
+    private static final short indexKey(final byte[] buf, final short off, final byte len) {
+        return Util.makeShort(len, buf[(short)(off + len - 1)]);
     }
 
     protected final ECParams findByOid(final byte[] buf,
                                        final short off,
                                        final byte len) {
+        if(len <= 0) {
+            return null;
+        }
+
+        final short key = indexKey(buf, off, len);
+
         byte i = 0;
-        while(i < curves.length) {
-            if(curves[i].matchOid(buf, off, len)) {
+        while(i < oid_index.length) {
+            if((oid_index[i] == key) && curves[i].matchOid(buf, off, len)) {
                 return curves[i];
             }
             ++i;
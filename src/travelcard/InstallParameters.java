@@ -0,0 +1,129 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard;
+
+import javacard.framework.*;
+
+/*
+  Sizes chosen when the applet is installed, from the application
+  specific part of the install parameters, a list of TLVs with one byte
+  tags and lengths:
+
+    81 02 size of the RAM buffer used for chaining
+    82 02 maximal length of a certificate
+    83 01 number of key slots, the first one being the authentication
+          key, the others only holding certificates
+    84 02 maximal length of the data of a command or response; above
+          256, extended length APDUs are accepted
+
+  Missing values take the defaults of Constants. Inconsistent values
+  make the installation fail, rather than the commands at runtime: the
+  buffer must hold a certificate with its digest, and a command with a
+  key component being imported.
+*/
+public final class InstallParameters {
+
+    /* Room around a certificate in the buffer: its tag and length when
+       read, its lengths and SHA-256 digest when written */
+    private static final short CERTIFICATE_OVERHEAD = (short)(5 + 32);
+
+    protected final short buffer_length;
+    protected final short certificate_max_length;
+    protected final byte key_slots;
+    protected final short apdu_max_length;
+
+    protected InstallParameters(final byte[] buf, final short off, final byte len) {
+        short buffer = Constants.INTERNAL_BUFFER_MAX_LENGTH;
+        short certificate = Constants.cardholderCertificateMaxLength();
+        byte slots = Constants.KEY_SLOTS;
+        short apdu = Constants.APDU_MAX_LENGTH;
+
+        /* AID, control information, then application parameters */
+        short p = off;
+        final short end = (short)(off + len);
+        if(len > 0) {
+            p += (short)(1 + buf[p]);
+            p += (short)(1 + buf[p]);
+        }
+
+        if(p < end) {
+            final short params_end = (short)(p + 1 + (buf[p] & 0xff));
+            ++p;
+            if(params_end > end) {
+                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            }
+
+            while(p < params_end) {
+                if((short)(p + 2) > params_end) {
+                    ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                }
+                final byte tag = buf[p++];
+                final byte l = buf[p++];
+                if((l < 0) || ((short)(p + l) > params_end)) {
+                    ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                }
+
+                switch(tag) {
+                case Constants.INSTALL_TAG_BUFFER_LENGTH:
+                    buffer = readShort(buf, p, l);
+                    break;
+                case Constants.INSTALL_TAG_CERTIFICATE_MAX_LENGTH:
+                    certificate = readShort(buf, p, l);
+                    break;
+                case Constants.INSTALL_TAG_KEY_SLOTS:
+                    if(l != 1) {
+                        ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                    }
+                    slots = buf[p];
+                    break;
+                case Constants.INSTALL_TAG_APDU_MAX_LENGTH:
+                    apdu = readShort(buf, p, l);
+                    break;
+                default:
+                    ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                }
+                p += l;
+            }
+        }
+
+        if((slots < 1) || (slots > Constants.KEY_SLOTS_MAX) ||
+           (apdu < Constants.APDU_MAX_LENGTH) ||
+           (certificate < 0) || (buffer < 0) ||
+           ((short)(buffer - certificate) < CERTIFICATE_OVERHEAD) ||
+           ((short)(buffer - apdu) < KeyImport.COMPONENT_MAX_LENGTH)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+        }
+
+        buffer_length = buffer;
+        certificate_max_length = certificate;
+        key_slots = slots;
+        apdu_max_length = apdu;
+    }
+
+    protected final boolean extendedLength() {
+        return apdu_max_length > Constants.APDU_MAX_LENGTH;
+    }
+
+    private static final short readShort(final byte[] buf, final short off, final byte len) {
+        if(len != 2) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+        }
+        return Util.getShort(buf, off);
+    }
+}
@@ -0,0 +1,218 @@
+/*
+  JavaCard implementation of Travel Card specification MTS7
+
+  This program is free software; you can redistribute it and/or
+  modify it under the terms of the GNU General Public License
+  as published by the Free Software Foundation; either version 2
+  of the License, or (at your option) any later version.
+
+  This program is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+  GNU General Public License for more details.
+
+  You should have received a copy of the GNU General Public License
+  along with this program; if not, write to the Free Software
+  Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+*/
+
+package travelcard;
+
+import javacard.framework.*;
+
+/*
+  Streaming import of a private key from an extended header list (4D),
+  as in the OpenPGP card specification:
+
+    4D L | A4 00 | 7F48 L (tag, length)... | 5F48 L component values
+
+  sent with PUT DATA (odd INS, P1P2 3FFF) and command chaining. The
+  header must come in the first command of the chain; the values are
+  then taken from each command as it is received and every component is
+  set in the key as soon as it is complete, so that RAM only holds the
+  component being received instead of the whole payload. The staging
+  area is wiped after each component and when an import is abandoned.
+*/
+public final class KeyImport {
+
+    private static final byte PHASE_NONE = 0;
+    private static final byte PHASE_VALUES = 1;
+
+    private static final byte COMPONENTS_MAX = 8;
+
+    /* A 4096 bits RSA modulus, staged at the end of the buffer so that
+       it does not overlap the first command of the chain (the install
+       parameters keep the buffer larger than a command and a component) */
+    protected static final short COMPONENT_MAX_LENGTH = (short)0x200;
+
+    private static final byte STATE_PHASE = 0;
+    private static final byte STATE_COMPONENTS = STATE_PHASE + 1;
+    private static final byte STATE_COMPONENT = STATE_COMPONENTS + 1;
+    private static final byte STATE_FILLED = STATE_COMPONENT + 1;
+    private static final byte STATE_SIZE = STATE_FILLED + 1;
+
+    private final CardKey key;
+
+    private final short[] state;
+    private final byte[] tags;
+    private final short[] lengths;
+
+    protected KeyImport(final CardKey key) {
+        this.key = key;
+        state = JCSystem.makeTransientShortArray(STATE_SIZE, JCSystem.CLEAR_ON_DESELECT);
+        tags = JCSystem.makeTransientByteArray(COMPONENTS_MAX, JCSystem.CLEAR_ON_DESELECT);
+        lengths = JCSystem.makeTransientShortArray(COMPONENTS_MAX, JCSystem.CLEAR_ON_DESELECT);
+    }
+
+    protected final boolean isActive() {
+        return state[STATE_PHASE] != PHASE_NONE;
+    }
+
+    private static final short stagingOffset(final byte[] buf) {
+        return (short)(buf.length - COMPONENT_MAX_LENGTH);
+    }
+
+    /* Parses the header at the start of the first command and consumes
+       the values that follow it */
+    protected final void start(final CryptoRegistry crypto, final ECCurves ec,
+                               final byte[] buf, final short off, final short len) {
+
+        abort(buf);
+
+        final short end = (short)(off + len);
+        short p = off;
+
+        if((len < 1) || (buf[p++] != Constants.TAG_EXTENDED_HEADER_LIST)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+        final short total = Common.readLength(buf, p, (short)(end - p));
+        p = Common.skipLength(buf, p, (short)(end - p));
+        final short total_end = (short)(p + total);
+
+        if(((short)(p + 2) > end) ||
+           (Util.getShort(buf, p) != Constants.CRT_AUTHENTICATION_KEY)) {
+            ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
+            return;
+        }
+        p += 2;
+
+        if(((short)(p + 2) > end) ||
+           (Util.getShort(buf, p) != Constants.TAG_CARDHOLDER_PRIVATE_KEY_TEMPLATE)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+        p += 2;
+        final short list_length = Common.readLength(buf, p, (short)(end - p));
+        p = Common.skipLength(buf, p, (short)(end - p));
+        final short list_end = (short)(p + list_length);
+        if(list_end > end) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+
+        byte count = 0;
+        short values_length = 0;
+        while(p < list_end) {
+            if(count >= COMPONENTS_MAX) {
+                ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                return;
+            }
+            tags[count] = buf[p++];
+            final short l = Common.readLength(buf, p, (short)(list_end - p));
+            p = Common.skipLength(buf, p, (short)(list_end - p));
+            if((l <= 0) || (l > COMPONENT_MAX_LENGTH)) {
+                ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+                return;
+            }
+            lengths[count++] = l;
+            values_length += l;
+        }
+
+        if(((short)(p + 2) > end) ||
+           (Util.getShort(buf, p) != Constants.TAG_CONCATENATED_KEY_DATA)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+        p += 2;
+        if(Common.readLength(buf, p, (short)(end - p)) != values_length) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+        p = Common.skipLength(buf, p, (short)(end - p));
+        if((short)(p + values_length) != total_end) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return;
+        }
+
+        key.startImport(crypto, ec);
+
+        state[STATE_COMPONENTS] = count;
+        state[STATE_COMPONENT] = 0;
+        state[STATE_FILLED] = 0;
+        state[STATE_PHASE] = PHASE_VALUES;
+
+        consume(buf, buf, p, (short)(end - p));
+    }
+
+    /* Values received in a command of the chain, in[off, off + len) */
+    protected final void consume(final byte[] buf,
+                                 final byte[] in, short off, short len) {
+
+        if(state[STATE_PHASE] != PHASE_VALUES) {
+            ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
+            return;
+        }
+
+        final short staging = stagingOffset(buf);
+        short i = state[STATE_COMPONENT];
+        short filled = state[STATE_FILLED];
+
+        while(len > 0) {
+            if(i >= state[STATE_COMPONENTS]) {
+                ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+                return;
+            }
+
+            short n = (short)(lengths[i] - filled);
+            if(n > len) {
+                n = len;
+            }
+            Util.arrayCopyNonAtomic(in, off, buf, (short)(staging + filled), n);
+            filled += n;
+            off += n;
+            len -= n;
+
+            if(filled == lengths[i]) {
+                key.importComponent(tags[i], buf, staging, filled);
+                Util.arrayFillNonAtomic(buf, staging, filled, (byte)0);
+                filled = 0;
+                ++i;
+            }
+
+            state[STATE_COMPONENT] = i;
+            state[STATE_FILLED] = filled;
+        }
+    }
+
+    /* Last command of the chain */
+    protected final void finish(final byte[] buf) {
+        if((state[STATE_PHASE] != PHASE_VALUES) ||
+           (state[STATE_COMPONENT] != state[STATE_COMPONENTS])) {
+            abort(buf);
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+            return;
+        }
+        state[STATE_PHASE] = PHASE_NONE;
+        key.finishImport();
+    }
+
+    protected final void abort(final byte[] buf) {
+        if(state[STATE_PHASE] == PHASE_NONE) {
+            return;
+        }
+        Util.arrayFillNonAtomic(buf, stagingOffset(buf), COMPONENT_MAX_LENGTH, (byte)0);
+        state[STATE_PHASE] = PHASE_NONE;
+        key.abortImport();
+    }
+}
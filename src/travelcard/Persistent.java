@@ -25,32 +25,81 @@ import javacardx.crypto.*;
 
 public final class Persistent {
 
-    protected boolean isTerminated;
+    /* Signature counter, life cycle, metrics snapshot and key records
+       (see CardKey) packed in one array: one object header and one
+       access check for all of them */
+    protected final byte[] blob;
+    protected static final short BLOB_OFFSET_SIGNATURE_COUNTER = 0;
+    protected static final byte SIGNATURE_COUNTER_LENGTH = 3;
+    private static final short BLOB_OFFSET_LIFE_CYCLE = BLOB_OFFSET_SIGNATURE_COUNTER + SIGNATURE_COUNTER_LENGTH;
+    private static final byte LIFE_CYCLE_ACTIVE = (byte)0x00;
+    private static final byte LIFE_CYCLE_TERMINATED = (byte)0x01;
+    /* Performance metrics snapshot, kept across resets of the card
+       data: two shorts per metric (see Transients.saveMetrics) */
+    protected static final short BLOB_OFFSET_METRICS = BLOB_OFFSET_LIFE_CYCLE + 1;
+    private static final short BLOB_OFFSET_ATTESTATION_KEY = BLOB_OFFSET_METRICS + (4 * Transients.METRICS_SIZE);
+    private static final short BLOB_OFFSET_CARD_KEYS = BLOB_OFFSET_ATTESTATION_KEY + CardKey.RECORD_LENGTH;
 
     protected final CardKey[] card_keys;
     protected static final byte CARD_KEYS_OFFSET_AUT = 0;
-    private static final byte CARD_KEYS_LENGTH = CARD_KEYS_OFFSET_AUT + 1;
 
-    protected final byte[] digital_signature_counter;
+    /* Signs the public key DO of generated keys, with the AID, so that
+       the issuer knows the key was made on the card. It is generated
+       once and kept across resets of the card data. */
+    protected final CardKey attestation_key;
 
-    protected Persistent() {
+    protected Persistent(final InstallParameters params) {
 
-        digital_signature_counter = new byte[3];
-        card_keys = new CardKey[CARD_KEYS_LENGTH];
-        for(byte i = 0; i < card_keys.length; ++i) {
-            card_keys[i] = new CardKey();
+        /* Only the first slot holds a key, the others a certificate */
+        blob = new byte[(short)(BLOB_OFFSET_CARD_KEYS + CardKey.RECORD_LENGTH +
+                                (short)((short)(params.key_slots - 1) * CardKey.CERTIFICATE_RECORD_LENGTH))];
+        card_keys = new CardKey[params.key_slots];
+        card_keys[CARD_KEYS_OFFSET_AUT] = new CardKey(blob, BLOB_OFFSET_CARD_KEYS,
+                                                      Constants.ALGORITHM_ATTRIBUTES_DEFAULT,
+                                                      params.certificate_max_length);
+        short off = (short)(BLOB_OFFSET_CARD_KEYS + CardKey.RECORD_LENGTH);
+        for(byte i = 1; i < card_keys.length; ++i) {
+            card_keys[i] = new CardKey(blob, off, null, params.certificate_max_length);
+            off = (short)(off + CardKey.CERTIFICATE_RECORD_LENGTH);
         }
-        reset(true);
+        attestation_key = new CardKey(blob, BLOB_OFFSET_ATTESTATION_KEY,
+                                      Constants.ALGORITHM_ATTRIBUTES_EC, (short)0);
+        reset(null, true);
+    }
+
+    protected final boolean isTerminated() {
+        return blob[BLOB_OFFSET_LIFE_CYCLE] == LIFE_CYCLE_TERMINATED;
+    }
+
+    /* The card is active again in the transaction of the wipe */
+    protected void reset(final Transients transients, final boolean isRegistering) {
+        Common.beginTransaction(isRegistering);
+        wipe();
+        blob[BLOB_OFFSET_LIFE_CYCLE] = LIFE_CYCLE_ACTIVE;
+        Common.commitTransaction(transients, isRegistering);
     }
 
-    protected void reset(final boolean isRegistering) {
+    /* TERMINATE DF: the state is written before anything is wiped, so
+       that a card torn during the wipe stays terminated until ACTIVATE
+       FILE resets it again. Every object is kept for the next issuance. */
+    protected void terminate(final Transients transients) {
+        blob[BLOB_OFFSET_LIFE_CYCLE] = LIFE_CYCLE_TERMINATED;
+
+        JCSystem.beginTransaction();
+        wipe();
+        Common.commitTransaction(transients);
+    }
+
+    /* All the key records and the counter, within the transaction of
+       the caller */
+    private void wipe() {
         for(byte i = 0; i < card_keys.length; ++i) {
-            card_keys[i].reset(isRegistering);
+            card_keys[i].reset();
         }
 
-        Util.arrayFillNonAtomic(digital_signature_counter, (short)0,
-                                (short)digital_signature_counter.length, (byte)0);
-
-        isTerminated = false;
+        /* journaled writes, rolled back with the records */
+        for(short i = 0; i < SIGNATURE_COUNTER_LENGTH; ++i) {
+            blob[(short)(BLOB_OFFSET_SIGNATURE_COUNTER + i)] = (byte)0;
+        }
     }
 }
@@ -24,6 +24,8 @@ public final class Transients {
 
     protected final byte[] buffer;
 
+    protected final byte[] random_pool;
+
     private final short[] shorts;
     private static final byte SHORT_OFFSET_CURRENT_TAG = 0;
     private static final byte SHORT_OFFSET_OUTPUT_START = SHORT_OFFSET_CURRENT_TAG + 1;
@@ -32,6 +34,11 @@ public final class Transients {
     private static final byte SHORT_OFFSET_SECURE_MESSAGING_ENCRYPTION_COUNTER = SHORT_OFFSET_CHAINING_INPUT_LENGTH + 1;
     private static final byte SHORTS_SIZE = SHORT_OFFSET_SECURE_MESSAGING_ENCRYPTION_COUNTER + 1;
 
+    /* Kept across SELECT, for the whole power session */
+    private final short[] session_shorts;
+    private static final byte SESSION_SHORT_OFFSET_RANDOM_POOL_AVAILABLE = 0;
+    private static final byte SESSION_SHORTS_SIZE = SESSION_SHORT_OFFSET_RANDOM_POOL_AVAILABLE + 1;
+
     private final byte[] bytes;
     private static final byte BYTE_OFFSET_CHAINING_INPUT_INS = 0;
     private static final byte BYTE_OFFSET_CHAINING_INPUT_P1 = BYTE_OFFSET_CHAINING_INPUT_INS + 1;
@@ -48,15 +55,41 @@ public final class Transients {
     private static final byte BOOLEANS_SIZE = BOOLEAN_OFFSET_SECURE_MESSAGING_OK + 1;
 
 
-    protected Transients() {
-        buffer = JCSystem.makeTransientByteArray(Constants.INTERNAL_BUFFER_MAX_LENGTH,
+    /* Counters of the current power session, folded into the persistent
+       snapshot every METRICS_SNAPSHOT_PERIOD commands and when read. */
+    private final short[] metrics;
+    protected static final byte METRIC_COMMANDS_SELECT = 0;
+    protected static final byte METRIC_COMMANDS_GET_DATA = METRIC_COMMANDS_SELECT + 1;
+    protected static final byte METRIC_COMMANDS_GET_NEXT_DATA = METRIC_COMMANDS_GET_DATA + 1;
+    protected static final byte METRIC_COMMANDS_PUT_DATA = METRIC_COMMANDS_GET_NEXT_DATA + 1;
+    protected static final byte METRIC_COMMANDS_GENERATE = METRIC_COMMANDS_PUT_DATA + 1;
+    protected static final byte METRIC_COMMANDS_INTERNAL_AUTHENTICATE = METRIC_COMMANDS_GENERATE + 1;
+    protected static final byte METRIC_COMMANDS_GET_CHALLENGE = METRIC_COMMANDS_INTERNAL_AUTHENTICATE + 1;
+    protected static final byte METRIC_COMMANDS_GET_RESPONSE = METRIC_COMMANDS_GET_CHALLENGE + 1;
+    protected static final byte METRIC_COMMANDS_OTHER = METRIC_COMMANDS_GET_RESPONSE + 1;
+    protected static final byte METRIC_CHAINING_IN = METRIC_COMMANDS_OTHER + 1;
+    protected static final byte METRIC_CHAINING_OUT = METRIC_CHAINING_IN + 1;
+    protected static final byte METRIC_BUFFER_HIGH_WATER = METRIC_CHAINING_OUT + 1;
+    protected static final byte METRIC_COMMIT_HIGH_WATER = METRIC_BUFFER_HIGH_WATER + 1;
+    protected static final byte METRIC_SIGNATURES = METRIC_COMMIT_HIGH_WATER + 1;
+    protected static final byte METRICS_SIZE = METRIC_SIGNATURES + CryptoRegistry.SIGNATURES_SIZE;
+    private static final byte METRIC_PENDING_COMMANDS = METRICS_SIZE;
+
+    protected Transients(final InstallParameters params) {
+        buffer = JCSystem.makeTransientByteArray(params.buffer_length,
                                                  JCSystem.CLEAR_ON_DESELECT);
+        random_pool = JCSystem.makeTransientByteArray(Constants.RANDOM_POOL_LENGTH,
+                                                      JCSystem.CLEAR_ON_RESET);
         shorts = JCSystem.makeTransientShortArray(SHORTS_SIZE,
                                                   JCSystem.CLEAR_ON_DESELECT);
+        session_shorts = JCSystem.makeTransientShortArray(SESSION_SHORTS_SIZE,
+                                                          JCSystem.CLEAR_ON_RESET);
         bytes = JCSystem.makeTransientByteArray(BYTES_SIZE,
                                                 JCSystem.CLEAR_ON_DESELECT);
         booleans = JCSystem.makeTransientBooleanArray(BOOLEANS_SIZE,
                                                       JCSystem.CLEAR_ON_DESELECT);
+        metrics = JCSystem.makeTransientShortArray((short)(METRICS_SIZE + 1),
+                                                   JCSystem.CLEAR_ON_RESET);
     }
 
     protected final void clear() {
@@ -103,6 +136,15 @@ public final class Transients {
         return shorts[SHORT_OFFSET_OUTPUT_LENGTH];
     }
 
+    /* Random bytes still unused are the last ones of random_pool */
+    protected final void setRandomPoolAvailable(final short len) {
+        session_shorts[SESSION_SHORT_OFFSET_RANDOM_POOL_AVAILABLE] = len;
+    }
+
+    protected final short randomPoolAvailable() {
+        return session_shorts[SESSION_SHORT_OFFSET_RANDOM_POOL_AVAILABLE];
+    }
+
     protected final void setChainingInputIns(final byte ins) {
         bytes[BYTE_OFFSET_CHAINING_INPUT_INS] = ins;
     }
@@ -135,6 +177,101 @@ public final class Transients {
         return bytes[BYTE_OFFSET_CURRENT_TAG_OCCURRENCE];
     }
 
+    protected final void countMetric(final byte metric) {
+        ++metrics[metric];
+    }
+
+    protected final void countCommand(final byte ins) {
+        byte metric;
+        switch(ins) {
+        case ISO7816.INS_SELECT:
+            metric = METRIC_COMMANDS_SELECT;
+            break;
+        case Constants.INS_GET_DATA:
+        case Constants.INS_GET_DATA_ODD:
+            metric = METRIC_COMMANDS_GET_DATA;
+            break;
+        case Constants.INS_GET_NEXT_DATA:
+            metric = METRIC_COMMANDS_GET_NEXT_DATA;
+            break;
+        case Constants.INS_PUT_DATA_DA:
+        case Constants.INS_PUT_DATA_DB:
+            metric = METRIC_COMMANDS_PUT_DATA;
+            break;
+        case Constants.INS_GENERATE_ASYMMETRIC_KEY_PAIR:
+            metric = METRIC_COMMANDS_GENERATE;
+            break;
+        case Constants.INS_INTERNAL_AUTHENTICATE:
+            metric = METRIC_COMMANDS_INTERNAL_AUTHENTICATE;
+            break;
+        case Constants.INS_GET_CHALLENGE:
+            metric = METRIC_COMMANDS_GET_CHALLENGE;
+            break;
+        case Constants.INS_GET_RESPONSE:
+            metric = METRIC_COMMANDS_GET_RESPONSE;
+            break;
+        default:
+            metric = METRIC_COMMANDS_OTHER;
+            break;
+        }
+        ++metrics[metric];
+        ++metrics[METRIC_PENDING_COMMANDS];
+    }
+
+    protected final void countSignature(final byte alg) {
+        ++metrics[(byte)(METRIC_SIGNATURES + alg)];
+    }
+
+    protected final void updateBufferHighWater(final short len) {
+        if(len > metrics[METRIC_BUFFER_HIGH_WATER]) {
+            metrics[METRIC_BUFFER_HIGH_WATER] = len;
+        }
+    }
+
+    /* Called by Common.commitTransaction before each commit */
+    protected final void updateCommitHighWater() {
+        final short used = (short)(JCSystem.getMaxCommitCapacity() - JCSystem.getUnusedCommitCapacity());
+        if(used > metrics[METRIC_COMMIT_HIGH_WATER]) {
+            metrics[METRIC_COMMIT_HIGH_WATER] = used;
+        }
+    }
+
+    protected final boolean metricsSnapshotDue() {
+        return metrics[METRIC_PENDING_COMMANDS] >= Constants.METRICS_SNAPSHOT_PERIOD;
+    }
+
+    /* The snapshot holds each metric on two shorts, most significant
+       first, from snapshot_off, and counters are added as unsigned
+       values. Must be called outside of a transaction. */
+    protected final void saveMetrics(final byte[] snapshot, final short snapshot_off) {
+        short hi;
+        short lo;
+        short value;
+        JCSystem.beginTransaction();
+        for(byte i = 0; i < METRICS_SIZE; ++i) {
+            if(metrics[i] == 0) {
+                continue;
+            }
+            hi = (short)(snapshot_off + (short)(4 * i));
+            lo = (short)(hi + 2);
+            value = Util.getShort(snapshot, lo);
+            if((i == METRIC_BUFFER_HIGH_WATER) || (i == METRIC_COMMIT_HIGH_WATER)) {
+                if(metrics[i] > value) {
+                    Util.setShort(snapshot, lo, metrics[i]);
+                }
+            } else {
+                final short sum = (short)(value + metrics[i]);
+                if((short)(sum ^ (short)0x8000) < (short)(value ^ (short)0x8000)) {
+                    Util.setShort(snapshot, hi, (short)(Util.getShort(snapshot, hi) + 1));
+                }
+                Util.setShort(snapshot, lo, sum);
+                metrics[i] = (short)0;
+            }
+        }
+        Common.commitTransaction(this);
+        metrics[METRIC_PENDING_COMMANDS] = (short)0;
+    }
+
     protected final void setChainingOutput(final boolean chaining) {
         booleans[BOOLEAN_OFFSET_CHAINING_OUTPUT] = chaining;
     }
@@ -23,36 +23,43 @@ import javacard.security.*;
 import javacardx.apdu.*;
 import javacardx.crypto.*;
 
-public final class TravelCardApplet extends Applet {
+public final class TravelCardApplet extends Applet implements ExtendedLength {
+
+    private final InstallParameters params;
 
     private final ECCurves ec;
+    private final CryptoRegistry crypto;
     private final Persistent data;
 
     private final Transients transients;
+    private final KeyImport key_import;
 
     private final RandomData random_data;
 
-    public TravelCardApplet() {
+    public TravelCardApplet(final InstallParameters params) {
+        this.params = params;
+
         random_data = RandomData.getInstance(RandomData.ALG_SECURE_RANDOM);
 
         ec = new ECCurves();
+        crypto = new CryptoRegistry();
 
-        data = new Persistent();
-        transients = new Transients();
+        data = new Persistent(params);
+        transients = new Transients(params);
+        key_import = new KeyImport(data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT]);
     }
 
     public static final void install(byte[] buf, short off, byte len) {
-        new TravelCardApplet().register();
+        new TravelCardApplet(new InstallParameters(buf, off, len)).register();
     }
 
     private final CardKey currentTagOccurenceToKey() {
-        switch(transients.currentTagOccurrence()) {
-        case 0:
-            return data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT];
-        default:
+        final byte occurrence = transients.currentTagOccurrence();
+        if((occurrence < 0) || (occurrence >= data.card_keys.length)) {
             ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
             return null;
         }
+        return data.card_keys[occurrence];
     }
 
     private final void prepareChainingInput(final byte[] apdubuf) {
@@ -72,6 +79,7 @@ public final class TravelCardApplet extends Applet {
                (apdubuf[ISO7816.OFFSET_P2] != transients.chainingInputP2())) {
                 transients.setChainingInput(false);
                 transients.setChainingInputLength((short)0);
+                key_import.abort(transients.buffer);
                 ISOException.throwIt(Constants.SW_CHAINING_ERROR);
                 return;
             }
@@ -84,6 +92,7 @@ public final class TravelCardApplet extends Applet {
                 Util.arrayFillNonAtomic(transients.buffer, (short)0, tmp, (byte)0);
             }
             transients.setChainingInputLength((short)0);
+            key_import.abort(transients.buffer);
 
             if((apdubuf[ISO7816.OFFSET_CLA] & Constants.CLA_MASK_CHAINING) == Constants.CLA_MASK_CHAINING) {
                 transients.setChainingInputIns(apdubuf[ISO7816.OFFSET_INS]);
@@ -104,7 +113,7 @@ public final class TravelCardApplet extends Applet {
 
         short off = transients.chainingInputLength();
 
-        if((short)(off + lc) > Constants.INTERNAL_BUFFER_MAX_LENGTH) {
+        if((short)(off + lc) > (short)transients.buffer.length) {
             transients.setChainingInput(false);
             transients.setChainingInputLength((short)0);
             ISOException.throwIt(Constants.SW_MEMORY_FAILURE);
@@ -119,59 +128,156 @@ public final class TravelCardApplet extends Applet {
         }
 
         transients.setChainingInputLength(off);
+        transients.updateBufferHighWater(off);
     }
 
-    private final short processGetData(final byte p1, final byte p2) {
+    private static final boolean isKeyImport(final byte[] apdubuf) {
+        return (apdubuf[ISO7816.OFFSET_INS] == Constants.INS_PUT_DATA_DB) &&
+            (Util.getShort(apdubuf, ISO7816.OFFSET_P1) == Constants.FILE_CURRENT_DF);
+    }
 
-        final short tag = Util.makeShort(p1, p2);
-        short off = 0;
-        short tlen = 0;
+    /* The first command of a key import is received as any other, then
+       its header is parsed; the values of the next ones are passed to
+       the import from the APDU buffer (see KeyImport). */
+    private final void receiveKeyImport(final APDU apdu) {
+        final byte[] apdubuf = apdu.getBuffer();
+        final boolean first = !transients.chainingInput();
 
-        if(transients.currentTag() == 0) {
-            transients.setCurrentTag(tag);
-            transients.setCurrentTagOccurrence((byte)0);
-        } else if(transients.currentTag() != tag) {
-            transients.setCurrentTagOccurrence((byte)0);
+        try {
+            prepareChainingInput(apdubuf);
+
+            if(first) {
+                receiveData(apdu);
+                final short len = transients.chainingInputLength();
+                key_import.start(crypto, ec, transients.buffer, (short)0, len);
+                Util.arrayFillNonAtomic(transients.buffer, (short)0, len, (byte)0);
+                transients.setChainingInputLength((short)0);
+            } else {
+                short blen = apdu.setIncomingAndReceive();
+                final short offcdata = apdu.getOffsetCdata();
+                while(blen > 0) {
+                    key_import.consume(transients.buffer, apdubuf, offcdata, blen);
+                    blen = apdu.receiveBytes(offcdata);
+                }
+            }
+
+            if(!transients.chainingInput()) {
+                key_import.finish(transients.buffer);
+            }
+
+        } catch(final ISOException e) {
+            key_import.abort(transients.buffer);
+            transients.setChainingInput(false);
+            ISOException.throwIt(e.getReason());
         }
+    }
+
+    private static final short ensureRoom(final byte[] buf, final short off, final short len) {
+        if((short)(off + len) > (short)buf.length) {
+            ISOException.throwIt(Constants.SW_MEMORY_FAILURE);
+        }
+        return off;
+    }
+
+    private static final short writeTag(final byte[] buf, short off, final short tag) {
+        if((tag & (short)0xff00) != 0) {
+            return Util.setShort(buf, off, tag);
+        }
+        buf[off++] = (byte)tag;
+        return off;
+    }
+
+    /* Writes the data object designated by tag, preceded by its tag and
+       length when tlv is set. Templates are always written with their
+       tag and length. */
+    private final short writeDataObject(final short tag, final boolean tlv,
+                                        final byte[] buf, short off) {
 
-        final byte[] buf = transients.buffer;
         CardKey k;
+        short len;
 
         switch(tag) {
 
         case Constants.TAG_APPLICATION_RELATED_DATA:
 
+            k = data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT];
+            final short digest_length = k.certificateDigestLength();
+
+            off = ensureRoom(buf, off, (short)(2 + 1 + 1 + 16 + 2 + 1 + 7 + 3 + 8 + 3 + digest_length));
+
             final byte aid_length = JCSystem.getAID().getBytes(buf, off);
 
+            len = (short)(1 + 1 + aid_length + 2 + 1 + 7 + 3 + 8);
+            if(digest_length > 0) {
+                len += (short)(2 + 1 + digest_length);
+            }
+
             buf[off++] = (byte)Constants.TAG_APPLICATION_RELATED_DATA;
-            off = Common.writeLength(buf, off, (short)(1 + 1 + aid_length + 2 + 1 + 18));
+            off = Common.writeLength(buf, off, len);
 
-            buf[off++] = (byte)Constants.TAG_AID;
-            off = Common.writeLength(buf, off, aid_length);
-            off += JCSystem.getAID().getBytes(buf, off);
+            off = writeDataObject(Constants.TAG_AID, true, buf, off);
 
             buf[off++] = (byte)Constants.TAG_LIFE_CYCLE_STATUS;
             buf[off++] = (byte)0x01;
             buf[off++] = (byte)Constants.LCS_BYTE;
 
+            off = writeDataObject(Constants.TAG_SECURITY_SUPPORT_TEMPLATE, true, buf, off);
+            off = writeDataObject(Constants.TAG_EXTENDED_LENGTH_INFORMATION, true, buf, off);
+
+            /* Lets validators find the certificate in their cache without
+               reading it */
+            if(digest_length > 0) {
+                off = writeTag(buf, off, Constants.TAG_CERTIFICATE_DIGEST);
+                off = Common.writeLength(buf, off, digest_length);
+                off = k.writeCertificateDigest(buf, off);
+            }
+            break;
+
+        case Constants.TAG_AID:
+            off = ensureRoom(buf, off, (short)(2 + 16));
+            if(tlv) {
+                buf[off++] = (byte)Constants.TAG_AID;
+                len = JCSystem.getAID().getBytes(buf, (short)(off + 1));
+                buf[off++] = (byte)len;
+                off += len;
+            } else {
+                off += JCSystem.getAID().getBytes(buf, off);
+            }
+            break;
+
+        case Constants.TAG_SECURITY_SUPPORT_TEMPLATE:
+            len = Persistent.SIGNATURE_COUNTER_LENGTH;
+            off = ensureRoom(buf, off, (short)(len + 4));
             buf[off++] = (byte)Constants.TAG_SECURITY_SUPPORT_TEMPLATE;
-            buf[off++] = (byte)(data.digital_signature_counter.length + 2);
+            buf[off++] = (byte)(len + 2);
             buf[off++] = (byte)0x93;
-            buf[off++] = (byte)data.digital_signature_counter.length;
-            off = Util.arrayCopyNonAtomic(data.digital_signature_counter,
-                    (short)0, buf, off,
-                    (byte)data.digital_signature_counter.length);
+            buf[off++] = (byte)len;
+            off = Util.arrayCopyNonAtomic(data.blob, Persistent.BLOB_OFFSET_SIGNATURE_COUNTER,
+                                          buf, off, len);
+            break;
 
+        case Constants.TAG_EXTENDED_LENGTH_INFORMATION:
+            off = ensureRoom(buf, off, (short)(3 + 8));
             off = Util.setShort(buf, off,
                     Constants.TAG_EXTENDED_LENGTH_INFORMATION);
             off = Common.writeLength(buf, off, (short)8);
             buf[off++] = (byte)0x02;
             buf[off++] = (byte)0x02;
-            off = Util.setShort(buf, off, Constants.APDU_MAX_LENGTH);
+            off = Util.setShort(buf, off, params.apdu_max_length);
             buf[off++] = (byte)0x02;
             buf[off++] = (byte)0x02;
-            off = Util.setShort(buf, off, Constants.APDU_MAX_LENGTH); 
+            off = Util.setShort(buf, off, params.apdu_max_length);
+            break;
 
+        case Constants.TAG_ALGORITHM_ATTRIBUTES_AUT:
+            k = data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT];
+            len = k.attributesLength();
+            off = ensureRoom(buf, off, (short)(len + 2));
+            if(tlv) {
+                buf[off++] = (byte)Constants.TAG_ALGORITHM_ATTRIBUTES_AUT;
+                off = Common.writeLength(buf, off, len);
+            }
+            off = k.writeAttributes(buf, off);
             break;
 
         case Constants.TAG_CARDHOLDER_CERTIFICATE:
@@ -179,19 +285,134 @@ public final class TravelCardApplet extends Applet {
 
             if(k == null) {
                 ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
-                return 0;
+                return off;
             }
 
-            off = Util.arrayCopyNonAtomic(k.certificate, (short)0,
-                                          buf, off,
-                                          k.certificate_length);
+            len = k.certificateLength();
+            off = ensureRoom(buf, off, (short)(len + 5));
+            if(tlv) {
+                off = writeTag(buf, off, tag);
+                off = Common.writeLength(buf, off, len);
+            }
+            off = k.writeCertificate(buf, off);
+            break;
+
+        case Constants.TAG_CERTIFICATE_DIGEST:
+            k = currentTagOccurenceToKey();
+
+            if(k == null) {
+                ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
+                return off;
+            }
+
+            len = k.certificateDigestLength();
+            off = ensureRoom(buf, off, (short)(len + 3));
+            if(tlv) {
+                off = writeTag(buf, off, tag);
+                off = Common.writeLength(buf, off, len);
+            }
+            off = k.writeCertificateDigest(buf, off);
+            break;
+
+        case Constants.TAG_METRICS:
+            len = (short)((short)(Transients.METRICS_SIZE * 5) + 4);
+            off = ensureRoom(buf, off, (short)(len + 4));
+            if(tlv) {
+                off = writeTag(buf, off, tag);
+                off = Common.writeLength(buf, off, len);
+            }
+            transients.saveMetrics(data.blob, Persistent.BLOB_OFFSET_METRICS);
+            for(byte i = 0; i < Transients.METRICS_SIZE; ++i) {
+                buf[off++] = i;
+                off = Util.arrayCopyNonAtomic(data.blob, (short)(Persistent.BLOB_OFFSET_METRICS + (short)(4 * i)),
+                                              buf, off, (short)4);
+            }
+            off = Util.setShort(buf, off, JCSystem.getUnusedCommitCapacity());
+            off = Util.setShort(buf, off, JCSystem.getMaxCommitCapacity());
+            break;
+
+        case Constants.TAG_MEMORY_USAGE:
+            len = crypto.usageLength();
+            off = ensureRoom(buf, off, (short)(len + 4));
+            if(tlv) {
+                off = writeTag(buf, off, tag);
+                off = Common.writeLength(buf, off, len);
+            }
+            off = crypto.writeUsage(buf, off);
             break;
 
         default:
             ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
+            return off;
+        }
+
+        return off;
+    }
+
+    private final short processGetData(final byte p1, final byte p2) {
+
+        final short tag = Util.makeShort(p1, p2);
+
+        /* The digest is the one of the current certificate occurrence */
+        if((tag != Constants.TAG_CERTIFICATE_DIGEST) &&
+           (transients.currentTag() != tag)) {
+            transients.setCurrentTag(tag);
+            transients.setCurrentTagOccurrence((byte)0);
+        }
+
+        return writeDataObject(tag, false, transients.buffer, (short)0);
+    }
+
+    /* The tag list is moved to the APDU buffer so that the data objects
+       can be written from the start of the internal buffer. */
+    private final short processGetDataList(final byte[] apdubuf, final short lc,
+                                           final byte p1, final byte p2) {
+
+        if(Util.makeShort(p1, p2) != Constants.FILE_CURRENT_DF) {
+            ISOException.throwIt(ISO7816.SW_WRONG_P1P2);
+            return 0;
+        }
+
+        final byte[] buf = transients.buffer;
+
+        if((lc < 2) || (buf[0] != (byte)Constants.TAG_TAG_LIST)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+            return 0;
+        }
+
+        final short len = Common.readLength(buf, (short)1, (short)(lc - 1));
+        final short list_off = Common.skipLength(buf, (short)1, (short)(lc - 1));
+
+        if(((short)(list_off + len) != lc) ||
+           (len > (short)apdubuf.length)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
             return 0;
         }
 
+        Util.arrayCopyNonAtomic(buf, list_off, apdubuf, (short)0, len);
+        Util.arrayFillNonAtomic(buf, (short)0, lc, (byte)0);
+
+        transients.setCurrentTag((short)0);
+        transients.setCurrentTagOccurrence((byte)0);
+
+        short off = 0;
+        short i = 0;
+        short tag;
+
+        while(i < len) {
+            tag = Util.makeShort((byte)0, apdubuf[i++]);
+            /* Proprietary 01xx data objects are listed with two bytes tags */
+            if(((tag & (short)0x1f) == (short)0x1f) ||
+               (tag == (short)0x0001)) {
+                if(i >= len) {
+                    ISOException.throwIt(ISO7816.SW_WRONG_DATA);
+                    return 0;
+                }
+                tag = Util.makeShort((byte)tag, apdubuf[i++]);
+            }
+            off = writeDataObject(tag, true, buf, off);
+        }
+
         return off;
     }
 
@@ -202,6 +423,21 @@ public final class TravelCardApplet extends Applet {
             return 0;
         }
 
+        /* The current occurrence is the first one until 7F21 is read
+           or written; GET NEXT DATA selects the one after it and
+           returns it, GET DATA and PUT DATA address it until another
+           tag is. Past the last slot nothing is selected. */
+        byte occurrence = (byte)0;
+        if(transients.currentTag() == Constants.TAG_CARDHOLDER_CERTIFICATE) {
+            occurrence = transients.currentTagOccurrence();
+        } else {
+            transients.setCurrentTag(Constants.TAG_CARDHOLDER_CERTIFICATE);
+        }
+        if(occurrence < (byte)data.card_keys.length) {
+            ++occurrence;
+        }
+        transients.setCurrentTagOccurrence(occurrence);
+
         final CardKey k = currentTagOccurenceToKey();
 
         if(k == null) {
@@ -209,11 +445,7 @@ public final class TravelCardApplet extends Applet {
             return 0;
         }
 
-        transients.setCurrentTagOccurrence((byte)(transients.currentTagOccurrence() + 1));
-
-        return Util.arrayCopyNonAtomic(k.certificate, (short)0,
-                                       transients.buffer, (short)0,
-                                       k.certificate_length);
+        return k.writeCertificate(transients.buffer, (short)0);
     }
 
     private final void processPutData(final short lc,
@@ -226,11 +458,9 @@ public final class TravelCardApplet extends Applet {
 
             final short tag = Util.makeShort(p1, p2);
 
-            if(transients.currentTag() == 0) {
+            if(transients.currentTag() != tag) {
                 transients.setCurrentTag(tag);
                 transients.setCurrentTagOccurrence((byte)0);
-            } else if(transients.currentTag() != tag) {
-                transients.setCurrentTagOccurrence((byte)0);
             }
 
             switch(tag) {
@@ -241,7 +471,11 @@ public final class TravelCardApplet extends Applet {
                     ISOException.throwIt(Constants.SW_REFERENCE_DATA_NOT_FOUND);
                     return;
                 }
-                k.setCertificate(buf, (short)0, lc);
+                k.setCertificate(crypto, transients, buf, (short)0, lc);
+                break;
+
+            case Constants.TAG_ALGORITHM_ATTRIBUTES_AUT:
+                data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT].setAttributes(ec, transients, buf, (short)0, lc);
                 break;
 
             default:
@@ -256,7 +490,7 @@ public final class TravelCardApplet extends Applet {
         final byte[] buf = transients.buffer;
 
         if(((p1 != (byte)0x80) && (p1 != (byte)0x81)) ||
-           (p2 != 0)) {
+           ((p2 != 0) && (p2 != Constants.PUBLIC_KEY_FORMAT_COMPRESSED))) {
             ISOException.throwIt(ISO7816.SW_WRONG_P1P2);
             return 0;
         }
@@ -267,11 +501,21 @@ public final class TravelCardApplet extends Applet {
         }
 
         boolean do_reset = false;
+        boolean attest = false;
         CardKey pkey;
 
         switch(Util.makeShort(buf[0], buf[1])) {
         case Constants.CRT_AUTHENTICATION_KEY:
             pkey = data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT];
+            attest = (p1 == (byte)0x80) && data.attestation_key.isInitialized();
+            break;
+
+        case Constants.CRT_ATTESTATION_KEY:
+            pkey = data.attestation_key;
+            if((p1 == (byte)0x80) && pkey.isInitialized()) {
+                ISOException.throwIt(ISO7816.SW_CONDITIONS_NOT_SATISFIED);
+                return 0;
+            }
             break;
 
         default:
@@ -281,42 +525,66 @@ public final class TravelCardApplet extends Applet {
 
         if(p1 == (byte)0x80) {
 
-            pkey.generate(ec);
+            pkey.generate(crypto, ec);
 
             if(do_reset) {
                 JCSystem.beginTransaction();
-                Util.arrayFillNonAtomic(data.digital_signature_counter, (short)0,
-                                        (byte)data.digital_signature_counter.length, (byte)0);
-                JCSystem.commitTransaction();
+                Util.arrayFillNonAtomic(data.blob, Persistent.BLOB_OFFSET_SIGNATURE_COUNTER,
+                                        Persistent.SIGNATURE_COUNTER_LENGTH, (byte)0);
+                Common.commitTransaction(transients);
             }
         }
 
-        return pkey.writePublicKeyDo(buf, (short)0);
+        final short off = pkey.writePublicKeyDo(buf, (short)0,
+                                                p2 == Constants.PUBLIC_KEY_FORMAT_COMPRESSED);
+
+        if(!attest) {
+            return off;
+        }
+
+        /* The attestation (5F37) signs the public key DO followed by the
+           AID; it is computed behind room for its tag and length, then
+           moved over the AID, which is not returned. */
+        final short aid_length = JCSystem.getAID().getBytes(buf, off);
+        final short sig_off = (short)(off + aid_length + 5);
+        final short sig_length = data.attestation_key.signMessage(crypto, transients, buf, (short)0,
+                                                                  (short)(off + aid_length), sig_off);
+
+        short res = writeTag(buf, off, Constants.TAG_SIGNATURE);
+        res = Common.writeLength(buf, res, sig_length);
+
+        return Util.arrayCopyNonAtomic(buf, sig_off, buf, res, sig_length);
     }
 
     private final short processInternalAuthenticate(final short lc,
                                                     final byte p1, final byte p2) {
 
+        final byte[] counter = data.blob;
+        final short last = (short)(Persistent.BLOB_OFFSET_SIGNATURE_COUNTER + Persistent.SIGNATURE_COUNTER_LENGTH - 1);
+
         byte i = 0;
         JCSystem.beginTransaction();
-        while(data.digital_signature_counter[(byte)(data.digital_signature_counter.length - i - 1)] == (byte)0xff) {
+        while(counter[(short)(last - i)] == (byte)0xff) {
             ++i;
         }
-        if(i < data.digital_signature_counter.length) {
-            ++data.digital_signature_counter[(byte)(data.digital_signature_counter.length - i - 1)];
+        if(i < Persistent.SIGNATURE_COUNTER_LENGTH) {
+            ++counter[(short)(last - i)];
             if(i > 0) {
                 --i;
-                Util.arrayFillNonAtomic(data.digital_signature_counter,
-                                        (short)(data.digital_signature_counter.length - i - 1),
+                Util.arrayFillNonAtomic(counter, (short)(last - i),
                                         (byte)(i + 1), (byte)0);
             }
         }
-        JCSystem.commitTransaction();
+        Common.commitTransaction(transients);
 
+        /* P1 selects the format of ECDSA signatures: r || s, or DER as
+           the platform returns it */
         if(p2 == (byte)0x00) {
             switch(p1) {
-            case (byte)0x00:
-                return data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT].sign(transients.buffer, lc, true);
+            case Constants.SIGNATURE_FORMAT_PLAIN:
+                return data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT].sign(crypto, transients, lc, true, false);
+            case Constants.SIGNATURE_FORMAT_DER:
+                return data.card_keys[Persistent.CARD_KEYS_OFFSET_AUT].sign(crypto, transients, lc, true, true);
             }
         }
 
@@ -325,6 +593,102 @@ public final class TravelCardApplet extends Applet {
     }
 
 
+    /* Tops up the pool during SELECT and GET RESPONSE, which wait on
+       nothing else. The pool is kept for the power session, so only the
+       bytes taken by GET CHALLENGE since are generated again, and GET
+       CHALLENGE only generates what the pool lacks. */
+    private final void refillRandomPool() {
+        final short missing = (short)(Constants.RANDOM_POOL_LENGTH - transients.randomPoolAvailable());
+
+        if(missing > 0) {
+            random_data.generateData(transients.random_pool, (short)0, missing);
+            transients.setRandomPoolAvailable(Constants.RANDOM_POOL_LENGTH);
+        }
+    }
+
+    private final short processGetChallenge(final APDU apdu,
+                                            final byte p1, final byte p2) {
+
+        if((p1 != 0) || (p2 != 0)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_P1P2);
+            return 0;
+        }
+
+        short le = apdu.setOutgoing();
+
+        if(le <= 0) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+            return 0;
+        }
+
+        if(le > params.apdu_max_length) {
+            le = params.apdu_max_length;
+        }
+
+        final short available = transients.randomPoolAvailable();
+        short off = 0;
+
+        if(available > 0) {
+            final short pool_off = (short)(Constants.RANDOM_POOL_LENGTH - available);
+            final short len = (le < available) ? le : available;
+
+            off = Util.arrayCopyNonAtomic(transients.random_pool, pool_off,
+                                          transients.buffer, off, len);
+            Util.arrayFillNonAtomic(transients.random_pool, pool_off, len, (byte)0);
+            transients.setRandomPoolAvailable((short)(available - len));
+        }
+
+        if(off < le) {
+            random_data.generateData(transients.buffer, off, (short)(le - off));
+        }
+
+        return le;
+    }
+
+
+    /* No access control, as for the personalization commands */
+    private final void processTerminate(final short lc,
+                                        final byte p1, final byte p2) {
+
+        if((p1 != 0) || (p2 != 0)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_P1P2);
+            return;
+        }
+
+        if(lc != 0) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+            return;
+        }
+
+        data.terminate(transients);
+    }
+
+    /* A card that is not terminated is left as is. Otherwise the wipe is
+       done again, which costs little once TERMINATE DF has completed and
+       finishes it when it was torn. */
+    private final void processActivate(final short lc,
+                                       final byte p1, final byte p2) {
+
+        if((p1 != 0) || (p2 != 0)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_P1P2);
+            return;
+        }
+
+        if(lc != 0) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+            return;
+        }
+
+        if(data.isTerminated()) {
+            data.reset(transients, false);
+        }
+    }
+
+    private static final boolean isLifeCycleCommand(final byte[] apdubuf) {
+        return (apdubuf[ISO7816.OFFSET_INS] == Constants.INS_TERMINATE_DF) ||
+            (apdubuf[ISO7816.OFFSET_INS] == Constants.INS_ACTIVATE_FILE);
+    }
+
     private final void clearConnection() {
         transients.clear();
     }
@@ -333,10 +697,20 @@ public final class TravelCardApplet extends Applet {
 
         final byte[] apdubuf = apdu.getBuffer();
         short cp = 0;
+
+        transients.countCommand(apdubuf[ISO7816.OFFSET_INS]);
+        if(transients.metricsSnapshotDue()) {
+            transients.saveMetrics(data.blob, Persistent.BLOB_OFFSET_METRICS);
+        }
         
         if(apdu.isISOInterindustryCLA() && selectingApplet()) {
 
             clearConnection();
+
+            if(data.isTerminated()) {
+                ISOException.throwIt(Constants.SW_TERMINATED);
+                return;
+            }
           
             cp = processGetData((byte)0x00, (byte)0x6e);            
 
@@ -353,6 +727,8 @@ public final class TravelCardApplet extends Applet {
             apdu.setOutgoing();
             apdu.setOutgoingLength((short)(cp + fmd.length));
             apdu.sendBytes((short)0, (short)(cp + fmd.length));
+
+            refillRandomPool();
             
             return;
         }
@@ -365,6 +741,17 @@ public final class TravelCardApplet extends Applet {
         short available_le = 0;
         short sw = (short)0x9000;
 
+        if(!params.extendedLength() &&
+           (apdu.getOffsetCdata() == ISO7816.OFFSET_EXT_CDATA)) {
+            ISOException.throwIt(ISO7816.SW_WRONG_LENGTH);
+            return;
+        }
+
+        if(data.isTerminated() && !isLifeCycleCommand(apdubuf)) {
+            ISOException.throwIt(Constants.SW_TERMINATED);
+            return;
+        }
+
         if(((apdubuf[ISO7816.OFFSET_CLA] & Constants.CLA_MASK_CHAINING) != Constants.CLA_MASK_CHAINING) &&
            (apdubuf[ISO7816.OFFSET_INS] == Constants.INS_GET_RESPONSE)) {
 
@@ -380,8 +767,18 @@ public final class TravelCardApplet extends Applet {
 
             available_le = transients.outputLength();
 
+            refillRandomPool();
+
+        } else if(isKeyImport(apdubuf)) {
+
+            if((apdubuf[ISO7816.OFFSET_CLA] & Constants.CLA_MASK_CHAINING) == Constants.CLA_MASK_CHAINING) {
+                transients.countMetric(Transients.METRIC_CHAINING_IN);
+            }
+            receiveKeyImport(apdu);
+
         } else if((apdubuf[ISO7816.OFFSET_CLA] & Constants.CLA_MASK_CHAINING) == Constants.CLA_MASK_CHAINING) {
 
+            transients.countMetric(Transients.METRIC_CHAINING_IN);
             prepareChainingInput(apdubuf);
             receiveData(apdu);
 
@@ -399,6 +796,10 @@ public final class TravelCardApplet extends Applet {
                     available_le = processGetData(p1, p2);
                     break;
 
+                case Constants.INS_GET_DATA_ODD:
+                    available_le = processGetDataList(apdubuf, lc, p1, p2);
+                    break;
+
                 case Constants.INS_GET_NEXT_DATA:
                     available_le = processGetNextData(p1, p2);
                     break;
@@ -419,6 +820,18 @@ public final class TravelCardApplet extends Applet {
                     available_le = processInternalAuthenticate(lc, p1, p2);
                     break;
 
+                case Constants.INS_GET_CHALLENGE:
+                    available_le = processGetChallenge(apdu, p1, p2);
+                    break;
+
+                case Constants.INS_TERMINATE_DF:
+                    processTerminate(lc, p1, p2);
+                    break;
+
+                case Constants.INS_ACTIVATE_FILE:
+                    processActivate(lc, p1, p2);
+                    break;
+
                 default:
                     ISOException.throwIt(ISO7816.SW_INS_NOT_SUPPORTED);
                     return;
@@ -429,6 +842,7 @@ public final class TravelCardApplet extends Applet {
             }
 
             transients.setOutputLength(available_le);
+            transients.updateBufferHighWater(available_le);
         }
 
 
@@ -444,17 +858,16 @@ public final class TravelCardApplet extends Applet {
                 }
             }
 
-            if(resp_le > Constants.APDU_MAX_LENGTH) {
-                resp_le = Constants.APDU_MAX_LENGTH;
+            if(resp_le > params.apdu_max_length) {
+                resp_le = params.apdu_max_length;
             }
 
             short off = transients.outputStart();
 
-            Util.arrayCopyNonAtomic(transients.buffer, off,
-                                    apdubuf, (short)0, resp_le);
-
+            /* Sent from the internal buffer, extended responses being
+               larger than the APDU buffer of some platforms */
             apdu.setOutgoingLength(resp_le);
-            apdu.sendBytes((short)0, resp_le);
+            apdu.sendBytesLong(transients.buffer, off, resp_le);
 
             Util.arrayFillNonAtomic(transients.buffer, off, resp_le, (byte)0);
 
@@ -471,6 +884,7 @@ public final class TravelCardApplet extends Applet {
                 }
 
                 sw = (short)(ISO7816.SW_BYTES_REMAINING_00 | available_le);
+                transients.countMetric(Transients.METRIC_CHAINING_OUT);
 
             } else {
                 transients.setChainingOutput(false);